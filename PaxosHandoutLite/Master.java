@@ -19,8 +19,10 @@ import framework.NetController;
 import log.Logger;
 import message.Decision;
 import message.Message;
+import message.P1a;
 import message.Proposal;
 import message.Request;
+import message.Snapshotted;
 import message.TimeBombLeader;
 import server.HeartBeatGenerator;
 import server.Server;
@@ -36,10 +38,6 @@ public class Master {
 	// sets it has received up to this point.
 	public final static long ACCEPTOR_SET_RECEIVE_WAIT_TIME = 2000;
 	
-	// A list of queues we can talk to clients with. The queue at index i is the
-	// queue that client i is continuously listening on.
-	public static ArrayList<LinkedList<String>> clientQueues = new ArrayList<LinkedList<String>>();
-
 	// A list of queues we can talk to servers with. The queue at index i is the
 	// queue that server i is continuously listening on.
 	public static ArrayList<LinkedList<String>> serverQueues = new ArrayList<LinkedList<String>>();
@@ -66,14 +64,40 @@ public class Master {
 
 	// Number of servers.
 	public static int numberServers = -1;
+	
+	// The lowest fromSlot a live leader would have put in a p1a at the
+	// last checkScoutFromSlot.
+	private static int lastScoutFromSlot = 1;
+	
+	// The lowest slot a live acceptor had compacted its log below at the
+	// last checkCompactedSlot.
+	private static int lastCompactedSlot = 0;
+	
+	// How the NetControllers encode messages (see Config).  Set with the
+	// wireFormat command, before start.
+	public static Config.WireFormat wireFormat = Config.WireFormat.BINARY;
+	
+	// How the NetControllers move frames (see Config).  Set with the
+	// transport command, before start.
+	public static Config.Transport transport = Config.Transport.SOCKETS;
+	
+	// Where the servers keep their logs (see Config).  Set with the logDir
+	// command, before start.
+	public static String logDir = ".";
+	
+	// Client window size (see Config).  Set with the windowSize command,
+	// before start.
+	public static int windowSize = 1000;
 
 	public static void main(String[] args) {
 		Scanner scan = new Scanner(System.in);
 		
 		Logger log = Logger.getInstance();
 		
-		//Thread logThread = new Thread(log);
-		//logThread.start();
+		// The log's consumer.  A daemon, so it never keeps the process up.
+		Thread logThread = new Thread(log, "logger");
+		logThread.setDaemon(true);
+		logThread.start();
 		
 		while (scan.hasNextLine()) {
 			String[] inputLine = scan.nextLine().split(" ");
@@ -125,6 +149,83 @@ public class Master {
 
 			break;
 
+		case "wireFormat":
+			/*
+			 * Choose how messages are encoded on the wire (BINARY or JAVA)
+			 * for the processes started after this.
+			 */
+			Master.wireFormat = Config.WireFormat.valueOf(inputLine[1].toUpperCase());
+			
+			break;
+
+		case "transport":
+			/*
+			 * Choose how messages are moved (SOCKETS or NIO) for the
+			 * processes started after this.
+			 */
+			Master.transport = Config.Transport.valueOf(inputLine[1].toUpperCase());
+			
+			break;
+
+		case "logDir":
+			/*
+			 * Choose the directory the servers started after this keep
+			 * their logs under.
+			 */
+			Master.logDir = inputLine[1];
+			
+			break;
+
+		case "windowSize":
+			/*
+			 * Choose the client window size for the processes started
+			 * after this.
+			 */
+			Master.windowSize = Integer.parseInt(inputLine[1]);
+			
+			break;
+
+		case "checkScoutFromSlot":
+			/*
+			 * Prints whether every live leader's next p1a starts past the
+			 * slots decided so far (at its replica's next slot), and past
+			 * where it started at the last check.  Call after allClear.
+			 */
+			System.out.println("checkScoutFromSlot: " + checkScoutFromSlot());
+			
+			break;
+
+		case "checkCompactedSlot":
+			/*
+			 * Prints whether every live acceptor has compacted its log
+			 * below some slot, and no lower than at the last check.  Call
+			 * after allClear.
+			 */
+			System.out.println("checkCompactedSlot: " + checkCompactedSlot());
+			
+			break;
+
+		case "sendSnapshotted":
+			serverIndex = Integer.parseInt(inputLine[1]);
+			/*
+			 * Tell every server that the given replica snapshotted below
+			 * the given watermark, as the replica itself would.
+			 */
+			sendToAllServers(new Snapshotted(serverIndex, Integer.parseInt(inputLine[2])));
+			
+			break;
+
+		case "raiseAcceptorBallot":
+			/*
+			 * Make every acceptor promise a ballot higher than any leader's,
+			 * as a Scout of a server that is not the leader would, without
+			 * the leader hearing of it.  Its next Commander is preempted.
+			 * Call after allClear.
+			 */
+			raiseAcceptorBallot();
+			
+			break;
+
 		case "printChatLog":
 			clientIndex = Integer.parseInt(inputLine[1]);
 			/*
@@ -158,7 +259,7 @@ public class Master {
 			 * Immediately crash the server specified by nodeIndex
 			 */
 			Master.serverThreads.get(nodeIndex).stop();
-			Logger.getInstance().println("Server " + nodeIndex + " crashed!");
+			Logger.getInstance().info("Server {} crashed!", nodeIndex);
 
 			break;
 
@@ -206,7 +307,7 @@ public class Master {
 			}
 			if (leadersFound != 1)
 			{
-				Logger.getInstance().println(leadersFound + " LEADERS FOUND. THIS SHOULD NEVER HAPPEN!");
+				Logger.getInstance().error("{} LEADERS FOUND. THIS SHOULD NEVER HAPPEN!", leadersFound);
 				break;
 			}
 			for (Iterator<Server> i = serverProcesses.iterator(); i.hasNext();)
@@ -306,10 +407,106 @@ public class Master {
 		}
 	}
 	
+	/**
+	 * @return true iff every live leader's p1a fromSlot is its replica's
+	 * next slot, and is higher than at the last call.
+	 */
+	private static boolean checkScoutFromSlot()
+	{
+		boolean ok = true;
+		int lowest = Integer.MAX_VALUE;
+		for (int i = 0; i < serverThreads.size(); i++)
+		{
+			if (!serverThreads.get(i).isAlive())
+			{
+				continue;
+			}
+			
+			Server s = serverProcesses.get(i);
+			int fromSlot = s.leader.getFirstUndecidedSlot();
+			if (fromSlot != s.getReplicaSlotNum() || fromSlot <= Master.lastScoutFromSlot)
+			{
+				Logger.getInstance().info("Server {}: p1a fromSlot {}, replica at {}", i, fromSlot, s.getReplicaSlotNum());
+				ok = false;
+			}
+			lowest = Math.min(lowest, fromSlot);
+		}
+		if (!ok)
+		{
+			Logger.getInstance().info("Last check: p1a fromSlot {}", Master.lastScoutFromSlot);
+		}
+		Master.lastScoutFromSlot = lowest;
+		return ok;
+	}
+	
+	/**
+	 * @return true iff every live acceptor has compacted its log below a
+	 * slot past 0, and no lower than the lowest one at the last call.
+	 */
+	private static boolean checkCompactedSlot()
+	{
+		boolean ok = true;
+		int lowest = Integer.MAX_VALUE;
+		for (int i = 0; i < serverThreads.size(); i++)
+		{
+			if (!serverThreads.get(i).isAlive())
+			{
+				continue;
+			}
+			
+			int compactedSlot = serverProcesses.get(i).acceptor.getCompactedSlot();
+			if (compactedSlot <= 0 || compactedSlot < Master.lastCompactedSlot)
+			{
+				Logger.getInstance().info("Server {}: compacted slot {}, last check {}", i, compactedSlot, Master.lastCompactedSlot);
+				ok = false;
+			}
+			lowest = Math.min(lowest, compactedSlot);
+		}
+		Master.lastCompactedSlot = lowest;
+		return ok;
+	}
+	
+	/**
+	 * Sends a p1a with a ballot far above any leader's to every acceptor.
+	 * It comes from a live server that is not the leader, so the p1bs go
+	 * to a leader that ignores them.
+	 */
+	private static void raiseAcceptorBallot()
+	{
+		int scoutId = -1;
+		for (int i = 0; i < serverThreads.size(); i++)
+		{
+			if (serverThreads.get(i).isAlive() && !serverProcesses.get(i).isLeader())
+			{
+				scoutId = i;
+				break;
+			}
+		}
+		if (scoutId < 0)
+		{
+			Logger.getInstance().println("NO LIVE SERVER BESIDES THE LEADER.");
+			return;
+		}
+		
+		sendToAllServers(new P1a(scoutId, new Ballot(1000, scoutId), 1));
+	}
+	
+	/**
+	 * Sends the given message to every server, from client 0's
+	 * NetController.
+	 */
+	private static void sendToAllServers(Message message)
+	{
+		for (int i = 0; i < Master.numberServers; i++)
+		{
+			getClientNetController(0).sendMsgToServer(i, message);
+		}
+	}
+	
 	private static ArrayList<Server> getLiveServers()
 	{
 		ArrayList<Server> live = new ArrayList<Server>();
-		Logger.getInstance().println("server thread size " + serverProcesses.size());
+		Logger.getInstance().info("server thread size {}", serverProcesses.size());
 		for (int i = 0 ; i < serverThreads.size(); i++)
 		{
 			if (serverThreads.get(i).isAlive())
@@ -459,12 +656,8 @@ public class Master {
 
 		// Create clients.
 		for (int i = 0; i < numClients; i++) {
-			// A queue for give this client commands.
-			LinkedList<String> clientQueue = new LinkedList<String>();
-			clientQueues.add(clientQueue);
-
 			// Pass in ID of this client.
-			Client client = new Client(i, clientQueue, getClientNetController(i), numClients, numNodes);
+			Client client = new Client(i, getClientNetController(i), numClients, numNodes);
 			Thread clientThread = new Thread(client);
 			clientThread.start();
 
@@ -544,6 +737,18 @@ public class Master {
 		for (int i = 0; i < numProcesses; i++) {
 			out.println("port" + i + "=" + (6100 + i));
 		}
+		
+		// Wire format field.
+		out.println("WireFormat=" + Master.wireFormat);
+		
+		// Transport field.
+		out.println("Transport=" + Master.transport);
+		
+		// Log directory field.
+		out.println("LogDir=" + Master.logDir);
+		
+		// Window size field.
+		out.println("WindowSize=" + Master.windowSize);
 
 		out.flush();
 		out.close();
@@ -622,26 +827,26 @@ public class Master {
 		Ballot firstBallot0 = bg0.getCurrentBallot();
 		Ballot firstBallot1 = bg1.getCurrentBallot();
 
-		Logger.getInstance().println("x.equals(x) (true): " + firstBallot0.equals(firstBallot0));
+		Logger.getInstance().info("x.equals(x) (true): {}", firstBallot0.equals(firstBallot0));
 
-		Logger.getInstance().println("x = First ballot leader 0: " + firstBallot0);
-		Logger.getInstance().println("y = First ballot leader 1: " + firstBallot1);
+		Logger.getInstance().info("x = First ballot leader 0: {}", firstBallot0);
+		Logger.getInstance().info("y = First ballot leader 1: {}", firstBallot1);
 
-		Logger.getInstance().println("x > y (false): " + firstBallot0.greaterThan(firstBallot1));
-		Logger.getInstance().println("x.equals(y) (false): " + firstBallot0.equals(firstBallot1));
+		Logger.getInstance().info("x > y (false): {}", firstBallot0.greaterThan(firstBallot1));
+		Logger.getInstance().info("x.equals(y) (false): {}", firstBallot0.equals(firstBallot1));
 
 		Ballot secondBallot0 = bg0.getNextBallot();
 		Ballot secondBallot1 = bg1.getNextBallot();
-		Logger.getInstance().println("x = Second ballot leader 0: " + secondBallot0);
-		Logger.getInstance().println("y = Second ballot leader 1: " + secondBallot1);
+		Logger.getInstance().info("x = Second ballot leader 0: {}", secondBallot0);
+		Logger.getInstance().info("y = Second ballot leader 1: {}", secondBallot1);
 
-		Logger.getInstance().println("x > y (false): " + secondBallot0.greaterThan(secondBallot1));
+		Logger.getInstance().info("x > y (false): {}", secondBallot0.greaterThan(secondBallot1));
 
 		Ballot thirdBallot0 = bg0.getNextBallot();
-		Logger.getInstance().println("x = Third ballot leader 0: " + thirdBallot0);
-		Logger.getInstance().println("y = Second ballot leader 1: " + secondBallot1);
+		Logger.getInstance().info("x = Third ballot leader 0: {}", thirdBallot0);
+		Logger.getInstance().info("y = Second ballot leader 1: {}", secondBallot1);
 
-		Logger.getInstance().println("x > y (true): " + thirdBallot0.greaterThan(secondBallot1));
+		Logger.getInstance().info("x > y (true): {}", thirdBallot0.greaterThan(secondBallot1));
 
 		System.out.flush();
 		System.exit(-1);
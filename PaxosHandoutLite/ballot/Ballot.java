@@ -9,14 +9,14 @@ import message.Decision;
  * @author Mike Feilbach
  *
  */
-public class Ballot implements Serializable
+public class Ballot implements Serializable, Comparable<Ballot>
 {
 	private static final long serialVersionUID = 1L;
 	
 	// A ballot will be (ballotId, leaderId), and two ballots
 	// will be compared lexicographically.
-	private int leaderId;
-	private int ballotId;
+	private final int leaderId;
+	private final int ballotId;
 	
 	/**
 	 * Default constructor
@@ -48,49 +48,34 @@ public class Ballot implements Serializable
 	 */
 	public boolean greaterThan(Ballot y)
 	{
-		// Check if this is the same ballot.
-		if ((this.ballotId == y.ballotId) && (this.leaderId == y.leaderId))
-		{
-			return false;
-			/*
-			Logger.getInstance().println("Comparing two equal ballots in greaterThan(Ballot y).");
-			Logger.getInstance().println("x: " + this);
-			Logger.getInstance().println("y: " + y);
-			Logger.getInstance().println("Exiting.");
-			System.exit(-1);
-			*/
-		}
-		
-		// A ballot will be (ballotId, leaderId), and two ballots
-		// will be compared lexicographically.
-		
+		return this.compareTo(y) > 0;
+	}
+	
+	
+	/**
+	 * Compares ballots lexicographically by (ballotId, leaderId).
+	 * 
+	 * @param y, Ballot y.
+	 * 
+	 * @return a negative number, zero, or a positive number as this Ballot
+	 * is less than, equal to, or greater than Ballot y.
+	 */
+	public int compareTo(Ballot y)
+	{
 		// Check ballot ID first.
-		if (this.ballotId > y.ballotId)
+		if (this.ballotId != y.ballotId)
 		{
-			// y's ballot ID is smaller.
-			return true;
+			return (this.ballotId < y.ballotId) ? -1 : 1;
 		}
-		else if (this.ballotId < y.ballotId)
-		{
-			// y's ballot ID is larger.
-			return false;
-		}
-		else
+		
+		// Ballot IDs are equal.  Resort to the leader ID.  Leader IDs are
+		// totally ordered, so this decides it unless the ballots are equal.
+		if (this.leaderId != y.leaderId)
 		{
-			// y's ballot ID is equal. Resort to the leader ID.
-			// Leader ID's are totally ordered, so they cannot be
-			// equal => this will decide for certain.
-			if (this.leaderId > y.leaderId)
-			{
-				// y's leader ID is smaller.
-				return true;
-			}
-			else
-			{
-				// y'd leader ID is larger, since total ordering of leader IDs.
-				return false;
-			}
+			return (this.leaderId < y.leaderId) ? -1 : 1;
 		}
+		
+		return 0;
 	}
 	
 	
@@ -149,6 +134,12 @@ public class Ballot implements Serializable
 		return false;
 	}
 	
+	@Override
+	public int hashCode()
+	{
+		return 31 * this.ballotId + this.leaderId;
+	}
+	
 	
 	public int getLeaderId()
 	{
@@ -1,10 +1,12 @@
 package client;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 import framework.NetController;
 import log.Logger;
@@ -12,12 +14,29 @@ import message.Message;
 import message.PlainMessage;
 import message.Request;
 import message.Response;
+import message.SubscriptionAck;
+import message.SubscriptionUpdate;
 import server.State;
 import server.StateEntry;
+import server.TimerWheel;
 
 /**
  * A client in a chat room.  The chat room is kept consistent
  * on all replicas with Paxos.
+ * 
+ * Commands are pipelined: commands are sent as long as their cid is less
+ * than windowSize past the oldest one outstanding (sent, but without a
+ * response), and the rest wait their turn in order.  Each is completed
+ * through the future submit() returns.
+ * 
+ * Requests go only to the server the last response named as the leader
+ * (its replica proposes to all leaders).  If that brings no response in
+ * LEADER_RESPONSE_TIMEOUT, or no leader is known, they go to all servers.
+ * 
+ * Only this client's own commands come back as Responses.  Everyone
+ * else's reach the chat log through the designated replica's
+ * subscription stream (see SubscriptionUpdate), which this client
+ * acknowledges as it goes.
  * @author Mike Feilbach
  *
  */
@@ -26,8 +45,12 @@ public class Client implements Runnable {
 	// This client's hand-made ID.
 	private final int id;
 	
-	// Buffered queue commands sent to client from the master.
-	private LinkedList<String> clientReceiveQueue;
+	// Commands submitted (by the master, or any thread) that the client
+	// thread has not picked up yet.
+	private LinkedList<CommandStatus> submitted;
+	
+	// Commands picked up, waiting for room in the window, in order.
+	private ArrayDeque<CommandStatus> waiting;
 	
 	// Client-local unique command ID.  For each command issued, use a new cid.
 	private int cid;
@@ -41,29 +64,52 @@ public class Client implements Runnable {
 	// Number of servers in the system.
 	private int numServers;
 	
-	// This client's view of the chat room state.
+	// This client's view of the chat room state, in slot order.
 	private State chatLog;
 	
-	// Commands we have issued to servers.
-	private ArrayList<CommandStatus> commandStatuses;
+	// Commands we have sent to servers and have no response for yet, by
+	// cid.
+	private TreeMap<Integer, CommandStatus> pending;
+	
+	// Commands are only sent if their cid is less than this far past the
+	// oldest pending one.  Replicas rely on it (see PerformedCommands).
+	private int windowSize;
 	
 	// If we haven't received a response for a given command within
 	// this amount of time (in milliseconds), re-send the command.
 	private static final int RESPONSE_RESEND_PERIOD = 100000;
 	
+	// If a request sent only to the leader gets no response within this
+	// amount of time (in milliseconds), send it to all servers.
+	private static final int LEADER_RESPONSE_TIMEOUT = 2000;
+	
+	// The server believed to be the current leader (from the last
+	// response or subscription update), which new requests go to alone,
+	// or -1 if unknown, in which case they go to all servers.  Reset to
+	// -1 when it leaves a request unanswered for LEADER_RESPONSE_TIMEOUT.
+	private int leaderHint;
+	
+	// We have every entry of the subscription stream below this slot.
+	private int subscribedThrough;
+	
+	// Re-send timers of the commands without a response.  Only this
+	// client's thread touches them.
+	private TimerWheel timers;
+	
 	/**
-	 * Constructor.
+	 * Constructor.  The window size comes from the NetController's
+	 * config, which the servers share.
 	 * 
 	 * @param id, the ID of this client.
-	 * @param receiveQueue, the queue used to communicate with this client.
 	 * @param nc, this client's NetController.
 	 * @param numClients, number of clients in the system.
 	 * @param numServers, number of servers in the system.
 	 */
-	public Client(int id, LinkedList<String> receiveQueue, NetController nc, int numClients, int numServers)
+	public Client(int id, NetController nc, int numClients, int numServers)
 	{
 		this.id = id;
-		this.clientReceiveQueue = receiveQueue;
+		this.submitted = new LinkedList<CommandStatus>();
+		this.waiting = new ArrayDeque<CommandStatus>();
 		
 		// Start client-local unique command IDs at 0.
 		this.cid = 0;
@@ -74,7 +120,11 @@ public class Client implements Runnable {
 		// Chat room log empty initially.
 		this.chatLog = new State();
 		
-		this.commandStatuses = new ArrayList<CommandStatus>();
+		this.pending = new TreeMap<Integer, CommandStatus>();
+		this.windowSize = nc.getWindowSize();
+		this.timers = new TimerWheel();
+		this.leaderHint = -1;
+		this.subscribedThrough = 1;
 	}
 	
 	
@@ -97,12 +147,35 @@ public class Client implements Runnable {
 	 * 
 	 * @param message, the message describing this command.
 	 */
-	public synchronized void giveClientCommand(String message)
+	public void giveClientCommand(String message)
 	{
-		synchronized(this.clientReceiveQueue)
+		this.submit(message);
+	}
+	
+	
+	/**
+	 * Submits a command to fulfill.  Safe to call from any thread.
+	 * 
+	 * @param operation, the command's operation (the chat message).
+	 * 
+	 * @return a future completed with the command's result once a replica
+	 * responds.  Callbacks attached to it run on the client's thread.
+	 */
+	public CompletableFuture<StateEntry> submit(String operation)
+	{
+		CommandStatus commandStatus;
+		synchronized(this.submitted)
 		{
-			this.clientReceiveQueue.add(message);
+			// Commands get cids in the order they are submitted.
+			Command command = new Command(this.id, this.getNextCid(), operation);
+			commandStatus = new CommandStatus(command);
+			this.submitted.add(commandStatus);
 		}
+		
+		// The client thread may be asleep waiting on the network.
+		this.network.wakeup();
+		
+		return commandStatus.getCompletion();
 	}
 	
 	
@@ -110,79 +183,35 @@ public class Client implements Runnable {
 	public void run()
 	{
 		// Testing.
-		Logger.getInstance().println("Client " + this.id + " created.");
+		Logger.getInstance().info("Client {} created.", this.id);
 		
 		while (true)
 		{
 			//******************************************************************
-			//* Check if we need to re-request any commands (if this client has
-			//* not received a response for a command within a given period of
-			//* time.
+			//* SUBMITTED COMMANDS
 			//******************************************************************
-			for (int i = 0; i < this.commandStatuses.size(); i++)
-			{
-				CommandStatus currCommandStatus = this.commandStatuses.get(i);
-
-				// If the command corresponding to this command status has not yet been
-				// received, check if we must re-send it.
-				if (!currCommandStatus.getResponseReceived())
-				{
-					// We have not yet gotten a response for the command
-					// corresponding to this command status.  Check if we must
-					// re-request it yet.
-					long currentTime = System.currentTimeMillis();
-					long nextCheckTime = currCommandStatus.getNextCheckTime();
-					if (currentTime >= nextCheckTime)
-					{
-						// We must re-send this request!
-						// Send this command to all servers.
-						sendRequestToAllServers(currCommandStatus.getCommand());
-						
-						// Update this command status' next check time, based on
-						// the old next check time.
-						currCommandStatus.setNextCheckTime(nextCheckTime + Client.RESPONSE_RESEND_PERIOD);
-						
-						// Testing.
-						Logger.getInstance().println("Re-sending: " + currCommandStatus.getCommand());
-					}
-				}
-			}
-			
-			
 			
-			//******************************************************************
-			//* MASTER MESSAGES
-			//******************************************************************
-			
-			// This will contain the messages received in this iteration
-			// from the master.
-			ArrayList<String> masterMessages = getMasterMessages();
-			
-			// Process messages from master.
-			for (int i = 0; i < masterMessages.size(); i++)
+			// Pick up the commands submitted since the last iteration, and
+			// send as many as the window has room for.
+			synchronized(this.submitted)
 			{
-				//Logger.getInstance().println("Client " + this.id + " received from master: " + masterMessages.get(i));
-				
-				// Construct a Command with this message as the operation.
-				Command command = new Command(this.id, this.getNextCid(), masterMessages.get(i));
-				
-				// Remember that we requested this Command.
-				this.commandStatuses.add(new CommandStatus(command, System.currentTimeMillis(), System.currentTimeMillis() + Client.RESPONSE_RESEND_PERIOD));
-				
-				// Send this command to all servers.
-				sendRequestToAllServers(command);
-				
-				// Testing
-				//Logger.getInstance().println("Sending: " + command);
+				this.waiting.addAll(this.submitted);
+				this.submitted.clear();
 			}
+			this.sendWaiting();
 			
 			
 			//******************************************************************
 			//* NETWORK MESSAGES
 			//******************************************************************
 			
-			// Receive messages on network.
-			ArrayList<Message> networkMessages = getNetworkMessages();
+			// Receive messages on network.  Sleep until one arrives, a
+			// command is submitted, or a command is due to be re-sent.
+			ArrayList<Message> networkMessages = getNetworkMessages(this.timers.getTimeUntilNextDeadline());
+			
+			// Re-send the commands we have not received a response for
+			// within a given period of time.
+			this.timers.advance();
 			
 			for (int i = 0; i < networkMessages.size(); i++)
 			{
@@ -201,39 +230,44 @@ public class Client implements Runnable {
 					
 					//Logger.getInstance().println("Client " + this.id + " received: " + response);
 					
-					// Check if we have gotten this result yet (since all
-					// replicas send a performed decision to the client
-					// who issued the command).
+					// Check if we have gotten this result yet (a re-sent
+					// command can be answered by more than one replica).
 					StateEntry result = response.getResult();
-					
-					synchronized(this.chatLog)
-					{
-						if (!this.chatLog.getState().contains(result))
-						{
-							// Add this result to our state.
-							this.chatLog.addToState(response.getResult());
-						}
-					}
+					this.addToChatLog(result);
 		
 					// Testing.  Print out this client's view of chat room.
 					//printChatLog();
 					
-					// Note that we have received a response to this command.
-					Command commandReceived = response.getResult().getCommand();
+					// Send the next requests to the leader the responding
+					// server believes in.
+					if (response.getLeaderHint() >= 0)
+					{
+						this.leaderHint = response.getLeaderHint();
+					}
 					
-					// Find the command that we just received a response for.
-					for (int j = 0; j < this.commandStatuses.size(); j++)
+					// If this is the first response to one of our commands,
+					// it is done: make room in the window for the next one.
+					Command commandReceived = result.getCommand();
+					if (commandReceived.getClientId() == this.id)
 					{
-						CommandStatus currCommandStatus = this.commandStatuses.get(j);
-						Command currCommand = currCommandStatus.getCommand();
-						if (currCommand.equals(commandReceived))
+						CommandStatus currCommandStatus = this.pending.remove(response.getCid());
+						if (currCommandStatus != null)
 						{
-							// Note that this command has received a response.
-							currCommandStatus.setResponseReceived();
+							this.timers.cancel(currCommandStatus.getResendTimer());
+							currCommandStatus.getCompletion().complete(result);
+							this.sendWaiting();
 						}
 					}
 				}
 				
+				//**************************************************************
+				//* Client received a SubscriptionUpdate from a Replica.
+				//**************************************************************
+				if (currMessage instanceof SubscriptionUpdate)
+				{
+					this.handleSubscriptionUpdate((SubscriptionUpdate) currMessage);
+				}
+				
 				// Communication testing.
 				if (currMessage instanceof PlainMessage)
 				{
@@ -277,41 +311,130 @@ public class Client implements Runnable {
 		//      is not equivalent to slot number. NOPs can be slotted and they
 		// 		should not appear in this output OR cause gaps in the sequence
 		//		numbers of the output.
-		Logger.getInstance().println("\nCHAT LOG of client " + this.id + ":");
+		Logger.getInstance().info("\nCHAT LOG of client {}:", this.id);
 		
-		synchronized(this.chatLog)
+		// The chat log is kept in slot order, and can be read while the
+		// client thread adds to it, so no sort and no lock.
+		int i = 0;
+		for (StateEntry currEntry : this.chatLog.getEntries())
 		{
-			ArrayList<StateEntry> entries = this.chatLog.getState();
-			Collections.sort(entries);
+			System.out.println(i + " " 
+					+ currEntry.getCommand().getClientId() + ": " 
+					+ currEntry.getCommand().getOperation());
+			i++;
+		}
+		Logger.getInstance().println("");
+	}
+	
+	
+	/**
+	 * Adds the given entry to the chat log, unless we already have it.
+	 * 
+	 * @param entry, the entry.
+	 */
+	private void addToChatLog(StateEntry entry)
+	{
+		this.chatLog.addToState(entry);
+	}
+	
+	
+	/**
+	 * Applies an update of the subscription stream, and acknowledges it to
+	 * all servers (whichever replica is designated next resumes from our
+	 * ack).  An update starting past what we have means one went missing:
+	 * ask its sender to resend from there.
+	 * 
+	 * @param update, the update.
+	 */
+	private void handleSubscriptionUpdate(SubscriptionUpdate update)
+	{
+		// Only the designated replica streams, and it is on the leader.
+		this.leaderHint = update.getSenderId();
+		
+		if (update.getFromSlot() > this.subscribedThrough)
+		{
+			this.network.sendMsgToServer(update.getSenderId(), new SubscriptionAck(this.id, this.subscribedThrough, true));
+			return;
+		}
+		
+		ArrayList<StateEntry> entries = update.getEntries();
+		for (int i = 0; i < entries.size(); i++)
+		{
+			this.addToChatLog(entries.get(i));
+		}
+		this.subscribedThrough = Math.max(this.subscribedThrough, update.getThroughSlot());
+		
+		SubscriptionAck ack = new SubscriptionAck(this.id, this.subscribedThrough, false);
+		for (int i = 0; i < this.numServers; i++)
+		{
+			this.network.sendMsgToServer(i, ack);
+		}
+	}
+	
+	
+	/**
+	 * Sends waiting commands, in order, while the window has room.
+	 */
+	private void sendWaiting()
+	{
+		while (!this.waiting.isEmpty() && (this.pending.isEmpty() || this.waiting.peek().getCommand().getCommandId() < this.pending.firstKey() + this.windowSize))
+		{
+			CommandStatus commandStatus = this.waiting.poll();
+			commandStatus.setTimeSent(System.currentTimeMillis());
+			this.pending.put(commandStatus.getCommand().getCommandId(), commandStatus);
 			
-			for (int i = 0; i < entries.size(); i++)
+			// Send this command to the leader if we know it, else to all
+			// servers.
+			if (this.leaderHint >= 0)
 			{
-				StateEntry currEntry = entries.get(i);
-				
-				System.out.println(i + " " 
-						+ currEntry.getCommand().getClientId() + ": " 
-						+ currEntry.getCommand().getOperation());
-				Logger.getInstance().println(i + " " 
-						+ currEntry.getCommand().getClientId() + ": " 
-						+ currEntry.getCommand().getOperation());
+				sendRequestToLeader(commandStatus);
 			}
-			Logger.getInstance().println("");
+			else
+			{
+				sendRequestToAllServers(commandStatus.getCommand());
+				this.scheduleResend(commandStatus);
+			}
+			
+			// Testing
+			//Logger.getInstance().println("Sending: " + commandStatus.getCommand());
 		}
 	}
 	
 	
+	/**
+	 * Re-sends the given command to all servers after RESPONSE_RESEND_PERIOD
+	 * (and every period after that), unless its response comes in first.
+	 * 
+	 * @param commandStatus, the status of the command.
+	 */
+	private void scheduleResend(final CommandStatus commandStatus)
+	{
+		commandStatus.setResendTimer(this.timers.schedule(Client.RESPONSE_RESEND_PERIOD, () -> {
+			// We must re-send this request!
+			// Send this command to all servers.
+			sendRequestToAllServers(commandStatus.getCommand());
+			this.scheduleResend(commandStatus);
+			
+			// Testing.
+			Logger.getInstance().debug("Re-sending: {}", commandStatus.getCommand());
+		}));
+	}
+	
+	
 	/**
 	 * Returns an ArrayList<Message> of the messages received over the
-	 * network at the time this method is called.
+	 * network, waiting up to the given time if none have arrived yet.
+	 * 
+	 * @param timeoutNanos, how long (in ns) to wait for messages.
 	 * 
 	 * @return an ArrayList<Message> of the messages received over the
-	 * network at the time this method is called.
+	 * network, possibly empty if the time passed.
 	 */
-	private ArrayList<Message> getNetworkMessages()
+	private ArrayList<Message> getNetworkMessages(long timeoutNanos)
 	{
 		ArrayList<Message> messagesFromNet = new ArrayList<Message>();
 		
-		List<Message> received = this.network.getReceived();
+		List<Message> received = this.network.pollReceived(timeoutNanos);
 		for (Iterator<Message> i = received.iterator(); i.hasNext();)
 		{
 			messagesFromNet.add(i.next());
@@ -322,33 +445,29 @@ public class Client implements Runnable {
 	
 	
 	/**
-	 * Returns messages sent from the master at the time this method is
-	 * called.
+	 * Sends the given command to the server believed to be the leader.  If
+	 * no response comes within LEADER_RESPONSE_TIMEOUT, that server is no
+	 * longer trusted as the leader, and the command goes to all servers.
 	 * 
-	 * @return messages sent from the master at the time this method is
-	 * called.
+	 * @param commandStatus, the status of the command.
 	 */
-	private ArrayList<String> getMasterMessages()
+	private void sendRequestToLeader(final CommandStatus commandStatus)
 	{
-		ArrayList<String> messagesFromMaster = new ArrayList<String>();
+		final int leader = this.leaderHint;
+		this.network.sendMsgToServer(leader, new Request(commandStatus.getCommand()));
 		
-		// Continuously listen for client commands from the master.
-		synchronized(this.clientReceiveQueue)
-		{	
-			for (Iterator<String> i = this.clientReceiveQueue.iterator(); i.hasNext();)
+		commandStatus.setResendTimer(this.timers.schedule(Client.LEADER_RESPONSE_TIMEOUT, () -> {
+			if (this.leaderHint == leader)
 			{
-				String msg = i.next();
-				i.remove();
-				
-				// Process this message outside of the iterator loop.
-				messagesFromMaster.add(msg);
+				this.leaderHint = -1;
 			}
-		}
-		
-		return messagesFromMaster;
+			
+			sendRequestToAllServers(commandStatus.getCommand());
+			this.scheduleResend(commandStatus);
+		}));
 	}
 	
-
+	
 	/**
 	 * With the given command, send a request to all servers.
 	 * 
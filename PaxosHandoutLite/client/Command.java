@@ -12,11 +12,14 @@ public class Command implements Serializable
 {
 	private static final long serialVersionUID = 1L;
 	
-	private int clientId;
-	private int commandId;
+	private final int clientId;
+	private final int commandId;
 	
 	// Operations are just messages to add to the chat for this project.
-	private String operation;
+	private final String operation;
+	
+	// Computed on the first call to hashCode(); 0 until then.
+	private transient int hash;
 	
 	public Command(int clientId, int commandId, String operation)
 	{
@@ -96,4 +99,16 @@ public class Command implements Serializable
 		
 		return false;
 	}
+	
+	@Override
+	public int hashCode()
+	{
+		int h = this.hash;
+		if (h == 0)
+		{
+			h = 31 * (31 * this.clientId + this.commandId) + this.operation.hashCode();
+			this.hash = h;
+		}
+		return h;
+	}
 }
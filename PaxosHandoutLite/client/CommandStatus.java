@@ -1,5 +1,10 @@
 package client;
 
+import java.util.concurrent.CompletableFuture;
+
+import server.StateEntry;
+import server.TimerWheel;
+
 /**
  * Used to keep track of when a command was sent, when (if) its response
  * has been received, etc.
@@ -12,54 +17,51 @@ public class CommandStatus
 	private Command command;
 	
 	// The time (in milliseconds) this command was requested (sent to all
-	// servers).
+	// servers), or -1 if it is still waiting for room in the window.
 	private long timeSent;
 	
-	// If a response for this command was received yet.
-	private boolean responseReceived;
+	// Completed with the command's result when its response is received.
+	private CompletableFuture<StateEntry> completion;
 	
+	// Re-sends this command if no response comes in.
+	private TimerWheel.Timer resendTimer;
 	
-	// When we should check if this command needs to be re-sent next.
-	private long nextCheckTime;
-	
-	public CommandStatus(Command command, long timeSent, long nextCheckTime)
+	public CommandStatus(Command command)
 	{
 		this.command = command;
-		this.timeSent = timeSent;
+		this.timeSent = -1;
 		
 		// This command has not been responded to yet.
-		this.responseReceived = false;
-		
-		this.nextCheckTime = nextCheckTime;
+		this.completion = new CompletableFuture<StateEntry>();
 	}
 	
-	public void setResponseReceived()
+	public Command getCommand()
 	{
-		this.responseReceived = true;
+		return this.command;
 	}
 	
-	public boolean getResponseReceived()
+	public void setTimeSent(long timeSent)
 	{
-		return this.responseReceived;
+		this.timeSent = timeSent;
 	}
 	
-	public Command getCommand()
+	public long getTimeSent()
 	{
-		return this.command;
+		return this.timeSent;
 	}
 	
-	public long getTimeSent()
+	public CompletableFuture<StateEntry> getCompletion()
 	{
-		return this.timeSent;
+		return this.completion;
 	}
 	
-	public void setNextCheckTime(long nextCheckTime)
+	public void setResendTimer(TimerWheel.Timer resendTimer)
 	{
-		this.nextCheckTime = nextCheckTime;
+		this.resendTimer = resendTimer;
 	}
 	
-	public long getNextCheckTime()
+	public TimerWheel.Timer getResendTimer()
 	{
-		return this.nextCheckTime;
+		return this.resendTimer;
 	}
 }
@@ -43,6 +43,22 @@ public class Config {
 		} else {
 			logger.info("procNum not loaded from file");
 		}
+		
+		if (prop.getProperty("WireFormat") != null) {
+			wireFormat = WireFormat.valueOf(prop.getProperty("WireFormat").trim().toUpperCase());
+		}
+		
+		if (prop.getProperty("Transport") != null) {
+			transport = Transport.valueOf(prop.getProperty("Transport").trim().toUpperCase());
+		}
+		
+		if (prop.getProperty("LogDir") != null) {
+			logDir = prop.getProperty("LogDir").trim();
+		}
+		
+		if (prop.getProperty("WindowSize") != null) {
+			windowSize = loadInt(prop, "WindowSize");
+		}
 	}
 	
 	private int loadInt(Properties prop, String s) {
@@ -76,6 +92,41 @@ public class Config {
 	 */
 	public int procNum;
 	
+	/**
+	 * How messages are encoded on the wire.  BINARY uses message.MessageCodec;
+	 * JAVA falls back to Java object serialization.  All hosts must agree.
+	 */
+	public WireFormat wireFormat = WireFormat.BINARY;
+	
+	public enum WireFormat {
+		BINARY,
+		JAVA
+	}
+	
+	/**
+	 * How NetController moves frames.  SOCKETS uses a blocking thread per
+	 * connection; NIO multiplexes all connections on one selector thread.
+	 */
+	public Transport transport = Transport.SOCKETS;
+	
+	public enum Transport {
+		SOCKETS,
+		NIO
+	}
+	
+	/**
+	 * Directory the servers keep their durable logs under.  Relative paths
+	 * are relative to the working directory.
+	 */
+	public String logDir = ".";
+	
+	/**
+	 * How far past its oldest unanswered command (by cid) a client may
+	 * send.  Replicas remember the slots of that many performed commands
+	 * per client to answer re-sends, so all hosts must agree.
+	 */
+	public int windowSize = 1000;
+	
 	/**
 	 * Logger.  Mainly used for console printing, though be diverted to a file.
 	 * Verbosity can be restricted by raising level to WARN
@@ -0,0 +1,63 @@
+package framework;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frames received by a NetController, waiting for its owner to pick them
+ * up.  The Master crashes a server with Thread.stop() and the restarted
+ * server reuses the same NetController, so the inbox has to stay usable
+ * no matter where its reader was killed.  Hence a lock-free queue, with
+ * readers sleeping on a plain monitor (which Thread.stop() releases)
+ * instead of on a BlockingQueue's internal locks (which it can wedge).
+ */
+class Inbox {
+	private final ConcurrentLinkedQueue<byte[]> queue = new ConcurrentLinkedQueue<byte[]>();
+	private final Object lock = new Object();
+
+	// Set while a reader is (about to be) waiting, so writers only take
+	// the monitor when there is someone to notify.
+	private volatile boolean waiting = false;
+
+	void offer(byte[] msg) {
+		queue.offer(msg);
+		if (waiting) {
+			synchronized (lock) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Moves everything queued so far into out, in arrival order.
+	 */
+	void drainTo(List<byte[]> out) {
+		byte[] msg;
+		while ((msg = queue.poll()) != null)
+			out.add(msg);
+	}
+
+	/**
+	 * Waits up to timeoutNanos for something to be queued.  Returns right
+	 * away if something already is.
+	 */
+	void await(long timeoutNanos) throws InterruptedException {
+		if (!queue.isEmpty() || timeoutNanos <= 0)
+			return;
+
+		synchronized (lock) {
+			waiting = true;
+			try {
+				long deadline = System.nanoTime() + timeoutNanos;
+				long remaining = timeoutNanos;
+				while (queue.isEmpty() && remaining > 0) {
+					TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+					remaining = deadline - System.nanoTime();
+				}
+			} finally {
+				waiting = false;
+			}
+		}
+	}
+}
@@ -8,62 +8,51 @@
 package framework;
 
 import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Arrays;
 
 public class IncomingSock extends Thread {
-	final static String MSG_SEP = "&";
 	Socket sock;
-	InputStream in;
+	DataInputStream in;
 	private volatile boolean shutdownSet;
-	private final ConcurrentLinkedQueue<String> queue;
-	int bytesLastChecked = 0;
+	private final Inbox queue;
 	
-	protected IncomingSock(Socket sock) throws IOException {
+	// Frame payloads are read into this buffer, which only grows when a
+	// larger frame arrives.
+	private byte[] frameBuf = new byte[1024];
+	
+	protected IncomingSock(Socket sock, Inbox queue) throws IOException {
 		this.sock = sock;
-		in = new BufferedInputStream(sock.getInputStream());
-		//in = sock.getInputStream();
+		in = new DataInputStream(new BufferedInputStream(sock.getInputStream()));
 		sock.shutdownOutput();
-		queue = new ConcurrentLinkedQueue<String>();
-	}
-	
-	protected List<String> getMsgs() {
-		List<String> msgs = new ArrayList<String>();
-		String tmp;
-		while((tmp = queue.poll()) != null)
-			msgs.add(tmp);
-		return msgs;
+		this.queue = queue;
 	}
 	
+	/**
+	 * Reads length-prefixed frames (see OutgoingSock.sendMsg) until the
+	 * peer closes the socket or we are shut down.  Reads block, so a frame
+	 * is queued as soon as its last byte arrives.
+	 */
 	public void run() {
 		while (!shutdownSet) {
 			try {
-				int avail = in.available();
-				if (avail == bytesLastChecked) {
-					sleep(10);
-				} else {
-					in.mark(avail);
-					byte[] data = new byte[avail];
-					in.read(data);
-					String dataStr = new String(data);
-					int curPtr = 0;
-					int curIdx;
-					while ((curIdx = dataStr.indexOf(MSG_SEP, curPtr)) != -1) {
-						queue.offer(dataStr.substring(curPtr, curIdx));
-						curPtr = curIdx + 1;
-					}
-					in.reset();
-					in.skip(curPtr);
-					bytesLastChecked = avail - curPtr;
-				}
+				int len = in.readInt();
+				if (len < 0 || len > OutgoingSock.MAX_FRAME_LEN)
+					throw new IOException("Bad frame length " + len);
+				if (len > frameBuf.length)
+					frameBuf = new byte[Math.max(len, 2 * frameBuf.length)];
+				in.readFully(frameBuf, 0, len);
+				queue.offer(Arrays.copyOf(frameBuf, len));
+			} catch (EOFException e) {
+				// Peer closed its end.
+				break;
 			} catch (IOException e) {
-				e.printStackTrace();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+				if (!shutdownSet)
+					e.printStackTrace();
+				break;
 			}
 		}
 		
@@ -72,6 +61,9 @@ public class IncomingSock extends Thread {
 	
 	public void cleanShutdown() {
 		shutdownSet = true;
+		
+		// Unblock a pending read.
+		try { sock.close(); } catch (IOException e) {}
 	}
 	
 	protected void shutdown() {
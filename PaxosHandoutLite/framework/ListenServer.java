@@ -18,12 +18,14 @@ public class ListenServer extends Thread {
 	final int port;
 	final int procNum;
 	final List<IncomingSock> socketList;
+	final Inbox inbox;
 	final Config conf;
 	final ServerSocket serverSock;
 
-	protected ListenServer(Config conf, List<IncomingSock> sockets) {
+	protected ListenServer(Config conf, List<IncomingSock> sockets, Inbox inbox) {
 		this.conf = conf;
 		this.socketList = sockets;
+		this.inbox = inbox;
 
 		procNum = conf.procNum;
 		port = conf.ports[procNum];
@@ -44,7 +46,7 @@ public class ListenServer extends Thread {
 		while (!killSig) {
 			try {
 				IncomingSock incomingSock = new IncomingSock(
-						serverSock.accept());
+						serverSock.accept(), inbox);
 				socketList.add(incomingSock);
 				incomingSock.start();
 				//conf.logger.fine(String.format(
@@ -17,18 +17,16 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.net.Socket;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
-import java.util.logging.Level;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import log.Logger;
 import message.HeartBeat;
 import message.Message;
+import message.MessageCodec;
 
 /**
  * Public interface for managing network connections.
@@ -39,9 +37,20 @@ import message.Message;
 public class NetController {
 	private final Config config;
 	private final List<IncomingSock> inSockets;
-	private final OutgoingSock[] outSockets;
+	private final AtomicReferenceArray<PeerWriter> writers;
 	private final ListenServer listener;
 	
+	// Used instead of the sockets above when the Config selects NIO.
+	private final NioTransport nio;
+	
+	// Payloads received on any connection, in arrival order.  The socket
+	// readers (or the NIO thread) put frames here, which is what lets
+	// pollReceived() block until something arrives.
+	private final Inbox inbox;
+	
+	// Put in the inbox by wakeup() to end a pollReceived() early.
+	private static final byte[] WAKEUP = new byte[0];
+	
 	// MIKE: added.
 	private long lastTimeMessageSent;
 	
@@ -50,10 +59,20 @@ public class NetController {
 	
 	public NetController(Config config, int numClients) {
 		this.config = config;
-		inSockets = Collections.synchronizedList(new ArrayList<IncomingSock>());
-		listener = new ListenServer(config, inSockets);
-		outSockets = new OutgoingSock[config.numProcesses];
-		listener.start();
+		inbox = new Inbox();
+		if (config.transport == Config.Transport.NIO) {
+			nio = new NioTransport(config, inbox);
+			inSockets = null;
+			listener = null;
+			writers = null;
+			nio.start();
+		} else {
+			nio = null;
+			inSockets = Collections.synchronizedList(new ArrayList<IncomingSock>());
+			listener = new ListenServer(config, inSockets, inbox);
+			writers = new AtomicReferenceArray<PeerWriter>(config.numProcesses);
+			listener.start();
+		}
 		
 		// MIKE: added.
 		this.numClients = numClients;
@@ -68,70 +87,79 @@ public class NetController {
 		return this.lastTimeMessageSent;
 	}
 	
-	// Establish outgoing connection to a process
-	private synchronized void initOutgoingConn(int proc) throws IOException {
-		
-		// MIKE: Make sure this is only called once per outgoing connection.
-		if (outSockets[proc] != null)
-			throw new IllegalStateException("proc " + proc + " not null");
-		
-		// MIKE: config.addresses[proc] can just be localhost.
-		// MIKE: pulls the port for this new connection from config.ports array.
-		outSockets[proc] = new OutgoingSock(new Socket(config.addresses[proc], config.ports[proc]));
-		//config.logger.info(String.format("Server %d: Socket to %d established", 
-		//		config.procNum, proc));
+	/**
+	 * @return the directory this process keeps its durable logs under.
+	 */
+	public String getLogDir() {
+		return config.logDir;
 	}
 	
 	/**
-	 * Send a msg to another process.  This will establish a socket if one is not created yet.
-	 * Will fail if recipient has not set up their own NetController (and its associated serverSocket)
-	 * @param process int specified in the config file - 0 based
-	 * @param msg Do not use the "&" character.  This is hardcoded as a message separator. 
-	 *            Sends as ASCII.  Include the sending server ID in the message
-	 * @return bool indicating success
+	 * @return the client window size all processes agree on.
 	 */
-	public synchronized boolean sendMsg(int process, String msg) {
-		
-		try {
-			if (outSockets[process] == null)
-				initOutgoingConn(process);
-			outSockets[process].sendMsg(msg);
-		} catch (IOException e) { 
-			if (outSockets[process] != null) {
-				outSockets[process].cleanShutdown();
-				outSockets[process] = null;
-				try{
-					initOutgoingConn(process);
-                        		outSockets[process].sendMsg(msg);	
-				} catch(IOException e1){
-					if (outSockets[process] != null) {
-						outSockets[process].cleanShutdown();
-	                	outSockets[process] = null;
-					}
-					config.logger.info(String.format("Server %d: Msg to %d failed.",
-                        config.procNum, process));
-        		    config.logger.log(Level.FINE, String.format("Server %d: Socket to %d error",
-                        config.procNum, process), e);
-                    return false;
-				}
-				return true;
+	public int getWindowSize() {
+		return config.windowSize;
+	}
+	
+	// Returns the writer for a process, starting it on first use.  Writers
+	// are created with a CAS so senders never take a lock.
+	private PeerWriter getWriter(int proc) {
+		PeerWriter writer = writers.get(proc);
+		if (writer == null) {
+			PeerWriter created = new PeerWriter(config, proc);
+			if (writers.compareAndSet(proc, null, created)) {
+				created.start();
+				writer = created;
+			} else {
+				writer = writers.get(proc);
 			}
-			config.logger.info(String.format("Server %d: Msg to %d failed.", 
-				config.procNum, process));
-			config.logger.log(Level.FINE, String.format("Server %d: Socket to %d error", 
-				config.procNum, process), e);
-			return false;
 		}
+		return writer;
+	}
+	
+	/**
+	 * Send a msg to another process.  The message is queued on that process'
+	 * outbound channel and this returns immediately; the channel establishes
+	 * (or re-establishes) the connection.  Messages are dropped if the
+	 * recipient has not set up their own NetController (and its associated serverSocket)
+	 * @param process int specified in the config file - 0 based
+	 * @param msg Sends as ASCII.  Include the sending server ID in the message
+	 * @return bool indicating success
+	 */
+	public boolean sendMsg(int process, String msg) {
+		return sendMsg(process, msg.getBytes());
+	}
+	
+	/**
+	 * Send raw bytes to another process.  See sendMsg(int, String).
+	 * @param process int specified in the config file - 0 based
+	 * @param msg the payload; may contain any byte values
+	 * @return bool indicating the message was queued
+	 */
+	public boolean sendMsg(int process, byte[] msg) {
+		if (nio != null)
+			return nio.sendMsg(process, msg);
+		getWriter(process).enqueue(msg);
 		return true;
 	}
 	
-	private static String toString(Serializable o) throws IOException 
+	private static byte[] toBytes(Serializable o) throws IOException 
 	{
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		ObjectOutputStream oos = new ObjectOutputStream(out);
 		oos.writeObject(o);
 		oos.close();
-		return Base64.getEncoder().encodeToString(out.toByteArray());
+		return out.toByteArray();
+	}
+	
+	// Encode a message in the wire format selected in the Config.
+	private byte[] encode(Message msg) throws IOException
+	{
+		if (config.wireFormat == Config.WireFormat.JAVA)
+		{
+			return toBytes((Serializable)msg);
+		}
+		return MessageCodec.encode(msg);
 	}
 	
 	// MIKE: changed for Paxos.
@@ -143,12 +171,11 @@ public class NetController {
 		
 		try
 		{
-			return sendMsg(this.getClientNetControllerIndex(process), toString((Serializable)msg));
+			return sendMsg(this.getClientNetControllerIndex(process), encode(msg));
 		}
 		catch (Exception exc)
 		{
-			Logger.getInstance().println(exc.getMessage());
-			Logger.getInstance().println("ERROR: IOException while sending message.");
+			Logger.getInstance().error("ERROR: IOException while sending message: {}", exc.getMessage());
 			return false;
 		}
 	}
@@ -165,58 +192,94 @@ public class NetController {
 		
 		try
 		{
-			return sendMsg(this.getServerNetControllerIndex(process), toString((Serializable)msg));
+			return sendMsg(this.getServerNetControllerIndex(process), encode(msg));
 		}
 		catch (Exception exc)
 		{
-			Logger.getInstance().println(exc.getMessage());
-			Logger.getInstance().println("ERROR: IOException while sending message.");
+			Logger.getInstance().error("ERROR: IOException while sending message: {}", exc.getMessage());
 			return false;
 		}
 	}
 	
 	/**
 	 * Return a list of msgs received on established incoming sockets
-	 * @return list of messages sorted by socket, in FIFO order. *not sorted by time received*
+	 * @return list of messages in the order they were received
 	 */
-	public synchronized List<String> getReceivedMsgs() {
-		List<String> objs = new ArrayList<String>();
-		synchronized(inSockets) {
-			ListIterator<IncomingSock> iter  = inSockets.listIterator();
-			while (iter.hasNext()) {
-				IncomingSock curSock = iter.next();
-				try {
-					objs.addAll(curSock.getMsgs());
-				} catch (Exception e) {
-					config.logger.log(Level.INFO, 
-							"Server " + config.procNum + " received bad data on a socket", e);
-					curSock.cleanShutdown();
-					iter.remove();
-				}
-			}
+	public List<byte[]> getReceivedMsgs() {
+		List<byte[]> objs = new ArrayList<byte[]>();
+		inbox.drainTo(objs);
+		objs.removeIf(m -> m == WAKEUP);
+		return objs;
+	}
+	
+	/**
+	 * Like getReceivedMsgs(), but if nothing has been received yet, waits
+	 * up to timeoutNanos for a message to arrive (or for wakeup()).
+	 * @return list of messages in the order they were received; empty if
+	 *         the timeout expired
+	 */
+	public List<byte[]> pollReceivedMsgs(long timeoutNanos) {
+		List<byte[]> objs = new ArrayList<byte[]>();
+		try {
+			inbox.await(timeoutNanos);
+			inbox.drainTo(objs);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
-		
+		objs.removeIf(m -> m == WAKEUP);
 		return objs;
 	}
 	
-	private static Object fromString(String s) throws IOException, ClassNotFoundException 
+	/**
+	 * Makes a pending (or the next) pollReceived() return immediately.
+	 * Used when a thread blocked on the network has other work to do,
+	 * e.g. a command from the Master.
+	 */
+	public void wakeup() {
+		inbox.offer(WAKEUP);
+	}
+	
+	private static Object fromBytes(byte[] data) throws IOException, ClassNotFoundException 
 	{
-		byte[] data = Base64.getDecoder().decode(s);
 		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
 		Object o = in.readObject();
 		in.close();
 		return o;
 	}
 	
+	// Decode a message in the wire format selected in the Config.
+	private Object decode(byte[] data) throws IOException, ClassNotFoundException
+	{
+		if (config.wireFormat == Config.WireFormat.JAVA)
+		{
+			return fromBytes(data);
+		}
+		return MessageCodec.decode(data);
+	}
+	
 	public List<Message> getReceived() 
 	{
-		List<String> msgs = getReceivedMsgs();
+		return decodeAll(getReceivedMsgs());
+	}
+	
+	/**
+	 * Returns the messages received so far, waiting up to timeoutNanos if
+	 * there are none.  Returns early, possibly with an empty list, if
+	 * wakeup() is called.
+	 */
+	public List<Message> pollReceived(long timeoutNanos)
+	{
+		return decodeAll(pollReceivedMsgs(timeoutNanos));
+	}
+	
+	private List<Message> decodeAll(List<byte[]> msgs)
+	{
 		List<Message> received = new ArrayList<Message>();
-		for(Iterator<String> i = msgs.iterator(); i.hasNext();)
+		for(Iterator<byte[]> i = msgs.iterator(); i.hasNext();)
 		{
 			try
 			{
-				Object r = fromString(i.next());
+				Object r = decode(i.next());
 				if (r instanceof Message)
 				{
 					received.add((Message)r);
@@ -224,12 +287,12 @@ public class NetController {
 			}
 			catch(IOException exc)
 			{
-				Logger.getInstance().println("ERROR: I/O while receiving message.");
+				Logger.getInstance().error("ERROR: I/O while receiving message.");
 				exc.printStackTrace();
 			}
 			catch(ClassNotFoundException exc)
 			{
-				Logger.getInstance().println("ERROR: Class not found while receiving message.");
+				Logger.getInstance().error("ERROR: Class not found while receiving message.");
 			}
 		}
 		return received;
@@ -239,16 +302,21 @@ public class NetController {
 	 * Shuts down threads and sockets.
 	 */
 	public synchronized void shutdown() {
+		if (nio != null) {
+			nio.cleanShutdown();
+			return;
+		}
+		
 		listener.cleanShutdown();
         if(inSockets != null) {
 		    for (IncomingSock sock : inSockets)
 			    if(sock != null)
                     sock.cleanShutdown();
         }
-		if(outSockets != null) {
-            for (OutgoingSock sock : outSockets)
-			    if(sock != null)
-                    sock.cleanShutdown();
+		if(writers != null) {
+            for (int i = 0; i < writers.length(); i++)
+			    if(writers.get(i) != null)
+                    writers.get(i).cleanShutdown();
         }	
 	}
 	
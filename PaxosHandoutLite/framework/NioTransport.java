@@ -0,0 +1,386 @@
+package framework;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Alternative transport for NetController which multiplexes every incoming
+ * and outgoing connection of this process on a single Selector thread,
+ * instead of one blocking thread per socket.
+ *
+ * The wire format is the same length-prefixed framing used by OutgoingSock
+ * and IncomingSock, so processes using either transport can talk to each
+ * other.  Like the socket transport, connections are one-directional: we
+ * only write on channels we opened and only read on channels we accepted.
+ */
+public class NioTransport extends Thread {
+	// Size of the direct buffers used for socket I/O.  They grow if a
+	// single frame does not fit.
+	private static final int BUF_SIZE = 64 * 1024;
+
+	// Reconnect backoff, in ms, as in PeerWriter.  Doubles after every
+	// failed connect and resets once a message gets through.
+	private static final long MIN_BACKOFF = 10;
+	private static final long MAX_BACKOFF = 1000;
+
+	private final Config conf;
+	private final Selector selector;
+	private final ServerSocketChannel serverChannel;
+	private final Peer[] peers;
+
+	// Payloads of complete frames received on any channel.
+	private final Inbox received;
+
+	// Peers which have had messages queued since the selector thread last
+	// looked at them.
+	private final ConcurrentLinkedQueue<Peer> dirtyPeers;
+
+	private volatile boolean killSig = false;
+
+	/**
+	 * Outgoing connection state for one process.  The queue is filled by
+	 * senders; everything else is only touched by the selector thread.
+	 */
+	private static class Peer {
+		final int proc;
+		final ConcurrentLinkedQueue<ByteBuffer> queue = new ConcurrentLinkedQueue<ByteBuffer>();
+		final AtomicBoolean scheduled = new AtomicBoolean(false);
+		SocketChannel channel;
+		SelectionKey key;
+		ByteBuffer out = ByteBuffer.allocateDirect(BUF_SIZE);
+		long backoff = MIN_BACKOFF;
+
+		// Frames copied into out but not yet completely written, oldest
+		// first, and how much of the oldest has been written.  If the
+		// connection breaks, they are resent on the next one.
+		final ArrayDeque<ByteBuffer> unsent = new ArrayDeque<ByteBuffer>();
+		int firstWritten = 0;
+
+		// Frames to send before anything in queue, after a reconnect.
+		final ArrayDeque<ByteBuffer> resend = new ArrayDeque<ByteBuffer>();
+
+		// While disconnected, messages queued before this time are dropped
+		// instead of trying to connect for each one.
+		long nextConnectTime = 0;
+
+		Peer(int proc) {
+			this.proc = proc;
+		}
+	}
+
+	/**
+	 * Partially read data on an accepted channel.
+	 */
+	private static class Inbound {
+		ByteBuffer buf = ByteBuffer.allocateDirect(BUF_SIZE);
+	}
+
+	protected NioTransport(Config conf, Inbox received) {
+		super("NioTransport-" + conf.procNum);
+		this.conf = conf;
+		this.received = received;
+		this.dirtyPeers = new ConcurrentLinkedQueue<Peer>();
+		this.peers = new Peer[conf.numProcesses];
+		for (int i = 0; i < peers.length; i++)
+			peers[i] = new Peer(i);
+
+		int port = conf.ports[conf.procNum];
+		try {
+			selector = Selector.open();
+			serverChannel = ServerSocketChannel.open();
+			serverChannel.bind(new InetSocketAddress(port));
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			String errStr = String.format(
+					"Server %d: [FATAL] Can't open server port %d", conf.procNum,
+					port);
+			conf.logger.log(Level.SEVERE, errStr);
+			throw new Error(errStr);
+		}
+	}
+
+	/**
+	 * Queues a message for a process.  The selector thread connects to the
+	 * process if needed and writes the message out.
+	 * @return true; connection failures are only seen by the selector thread
+	 */
+	protected boolean sendMsg(int process, byte[] msg) {
+		ByteBuffer frame = ByteBuffer.allocate(4 + msg.length);
+		frame.putInt(msg.length);
+		frame.put(msg);
+		frame.flip();
+
+		Peer peer = peers[process];
+		peer.queue.offer(frame);
+		if (peer.scheduled.compareAndSet(false, true)) {
+			dirtyPeers.offer(peer);
+			selector.wakeup();
+		}
+		return true;
+	}
+
+	public void run() {
+		while (!killSig) {
+			try {
+				selector.select();
+			} catch (IOException e) {
+				conf.logger.log(Level.INFO, String.format(
+						"Server %d: Selector failed", conf.procNum), e);
+				break;
+			}
+
+			Peer dirty;
+			while ((dirty = dirtyPeers.poll()) != null)
+				schedule(dirty);
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				if (!key.isValid())
+					continue;
+
+				if (key.isAcceptable()) {
+					accept();
+				} else if (key.attachment() instanceof Inbound) {
+					read(key, (Inbound) key.attachment());
+				} else {
+					Peer peer = (Peer) key.attachment();
+					if (key.isConnectable())
+						finishConnect(peer);
+					else if (key.isWritable())
+						write(peer);
+				}
+			}
+		}
+
+		closeAll();
+	}
+
+	protected void cleanShutdown() {
+		killSig = true;
+		selector.wakeup();
+	}
+
+	private void accept() {
+		try {
+			SocketChannel ch = serverChannel.accept();
+			if (ch == null)
+				return;
+			ch.configureBlocking(false);
+			ch.register(selector, SelectionKey.OP_READ, new Inbound());
+		} catch (IOException e) {
+			conf.logger.log(Level.INFO, String.format(
+					"Server %d: Incoming socket failed", conf.procNum), e);
+		}
+	}
+
+	private void read(SelectionKey key, Inbound in) {
+		SocketChannel ch = (SocketChannel) key.channel();
+		try {
+			if (ch.read(in.buf) < 0) {
+				close(key);
+				return;
+			}
+
+			in.buf.flip();
+			while (in.buf.remaining() >= 4) {
+				int len = in.buf.getInt(in.buf.position());
+				if (len < 0 || len > OutgoingSock.MAX_FRAME_LEN)
+					throw new IOException("Bad frame length " + len);
+
+				if (in.buf.remaining() < 4 + len) {
+					if (4 + len > in.buf.capacity()) {
+						ByteBuffer bigger = ByteBuffer.allocateDirect(4 + len);
+						bigger.put(in.buf);
+						bigger.flip();
+						in.buf = bigger;
+					}
+					break;
+				}
+
+				in.buf.getInt();
+				byte[] msg = new byte[len];
+				in.buf.get(msg);
+				received.offer(msg);
+			}
+
+			// Once a frame too large for the default buffer is consumed,
+			// go back to one, rather than pin the large one for good.
+			int pending = in.buf.remaining() >= 4 ? 4 + in.buf.getInt(in.buf.position()) : in.buf.remaining();
+			if (in.buf.capacity() > BUF_SIZE && pending <= BUF_SIZE && in.buf.remaining() <= BUF_SIZE) {
+				ByteBuffer smaller = ByteBuffer.allocateDirect(BUF_SIZE);
+				smaller.put(in.buf);
+				in.buf = smaller;
+			} else {
+				in.buf.compact();
+			}
+		} catch (IOException e) {
+			conf.logger.log(Level.INFO,
+					"Server " + conf.procNum + " received bad data on a socket", e);
+			close(key);
+		}
+	}
+
+	// Called on the selector thread for a peer with newly queued messages.
+	private void schedule(Peer peer) {
+		peer.scheduled.set(false);
+
+		if (peer.channel != null) {
+			if (peer.key.isValid() && peer.channel.isConnected())
+				peer.key.interestOps(SelectionKey.OP_WRITE);
+			return;
+		}
+
+		if (System.currentTimeMillis() < peer.nextConnectTime) {
+			conf.logger.info(String.format("Server %d: %d msgs to %d failed.",
+					conf.procNum, peer.resend.size() + peer.queue.size(), peer.proc));
+			peer.resend.clear();
+			peer.queue.clear();
+			return;
+		}
+
+		try {
+			peer.channel = SocketChannel.open();
+			peer.channel.configureBlocking(false);
+			boolean connected = peer.channel.connect(
+					new InetSocketAddress(conf.addresses[peer.proc], conf.ports[peer.proc]));
+			peer.key = peer.channel.register(selector,
+					connected ? SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT, peer);
+		} catch (IOException e) {
+			fail(peer, e);
+		}
+	}
+
+	private void finishConnect(Peer peer) {
+		try {
+			peer.channel.finishConnect();
+			peer.key.interestOps(SelectionKey.OP_WRITE);
+		} catch (IOException e) {
+			fail(peer, e);
+		}
+	}
+
+	/**
+	 * Copies as many queued frames as fit into the peer's direct buffer and
+	 * writes them out, until the queue is empty or the socket is full.
+	 * Frames to resend after a reconnect go first.
+	 */
+	private void write(Peer peer) {
+		try {
+			while (true) {
+				ByteBuffer next;
+				while ((next = nextFrame(peer)) != null
+						&& next.remaining() <= peer.out.remaining()) {
+					ByteBuffer frame = peer.resend.isEmpty() ? peer.queue.poll() : peer.resend.poll();
+					peer.out.put(frame);
+					peer.unsent.add(frame);
+				}
+
+				if (peer.out.position() == 0) {
+					if (next == null)
+						break;
+
+					// A single frame larger than the buffer.
+					peer.out = ByteBuffer.allocateDirect(next.remaining());
+					continue;
+				}
+
+				peer.out.flip();
+				written(peer, peer.channel.write(peer.out));
+				boolean drained = !peer.out.hasRemaining();
+				peer.out.compact();
+				peer.backoff = MIN_BACKOFF;
+				if (!drained)
+					return;
+
+				// The buffer grown for a large frame is empty again.
+				if (peer.out.capacity() > BUF_SIZE)
+					peer.out = ByteBuffer.allocateDirect(BUF_SIZE);
+			}
+
+			// Nothing left to write.  New messages re-enable OP_WRITE
+			// through schedule().
+			peer.key.interestOps(0);
+		} catch (IOException e) {
+			// The connection broke; reconnect and resend the frames not
+			// completely written, then whatever is still queued, as
+			// PeerWriter does.
+			for (ByteBuffer frame : peer.unsent)
+				frame.rewind();
+			while (!peer.unsent.isEmpty())
+				peer.resend.addFirst(peer.unsent.pollLast());
+			peer.firstWritten = 0;
+			peer.out.clear();
+			closePeer(peer);
+			if (!peer.resend.isEmpty() || !peer.queue.isEmpty())
+				schedule(peer);
+		}
+	}
+
+	private static ByteBuffer nextFrame(Peer peer) {
+		return peer.resend.isEmpty() ? peer.queue.peek() : peer.resend.peek();
+	}
+
+	// Drops the frames the last write completed from the peer's unsent
+	// frames.
+	private static void written(Peer peer, int numBytes) {
+		while (numBytes > 0) {
+			int left = peer.unsent.peek().limit() - peer.firstWritten;
+			if (numBytes < left) {
+				peer.firstWritten += numBytes;
+				return;
+			}
+			numBytes -= left;
+			peer.unsent.poll();
+			peer.firstWritten = 0;
+		}
+	}
+
+	// Connecting failed: drop what was queued, the way a failed sendMsg
+	// does on the socket transport, and hold off reconnecting.
+	private void fail(Peer peer, IOException e) {
+		conf.logger.info(String.format("Server %d: Msg to %d failed.",
+				conf.procNum, peer.proc));
+		conf.logger.log(Level.FINE, String.format("Server %d: Socket to %d error",
+				conf.procNum, peer.proc), e);
+		peer.queue.clear();
+		peer.resend.clear();
+		peer.unsent.clear();
+		peer.firstWritten = 0;
+		peer.out.clear();
+		closePeer(peer);
+		peer.nextConnectTime = System.currentTimeMillis() + peer.backoff;
+		peer.backoff = Math.min(2 * peer.backoff, MAX_BACKOFF);
+	}
+
+	private void closePeer(Peer peer) {
+		if (peer.channel != null) {
+			try { peer.channel.close(); } catch (IOException e) {}
+		}
+		peer.channel = null;
+		peer.key = null;
+	}
+
+	private void close(SelectionKey key) {
+		key.cancel();
+		try { key.channel().close(); } catch (IOException e) {}
+	}
+
+	private void closeAll() {
+		for (SelectionKey key : selector.keys())
+			close(key);
+		try { selector.close(); } catch (IOException e) {}
+	}
+}
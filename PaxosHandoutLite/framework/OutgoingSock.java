@@ -7,30 +7,50 @@
 
 package framework;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.net.Socket;
 
 public class OutgoingSock {
-	final static byte[] MSG_SEP = "&".getBytes();
+	// Upper bound on a single frame, so a corrupt length prefix cannot make
+	// the receiver allocate an arbitrarily large buffer.
+	final static int MAX_FRAME_LEN = 64 * 1024 * 1024;
 	Socket sock;
-	OutputStream out;
+	DataOutputStream out;
 	
 	protected OutgoingSock(Socket sock) throws IOException {
 		this.sock = sock;
 		
-		out = sock.getOutputStream();
+		out = new DataOutputStream(new BufferedOutputStream(sock.getOutputStream()));
 		sock.shutdownInput();
 	}
 	
 	/** 
-	 * Do not use '&' character.  This is a hardcoded separator
+	 * Sends one message as a frame: a 4-byte big-endian length followed by
+	 * the payload.  The payload may contain any byte values.
 	 * @param msg
 	 * @throws IOException 
 	 */
-	protected synchronized void sendMsg(String msg) throws IOException {
-		out.write(msg.getBytes());
-		out.write(MSG_SEP);
+	protected synchronized void sendMsg(byte[] msg) throws IOException {
+		writeMsg(msg);
+		flush();
+	}
+	
+	/**
+	 * Like sendMsg, but leaves the frame buffered until flush() so several
+	 * frames can go out in one write.
+	 * @param msg
+	 * @throws IOException 
+	 */
+	protected synchronized void writeMsg(byte[] msg) throws IOException {
+		if (msg.length > MAX_FRAME_LEN)
+			throw new IOException("Frame too large: " + msg.length);
+		out.writeInt(msg.length);
+		out.write(msg);
+	}
+	
+	protected synchronized void flush() throws IOException {
 		out.flush();
 	}
 	
@@ -0,0 +1,137 @@
+package framework;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+
+/**
+ * Outbound channel to a single process for the socket transport.  Senders
+ * only enqueue; this thread owns the OutgoingSock, (re)connects when needed
+ * and writes the frames out, so a slow or dead peer never holds up sends
+ * to anyone else.
+ */
+public class PeerWriter extends Thread {
+	// Reconnect backoff, in ms.  Doubles after every failed reconnect and
+	// resets once a flush gets through.
+	private static final long MIN_BACKOFF = 10;
+	private static final long MAX_BACKOFF = 1000;
+
+	// Most frames buffered before a flush, even if more are queued.
+	private static final int MAX_UNFLUSHED = 256;
+
+	private final Config conf;
+	private final int proc;
+	private final LinkedBlockingQueue<byte[]> queue;
+	private volatile boolean killSig = false;
+
+	private OutgoingSock sock;
+	private long backoff = MIN_BACKOFF;
+
+	// Frames written to sock since its last successful flush.  If the
+	// connection breaks they are written again on the new one; the peer
+	// may then see some of them twice, which Paxos tolerates.
+	private final ArrayList<byte[]> unflushed = new ArrayList<byte[]>();
+
+	// While disconnected, messages queued before this time are dropped
+	// instead of retrying the connection for each one.
+	private long nextConnectTime = 0;
+
+	protected PeerWriter(Config conf, int proc) {
+		super("PeerWriter-" + conf.procNum + "-" + proc);
+		this.conf = conf;
+		this.proc = proc;
+		this.queue = new LinkedBlockingQueue<byte[]>();
+	}
+
+	/**
+	 * Queues a message for this peer and returns immediately.
+	 */
+	protected void enqueue(byte[] msg) {
+		queue.offer(msg);
+	}
+
+	public void run() {
+		while (!killSig) {
+			byte[] msg;
+			try {
+				msg = queue.take();
+			} catch (InterruptedException e) {
+				continue;
+			}
+
+			if (sock == null && System.currentTimeMillis() < nextConnectTime) {
+				// Drop this and everything queued behind it.
+				int dropped = 1 + queue.drainTo(new ArrayList<byte[]>());
+				conf.logger.info(String.format("Server %d: %d msgs to %d failed.",
+						conf.procNum, dropped, proc));
+				continue;
+			}
+
+			deliver(msg);
+		}
+
+		if (sock != null)
+			sock.cleanShutdown();
+	}
+
+	protected void cleanShutdown() {
+		killSig = true;
+		interrupt();
+	}
+
+	/**
+	 * Writes one message, flushing once nothing else is queued.  If the
+	 * connection is broken, reconnects and tries once more with every frame
+	 * not yet flushed, since the peer may simply have restarted.  If that
+	 * fails too, those frames are dropped.
+	 */
+	private void deliver(byte[] msg) {
+		unflushed.add(msg);
+		try {
+			sock().writeMsg(msg);
+			if (queue.isEmpty() || unflushed.size() >= MAX_UNFLUSHED)
+				flush();
+			return;
+		} catch (IOException e) {
+			closeSock();
+		}
+
+		try {
+			for (int i = 0; i < unflushed.size(); i++)
+				sock().writeMsg(unflushed.get(i));
+			flush();
+		} catch (IOException e) {
+			closeSock();
+			nextConnectTime = System.currentTimeMillis() + backoff;
+			backoff = Math.min(2 * backoff, MAX_BACKOFF);
+			conf.logger.info(String.format("Server %d: %d msgs to %d failed.",
+					conf.procNum, unflushed.size(), proc));
+			conf.logger.log(Level.FINE, String.format("Server %d: Socket to %d error",
+					conf.procNum, proc), e);
+			unflushed.clear();
+		}
+	}
+
+	private OutgoingSock sock() throws IOException {
+		if (sock == null) {
+			sock = new OutgoingSock(new Socket(conf.addresses[proc], conf.ports[proc]));
+		}
+		return sock;
+	}
+
+	// Only a completed flush counts as getting through.
+	private void flush() throws IOException {
+		sock.flush();
+		unflushed.clear();
+		backoff = MIN_BACKOFF;
+	}
+
+	private void closeSock() {
+		if (sock != null) {
+			sock.cleanShutdown();
+			sock = null;
+		}
+	}
+}
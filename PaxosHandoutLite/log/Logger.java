@@ -1,45 +1,547 @@
 package log;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * The process-wide log.
+ *
+ * Producers (any thread) put records into a preallocated ring buffer and
+ * return; they never block.  A record is a format string with up to three
+ * arguments, each "{}" in the format standing for the next argument, and
+ * is only turned into text by the consumer -- the thread running run(),
+ * which Master starts -- which formats a batch of records at a time and
+ * writes it to the output channel in one go.
+ *
+ * Strings, boxed primitives and enums are kept as they are.  Any other
+ * argument may be changed by its owner before the consumer gets to it,
+ * and is not safe to read from another thread, so the producer turns it
+ * into text when it logs it.  Pass the fields that matter rather than the
+ * object, where that is cheap.
+ *
+ * Records below the log level are dropped before anything is stored, so
+ * a disabled debug() costs one comparison.  If the buffer is full (or no
+ * consumer is running), new records are dropped and counted rather than
+ * kept, so the log never grows the heap.
+ *
+ * A producer stopped (say by Thread.stop()) after claiming a slot but
+ * before publishing it would hold the consumer at that slot forever, so
+ * a slot still unpublished after ABANDON_NANOS is skipped.  Each slot
+ * has a state word, which producers and the consumer only change by
+ * CAS: a producer that was merely that slow finds the slot taken from
+ * it and drops its record.  One skipped in the middle of writing its
+ * fields may still be storing them, so the slot is kept out of use --
+ * losing a record a lap -- until that producer lets go of it.
+ */
 public class Logger implements Runnable {
 
-	private static Logger instance = null;
-	
-	private ConcurrentLinkedQueue<String> q;
-	
-	private Logger()
+	/**
+	 * Log levels, least severe first.
+	 */
+	public enum Level
 	{
-		q = new ConcurrentLinkedQueue<String>();
+		DEBUG, INFO, WARN, ERROR
 	}
-	
-	public static Logger getInstance()
+
+	// Records the ring buffer holds.  A power of two.
+	private static final int CAPACITY = 1 << 14;
+
+	private static final int MASK = Logger.CAPACITY - 1;
+
+	// Most records the consumer formats per write.
+	private static final int BATCH_SIZE = 256;
+
+	// How long the consumer sleeps when there is nothing to write, in ns.
+	private static final long IDLE_PARK_NANOS = 1000000;
+
+	// How long the consumer waits on a claimed slot before taking it as
+	// abandoned, in ns.
+	private static final long ABANDON_NANOS = 1000000000L;
+
+	// Slot states, kept in the low bits of a state word whose high bits
+	// are the sequence number the state is for.
+	private static final int FREE = 0;
+	private static final int WRITING = 1;
+	private static final int PUBLISHED = 2;
+	private static final int ABANDONED = 3;
+
+	private static final int STATE_BITS = 2;
+
+	private static final Logger instance = new Logger();
+
+	/**
+	 * One slot of the ring buffer.
+	 */
+	private static final class Record
+	{
+		// See state().  The record is published once this is
+		// PUBLISHED for its sequence number.
+		final AtomicLong state;
+
+		Record(long sequence)
+		{
+			this.state = new AtomicLong(Logger.state(sequence, Logger.FREE));
+		}
+
+		String format;
+		Object arg0;
+		Object arg1;
+		Object arg2;
+		int numArgs;
+		boolean newline;
+	}
+
+	private final Record[] ring;
+
+	// Sequence number the next record gets.
+	private final AtomicLong head;
+
+	// Sequence number of the next record to write.  Only the consumer
+	// moves it.
+	private volatile long tail;
+
+	// Records dropped because the buffer was full, not yet reported.
+	private final AtomicLong dropped;
+
+	// The slot the consumer found claimed but unpublished, and since when.
+	// Only the consumer uses these.
+	private long stalledSequence;
+	private long stalledSince;
+
+	private volatile Level level;
+
+	private volatile WritableByteChannel out;
+
+	// The consumer's buffers, reused for every batch.
+	private final StringBuilder text;
+	private final CharsetEncoder encoder;
+	private final ByteBuffer bytes;
+
+	private Logger()
 	{
-		if (instance == null)
+		this.ring = new Record[Logger.CAPACITY];
+		for (int i = 0; i < Logger.CAPACITY; i++)
 		{
-			instance = new Logger();
+			this.ring[i] = new Record(i);
 		}
+
+		this.head = new AtomicLong(0);
+		this.tail = 0;
+		this.dropped = new AtomicLong(0);
+		this.stalledSequence = -1;
+		this.stalledSince = 0;
+		this.level = Level.INFO;
+		this.out = Channels.newChannel(System.err);
+
+		this.text = new StringBuilder();
+		this.encoder = StandardCharsets.UTF_8.newEncoder();
+		this.bytes = ByteBuffer.allocate(1 << 16);
+	}
+
+	public static Logger getInstance()
+	{
 		return instance;
 	}
-	
+
+
+	/**
+	 * Sets the least severe level that is logged.
+	 *
+	 * @param level, the level.
+	 */
+	public void setLevel(Level level)
+	{
+		this.level = level;
+	}
+
+
+	/**
+	 * Sets where the consumer writes.  Standard error by default, so the
+	 * log never mixes with what the tests read from standard output.
+	 *
+	 * @param out, the channel.
+	 */
+	public void setOutput(WritableByteChannel out)
+	{
+		this.out = out;
+	}
+
+
+	/**
+	 * @param level, a level.
+	 *
+	 * @return true iff records of the given level are logged.
+	 */
+	public boolean isEnabled(Level level)
+	{
+		return level.compareTo(this.level) >= 0;
+	}
+
+
 	public void print(String s)
 	{
-		q.add(s);
+		this.log(Level.INFO, s, null, null, null, 0, false);
 	}
-	
+
 	public void println(String s)
 	{
-		q.add(s + "\n");
+		this.log(Level.INFO, s, null, null, null, 0, true);
 	}
-	
+
+	public void info(String format, Object arg0)
+	{
+		this.log(Level.INFO, format, arg0, null, null, 1, true);
+	}
+
+	public void info(String format, Object arg0, Object arg1)
+	{
+		this.log(Level.INFO, format, arg0, arg1, null, 2, true);
+	}
+
+	public void info(String format, Object arg0, Object arg1, Object arg2)
+	{
+		this.log(Level.INFO, format, arg0, arg1, arg2, 3, true);
+	}
+
+	public void debug(String format)
+	{
+		this.log(Level.DEBUG, format, null, null, null, 0, true);
+	}
+
+	public void debug(String format, Object arg0)
+	{
+		this.log(Level.DEBUG, format, arg0, null, null, 1, true);
+	}
+
+	public void debug(String format, Object arg0, Object arg1)
+	{
+		this.log(Level.DEBUG, format, arg0, arg1, null, 2, true);
+	}
+
+	public void debug(String format, Object arg0, Object arg1, Object arg2)
+	{
+		this.log(Level.DEBUG, format, arg0, arg1, arg2, 3, true);
+	}
+
+	public void warn(String format)
+	{
+		this.log(Level.WARN, format, null, null, null, 0, true);
+	}
+
+	public void warn(String format, Object arg0)
+	{
+		this.log(Level.WARN, format, arg0, null, null, 1, true);
+	}
+
+	public void warn(String format, Object arg0, Object arg1)
+	{
+		this.log(Level.WARN, format, arg0, arg1, null, 2, true);
+	}
+
+	public void warn(String format, Object arg0, Object arg1, Object arg2)
+	{
+		this.log(Level.WARN, format, arg0, arg1, arg2, 3, true);
+	}
+
+	public void error(String format)
+	{
+		this.log(Level.ERROR, format, null, null, null, 0, true);
+	}
+
+	public void error(String format, Object arg0)
+	{
+		this.log(Level.ERROR, format, arg0, null, null, 1, true);
+	}
+
+	public void error(String format, Object arg0, Object arg1)
+	{
+		this.log(Level.ERROR, format, arg0, arg1, null, 2, true);
+	}
+
+	public void error(String format, Object arg0, Object arg1, Object arg2)
+	{
+		this.log(Level.ERROR, format, arg0, arg1, arg2, 3, true);
+	}
+
+
+	/**
+	 * Logs one line at the given level.
+	 *
+	 * @param level, the level.
+	 * @param format, the text, with "{}" for each argument.
+	 * @param arg0, the first argument.
+	 * @param arg1, the second argument.
+	 * @param arg2, the third argument.
+	 */
+	public void log(Level level, String format, Object arg0, Object arg1, Object arg2)
+	{
+		this.log(level, format, arg0, arg1, arg2, 3, true);
+	}
+
+
+	/**
+	 * Claims the next slot of the ring buffer and publishes the record in
+	 * it, or drops the record if the level is off or the buffer is full.
+	 * Only the first numArgs "{}" of the format are replaced, so text
+	 * logged with println() is written as is.
+	 */
+	private void log(Level level, String format, Object arg0, Object arg1, Object arg2, int numArgs, boolean newline)
+	{
+		if (!this.isEnabled(level))
+		{
+			return;
+		}
+
+		long sequence;
+		do
+		{
+			sequence = this.head.get();
+			if (sequence - this.tail >= Logger.CAPACITY)
+			{
+				this.dropped.incrementAndGet();
+				return;
+			}
+		} while (!this.head.compareAndSet(sequence, sequence + 1));
+
+		// Either CAS fails only if the consumer has given up on the slot,
+		// and it has noted the record as skipped.
+		Record record = this.ring[(int) (sequence & Logger.MASK)];
+		if (!record.state.compareAndSet(Logger.state(sequence, Logger.FREE), Logger.state(sequence, Logger.WRITING)))
+		{
+			return;
+		}
+
+		record.format = format;
+		record.arg0 = Logger.freeze(arg0);
+		record.arg1 = Logger.freeze(arg1);
+		record.arg2 = Logger.freeze(arg2);
+		record.numArgs = numArgs;
+		record.newline = newline;
+
+		if (!record.state.compareAndSet(Logger.state(sequence, Logger.WRITING), Logger.state(sequence, Logger.PUBLISHED)))
+		{
+			// Done with the slot; the consumer puts it back in use.
+			record.state.compareAndSet(Logger.state(sequence, Logger.ABANDONED), Logger.state(sequence, Logger.FREE));
+		}
+	}
+
+
+	/**
+	 * @return the given argument if it cannot change under the consumer
+	 * (null, a String, a boxed primitive or an enum), else its text now.
+	 */
+	private static Object freeze(Object arg)
+	{
+		if (arg == null || arg instanceof String || arg instanceof Integer || arg instanceof Long
+				|| arg instanceof Short || arg instanceof Byte || arg instanceof Double || arg instanceof Float
+				|| arg instanceof Boolean || arg instanceof Character || arg instanceof Enum)
+		{
+			return arg;
+		}
+		return arg.toString();
+	}
+
+
+	/**
+	 * @return the state word for the given sequence number and slot state.
+	 */
+	private static long state(long sequence, int state)
+	{
+		return (sequence << Logger.STATE_BITS) | state;
+	}
+
+
+	/**
+	 * The consumer: writes the published records, in order, a batch at a
+	 * time.
+	 */
 	public void run()
 	{
 		while (true)
 		{
-			while (q.peek() != null)
+			if (this.drainBatch() == 0)
+			{
+				LockSupport.parkNanos(Logger.IDLE_PARK_NANOS);
+			}
+		}
+	}
+
+
+	/**
+	 * Formats up to BATCH_SIZE published records and writes them.
+	 *
+	 * @return the number of records written.
+	 */
+	private int drainBatch()
+	{
+		int numRecords = 0;
+
+		long numDropped = this.dropped.getAndSet(0);
+		if (numDropped > 0)
+		{
+			this.text.append("(log buffer full: dropped ").append(numDropped).append(" records)\n");
+		}
+
+		while (numRecords < Logger.BATCH_SIZE)
+		{
+			Record record = this.ring[(int) (this.tail & Logger.MASK)];
+			long state = record.state.get();
+			if (state == Logger.state(this.tail, Logger.PUBLISHED))
+			{
+				this.format(record);
+				this.free(record);
+			}
+			else if (this.head.get() <= this.tail)
+			{
+				break;
+			}
+			else if (state < Logger.state(this.tail, Logger.FREE))
+			{
+				// Still held for a producer skipped on an earlier lap, so
+				// the producer of this record dropped it.  Once that
+				// producer has let go, the slot is free again.
+				if ((state & Logger.ABANDONED) == Logger.FREE)
+				{
+					this.free(record);
+				}
+				this.text.append("(log: skipped record ").append(this.tail).append(", slot in use)\n");
+			}
+			else
 			{
-				System.out.println(q.remove());
+				if (!this.isAbandoned())
+				{
+					break;
+				}
+				if (!record.state.compareAndSet(Logger.state(this.tail, Logger.FREE), Logger.state(this.tail + Logger.CAPACITY, Logger.FREE))
+					&& !record.state.compareAndSet(Logger.state(this.tail, Logger.WRITING), Logger.state(this.tail, Logger.ABANDONED)))
+				{
+					// Published after all.
+					continue;
+				}
+				this.text.append("(log: skipped record ").append(this.tail).append(", never published)\n");
 			}
+
+			this.tail = this.tail + 1;
+			numRecords++;
+		}
+
+		if (this.text.length() > 0)
+		{
+			try
+			{
+				this.write();
+			}
+			catch (IOException exc)
+			{
+				// Nowhere left to report it.
+			}
+			this.text.setLength(0);
+		}
+
+		return numRecords;
+	}
+
+
+	/**
+	 * Lets go of the arguments of the record at tail, then hands its slot
+	 * to the record a lap on.
+	 */
+	private void free(Record record)
+	{
+		record.format = null;
+		record.arg0 = null;
+		record.arg1 = null;
+		record.arg2 = null;
+		record.state.set(Logger.state(this.tail + Logger.CAPACITY, Logger.FREE));
+	}
+
+
+	/**
+	 * Called when the slot at tail is claimed but not published.
+	 *
+	 * @return true iff the slot was claimed and has stayed unpublished for
+	 * ABANDON_NANOS.
+	 */
+	private boolean isAbandoned()
+	{
+		long now = System.nanoTime();
+		if (this.stalledSequence != this.tail)
+		{
+			this.stalledSequence = this.tail;
+			this.stalledSince = now;
+			return false;
+		}
+
+		return now - this.stalledSince >= Logger.ABANDON_NANOS;
+	}
+
+
+	/**
+	 * Appends the text of the given record, each "{}" replaced with the
+	 * next argument.
+	 */
+	private void format(Record record)
+	{
+		String format = record.format;
+		int argIndex = 0;
+		int start = 0;
+
+		int placeholder = format.indexOf("{}");
+		while (placeholder != -1 && argIndex < record.numArgs)
+		{
+			this.text.append(format, start, placeholder);
+			this.text.append(argIndex == 0 ? record.arg0 : (argIndex == 1 ? record.arg1 : record.arg2));
+			argIndex++;
+			start = placeholder + 2;
+			placeholder = format.indexOf("{}", start);
+		}
+		this.text.append(format, start, format.length());
+
+		if (record.newline)
+		{
+			this.text.append('\n');
+		}
+	}
+
+
+	/**
+	 * Encodes the formatted text and writes it to the output channel.
+	 */
+	private void write() throws IOException
+	{
+		CharBuffer chars = CharBuffer.wrap(this.text);
+		this.encoder.reset();
+
+		while (true)
+		{
+			CoderResult result = this.encoder.encode(chars, this.bytes, true);
+			this.writeBytes();
+			if (!result.isOverflow())
+			{
+				break;
+			}
+		}
+
+		this.encoder.flush(this.bytes);
+		this.writeBytes();
+	}
+
+
+	private void writeBytes() throws IOException
+	{
+		this.bytes.flip();
+		while (this.bytes.hasRemaining())
+		{
+			this.out.write(this.bytes);
 		}
+		this.bytes.clear();
 	}
 }
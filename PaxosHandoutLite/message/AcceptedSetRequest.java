@@ -2,7 +2,8 @@ package message;
 
 /**
  * A recovering acceptor sends this message to all other acceptors, hoping
- * to obtain their accepted sets.
+ * to obtain their accepted sets.  The sets are sent a chunk at a time;
+ * this asks for the chunk starting at fromSlot.
  * @author Mike Feilbach
  *
  */
@@ -12,20 +13,29 @@ public class AcceptedSetRequest extends Message
 	
 	private int senderId;
 	
-	public AcceptedSetRequest(int senderId)
+	// The lowest slot wanted.
+	private int fromSlot;
+	
+	public AcceptedSetRequest(int senderId, int fromSlot)
 	{
 		this.senderId = senderId;
+		this.fromSlot = fromSlot;
 	}
 	
 	public int getSenderId()
 	{
 		return this.senderId;
 	}
+	
+	public int getFromSlot()
+	{
+		return this.fromSlot;
+	}
 
 	@Override
 	public String toString() {
 		String retVal = "";
-		retVal += "AcceptedSetRequest: <senderID: " + this.senderId + ">";
+		retVal += "AcceptedSetRequest: <senderID: " + this.senderId + ", fromSlot: " + this.fromSlot + ">";
 		return retVal;
 	}
 }
@@ -8,6 +8,10 @@ import server.PValue;
  * An alive acceptor who receives this message from a recovering acceptor will
  * forward the recovering acceptor their accepted set.
  * 
+ * The set is sent in chunks of a bounded number of pvalues, in slot order,
+ * each answering one AcceptedSetRequest.  The recovering acceptor asks for
+ * the next chunk (from nextSlot) only once it has applied this one.
+ * 
  * @author Mike Feilbach
  *
  */
@@ -16,12 +20,26 @@ public class AcceptedSetResponse extends Message
 	private static final long serialVersionUID = 1L;
 	
 	private int senderId;
+	
+	// The fromSlot of the request this answers.
+	private int fromSlot;
+	
+	// The chunk: the sender's pvalues for slots >= fromSlot and < nextSlot.
 	private ArrayList<PValue> acceptedSet;
 	
-	public AcceptedSetResponse(int senderId, ArrayList<PValue> acceptedSet)
+	// Where the next chunk starts, or -1 if this was the last one.
+	private int nextSlot;
+	
+	// The sender has forgotten every slot below this one (see Snapshotted).
+	private int compactedSlot;
+	
+	public AcceptedSetResponse(int senderId, int fromSlot, ArrayList<PValue> acceptedSet, int nextSlot, int compactedSlot)
 	{
 		this.senderId = senderId;
+		this.fromSlot = fromSlot;
 		this.acceptedSet = acceptedSet;
+		this.nextSlot = nextSlot;
+		this.compactedSlot = compactedSlot;
 	}
 	
 	public int getSenderId()
@@ -29,15 +47,30 @@ public class AcceptedSetResponse extends Message
 		return this.senderId;
 	}
 	
+	public int getFromSlot()
+	{
+		return this.fromSlot;
+	}
+	
 	public ArrayList<PValue> getAcceptedSet()
 	{
 		return this.acceptedSet;
 	}
+	
+	public int getNextSlot()
+	{
+		return this.nextSlot;
+	}
+	
+	public int getCompactedSlot()
+	{
+		return this.compactedSlot;
+	}
 
 	@Override
 	public String toString() {
 		String retVal = "";
-		retVal += "AcceptedSetResponse: <senderID: " + this.senderId + ", Accepted Set: TOO LONG, TODO?>";
+		retVal += "AcceptedSetResponse: <senderID: " + this.senderId + ", fromSlot: " + this.fromSlot + ", " + this.acceptedSet.size() + " pvalues, nextSlot: " + this.nextSlot + ">";
 		return retVal;
 	}
 }
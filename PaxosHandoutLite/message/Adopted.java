@@ -18,10 +18,21 @@ public class Adopted extends Message
 	private Ballot ballot;
 	private ArrayList<PValue> pvalues;
 	
-	public Adopted(Ballot ballot, ArrayList<PValue> pvalues)
+	// The ballot was adopted for slots >= fromSlot only, and pvalues
+	// only holds pvalues for those slots.
+	private int fromSlot;
+	
+	// Some acceptor in the quorum has forgotten its pvalues below this
+	// slot, so every slot below it is decided, and pvalues may not show
+	// what was chosen there.
+	private int compactedSlot;
+	
+	public Adopted(Ballot ballot, ArrayList<PValue> pvalues, int fromSlot, int compactedSlot)
 	{
 		this.ballot = ballot;
 		this.pvalues = pvalues;
+		this.fromSlot = fromSlot;
+		this.compactedSlot = compactedSlot;
 	}
 	
 	public Ballot getBallot()
@@ -34,6 +45,16 @@ public class Adopted extends Message
 		return this.pvalues;
 	}
 	
+	public int getFromSlot()
+	{
+		return this.fromSlot;
+	}
+	
+	public int getCompactedSlot()
+	{
+		return this.compactedSlot;
+	}
+	
 	@Override
 	public String toString()
 	{
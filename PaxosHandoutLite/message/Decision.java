@@ -13,7 +13,7 @@ public class Decision extends Message
 	// This class wraps a Proposal, but the distinct class name
 	// differentiates it from a Proposal for clarity of knowing
 	// whether a message is a Proposal or Decision.
-	private Proposal proposal;
+	private final Proposal proposal;
 	
 	public Decision(Proposal p)
 	{
@@ -63,5 +63,11 @@ public class Decision extends Message
 		
 		return false;
 	}
+	
+	@Override
+	public int hashCode()
+	{
+		return this.proposal.hashCode();
+	}
 
 }
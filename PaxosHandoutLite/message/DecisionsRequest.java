@@ -0,0 +1,48 @@
+package message;
+
+/**
+ * A replica that is missing decisions (it restarted, or it sees a gap
+ * below a decision it got) sends this to a peer replica, asking for the
+ * decisions of slots fromSlot up to (not including) toSlot.
+ */
+public class DecisionsRequest extends Message
+{
+	private static final long serialVersionUID = 1L;
+	
+	private int senderId;
+	
+	private int fromSlot;
+	
+	private int toSlot;
+	
+	public DecisionsRequest(int senderId, int fromSlot, int toSlot)
+	{
+		this.senderId = senderId;
+		this.fromSlot = fromSlot;
+		this.toSlot = toSlot;
+	}
+	
+	public int getSenderId()
+	{
+		return this.senderId;
+	}
+	
+	public int getFromSlot()
+	{
+		return this.fromSlot;
+	}
+	
+	public int getToSlot()
+	{
+		return this.toSlot;
+	}
+
+	@Override
+	public String toString() 
+	{
+		String retVal = "";
+		retVal += "DecisionsRequest: <senderId: " + this.senderId + ", slots: [" + this.fromSlot + ", " + this.toSlot + ")>";
+		return retVal;
+	}
+
+}
@@ -0,0 +1,62 @@
+package message;
+
+import java.util.ArrayList;
+
+/**
+ * A replica's answer to a DecisionsRequest: what it performed in each
+ * slot from fromSlot up to (not including) throughSlot.  A slot in that
+ * range with no proposal listed was decided as a duplicate of a command
+ * already performed in a lower slot, so it is skipped.
+ */
+public class DecisionsResponse extends Message
+{
+	private static final long serialVersionUID = 1L;
+	
+	private int senderId;
+	
+	private int fromSlot;
+	
+	// The sender has performed every slot below this one.  May be less
+	// than the toSlot asked for, if the sender is not that far yet.
+	private int throughSlot;
+	
+	// The commands performed, by slot.
+	private ArrayList<Proposal> decisions;
+	
+	public DecisionsResponse(int senderId, int fromSlot, int throughSlot, ArrayList<Proposal> decisions)
+	{
+		this.senderId = senderId;
+		this.fromSlot = fromSlot;
+		this.throughSlot = throughSlot;
+		this.decisions = decisions;
+	}
+	
+	public int getSenderId()
+	{
+		return this.senderId;
+	}
+	
+	public int getFromSlot()
+	{
+		return this.fromSlot;
+	}
+	
+	public int getThroughSlot()
+	{
+		return this.throughSlot;
+	}
+	
+	public ArrayList<Proposal> getDecisions()
+	{
+		return this.decisions;
+	}
+
+	@Override
+	public String toString() 
+	{
+		String retVal = "";
+		retVal += "DecisionsResponse: <senderId: " + this.senderId + ", slots: [" + this.fromSlot + ", " + this.throughSlot + "), " + this.decisions.size() + " decisions>";
+		return retVal;
+	}
+
+}
@@ -0,0 +1,642 @@
+package message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import ballot.Ballot;
+import client.Command;
+import server.PValue;
+import server.StateEntry;
+
+/**
+ * Compact binary encoding for everything in the message package.
+ *
+ * Every encoded message starts with a one byte type tag identifying its
+ * class, followed by the message's fields written by hand.  This avoids
+ * the class descriptors and Base64 padding that Java serialization puts
+ * on the wire for every message.
+ */
+public final class MessageCodec
+{
+	// Type tags.  These are part of the wire format -- never reuse or
+	// renumber an existing tag.
+	public static final byte TAG_ACCEPTED_SET_REQUEST  = 1;
+	public static final byte TAG_ACCEPTED_SET_RESPONSE = 2;
+	public static final byte TAG_ADOPTED               = 3;
+	public static final byte TAG_DECISION              = 4;
+	public static final byte TAG_HEART_BEAT            = 5;
+	public static final byte TAG_P1A                   = 6;
+	public static final byte TAG_P1B                   = 7;
+	public static final byte TAG_P2A                   = 8;
+	public static final byte TAG_P2B                   = 9;
+	public static final byte TAG_PLAIN_MESSAGE         = 10;
+	public static final byte TAG_PREEMPTED             = 11;
+	public static final byte TAG_PROPOSAL              = 12;
+	public static final byte TAG_PROPOSALS_REQUEST     = 13;
+	public static final byte TAG_PROPOSALS_RESPONSE    = 14;
+	public static final byte TAG_REQUEST               = 15;
+	public static final byte TAG_RESPONSE              = 16;
+	public static final byte TAG_TIME_BOMB_LEADER      = 17;
+	public static final byte TAG_P2A_BATCH             = 18;
+	public static final byte TAG_P2B_BATCH             = 19;
+	public static final byte TAG_SNAPSHOTTED           = 20;
+	public static final byte TAG_DECISIONS_REQUEST     = 21;
+	public static final byte TAG_DECISIONS_RESPONSE    = 22;
+	public static final byte TAG_SUBSCRIPTION_UPDATE   = 23;
+	public static final byte TAG_SUBSCRIPTION_ACK      = 24;
+
+	private MessageCodec()
+	{
+	}
+
+
+	/**
+	 * Encodes the given message.
+	 *
+	 * @param message, the message to encode.
+	 *
+	 * @return the encoded bytes.
+	 */
+	public static byte[] encode(Message message) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		if (message instanceof AcceptedSetRequest)
+		{
+			AcceptedSetRequest m = (AcceptedSetRequest) message;
+			out.writeByte(TAG_ACCEPTED_SET_REQUEST);
+			out.writeInt(m.getSenderId());
+			out.writeInt(m.getFromSlot());
+		}
+		else if (message instanceof AcceptedSetResponse)
+		{
+			AcceptedSetResponse m = (AcceptedSetResponse) message;
+			out.writeByte(TAG_ACCEPTED_SET_RESPONSE);
+			out.writeInt(m.getSenderId());
+			out.writeInt(m.getFromSlot());
+			writePValues(out, m.getAcceptedSet());
+			out.writeInt(m.getNextSlot());
+			out.writeInt(m.getCompactedSlot());
+		}
+		else if (message instanceof Adopted)
+		{
+			Adopted m = (Adopted) message;
+			out.writeByte(TAG_ADOPTED);
+			writeBallot(out, m.getBallot());
+			writePValues(out, m.getPvalues());
+			out.writeInt(m.getFromSlot());
+			out.writeInt(m.getCompactedSlot());
+		}
+		else if (message instanceof Decision)
+		{
+			Decision m = (Decision) message;
+			out.writeByte(TAG_DECISION);
+			writeProposal(out, m.getProposal());
+		}
+		else if (message instanceof HeartBeat)
+		{
+			HeartBeat m = (HeartBeat) message;
+			out.writeByte(TAG_HEART_BEAT);
+			out.writeInt(m.getSenderId());
+			out.writeInt(m.getCurrentLeaderId());
+		}
+		else if (message instanceof P1a)
+		{
+			P1a m = (P1a) message;
+			out.writeByte(TAG_P1A);
+			out.writeInt(m.getMyLeaderId());
+			writeBallot(out, m.getBallot());
+			out.writeInt(m.getFromSlot());
+		}
+		else if (message instanceof P1b)
+		{
+			P1b m = (P1b) message;
+			out.writeByte(TAG_P1B);
+			out.writeInt(m.getAcceptorId());
+			writeBallot(out, m.getBallot());
+			writePValues(out, m.getAcceptedSet());
+			out.writeInt(m.getCompactedSlot());
+		}
+		else if (message instanceof P2a)
+		{
+			P2a m = (P2a) message;
+			out.writeByte(TAG_P2A);
+			out.writeInt(m.getMyLeaderId());
+			writePValue(out, m.getMyPValue());
+		}
+		else if (message instanceof P2b)
+		{
+			P2b m = (P2b) message;
+			out.writeByte(TAG_P2B);
+			out.writeInt(m.getAcceptorId());
+			writeBallot(out, m.getBallot());
+			out.writeInt(m.getSlotNumber());
+		}
+		else if (message instanceof PlainMessage)
+		{
+			PlainMessage m = (PlainMessage) message;
+			out.writeByte(TAG_PLAIN_MESSAGE);
+			writeString(out, m.getContent());
+		}
+		else if (message instanceof Preempted)
+		{
+			Preempted m = (Preempted) message;
+			out.writeByte(TAG_PREEMPTED);
+			writeBallot(out, m.getBallot());
+		}
+		else if (message instanceof Proposal)
+		{
+			out.writeByte(TAG_PROPOSAL);
+			writeProposal(out, (Proposal) message);
+		}
+		else if (message instanceof ProposalsRequest)
+		{
+			ProposalsRequest m = (ProposalsRequest) message;
+			out.writeByte(TAG_PROPOSALS_REQUEST);
+			out.writeInt(m.getSenderId());
+		}
+		else if (message instanceof ProposalsResponse)
+		{
+			ProposalsResponse m = (ProposalsResponse) message;
+			out.writeByte(TAG_PROPOSALS_RESPONSE);
+			out.writeInt(m.getSenderId());
+		}
+		else if (message instanceof Request)
+		{
+			Request m = (Request) message;
+			out.writeByte(TAG_REQUEST);
+			writeCommand(out, m.getCommand());
+		}
+		else if (message instanceof Response)
+		{
+			Response m = (Response) message;
+			out.writeByte(TAG_RESPONSE);
+			out.writeInt(m.getCid());
+			writeStateEntry(out, m.getResult());
+			out.writeInt(m.getLeaderHint());
+		}
+		else if (message instanceof TimeBombLeader)
+		{
+			TimeBombLeader m = (TimeBombLeader) message;
+			out.writeByte(TAG_TIME_BOMB_LEADER);
+			out.writeInt(m.getNumMessagesUntilCrash());
+			out.writeInt(m.getLeaderId());
+		}
+		else if (message instanceof P2aBatch)
+		{
+			P2aBatch m = (P2aBatch) message;
+			out.writeByte(TAG_P2A_BATCH);
+			out.writeInt(m.getMyLeaderId());
+			writeBallot(out, m.getBallot());
+			writeProposals(out, m.getProposals());
+		}
+		else if (message instanceof P2bBatch)
+		{
+			P2bBatch m = (P2bBatch) message;
+			out.writeByte(TAG_P2B_BATCH);
+			out.writeInt(m.getAcceptorId());
+			writeBallot(out, m.getBallot());
+			writeInts(out, m.getSlots());
+		}
+		else if (message instanceof Snapshotted)
+		{
+			Snapshotted m = (Snapshotted) message;
+			out.writeByte(TAG_SNAPSHOTTED);
+			out.writeInt(m.getSenderId());
+			out.writeInt(m.getWatermark());
+		}
+		else if (message instanceof DecisionsRequest)
+		{
+			DecisionsRequest m = (DecisionsRequest) message;
+			out.writeByte(TAG_DECISIONS_REQUEST);
+			out.writeInt(m.getSenderId());
+			out.writeInt(m.getFromSlot());
+			out.writeInt(m.getToSlot());
+		}
+		else if (message instanceof DecisionsResponse)
+		{
+			DecisionsResponse m = (DecisionsResponse) message;
+			out.writeByte(TAG_DECISIONS_RESPONSE);
+			out.writeInt(m.getSenderId());
+			out.writeInt(m.getFromSlot());
+			out.writeInt(m.getThroughSlot());
+			writeProposals(out, m.getDecisions());
+		}
+		else if (message instanceof SubscriptionUpdate)
+		{
+			SubscriptionUpdate m = (SubscriptionUpdate) message;
+			out.writeByte(TAG_SUBSCRIPTION_UPDATE);
+			out.writeInt(m.getSenderId());
+			out.writeInt(m.getFromSlot());
+			out.writeInt(m.getThroughSlot());
+			writeStateEntries(out, m.getEntries());
+		}
+		else if (message instanceof SubscriptionAck)
+		{
+			SubscriptionAck m = (SubscriptionAck) message;
+			out.writeByte(TAG_SUBSCRIPTION_ACK);
+			out.writeInt(m.getClientId());
+			out.writeInt(m.getThroughSlot());
+			out.writeBoolean(m.isResend());
+		}
+		else
+		{
+			throw new IOException("No binary encoding for " + message.getClass().getName());
+		}
+
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+
+	/**
+	 * Decodes a message previously produced by encode().
+	 *
+	 * @param data, the encoded bytes.
+	 *
+	 * @return the decoded message.
+	 */
+	public static Message decode(byte[] data) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		byte tag = in.readByte();
+
+		switch (tag)
+		{
+		case TAG_ACCEPTED_SET_REQUEST:
+		{
+			int senderId = in.readInt();
+			return new AcceptedSetRequest(senderId, in.readInt());
+		}
+
+		case TAG_ACCEPTED_SET_RESPONSE:
+		{
+			int senderId = in.readInt();
+			int fromSlot = in.readInt();
+			ArrayList<PValue> acceptedSet = readPValues(in);
+			int nextSlot = in.readInt();
+			return new AcceptedSetResponse(senderId, fromSlot, acceptedSet, nextSlot, in.readInt());
+		}
+
+		case TAG_ADOPTED:
+		{
+			Ballot ballot = readBallot(in);
+			ArrayList<PValue> pvalues = readPValues(in);
+			int fromSlot = in.readInt();
+			return new Adopted(ballot, pvalues, fromSlot, in.readInt());
+		}
+
+		case TAG_DECISION:
+			return new Decision(readProposal(in));
+
+		case TAG_HEART_BEAT:
+		{
+			int senderId = in.readInt();
+			return new HeartBeat(senderId, in.readInt());
+		}
+
+		case TAG_P1A:
+		{
+			int myLeaderId = in.readInt();
+			Ballot ballot = readBallot(in);
+			return new P1a(myLeaderId, ballot, in.readInt());
+		}
+
+		case TAG_P1B:
+		{
+			int acceptorId = in.readInt();
+			Ballot ballot = readBallot(in);
+			ArrayList<PValue> acceptedSet = readPValues(in);
+			return new P1b(ballot, acceptedSet, acceptorId, in.readInt());
+		}
+
+		case TAG_P2A:
+		{
+			int myLeaderId = in.readInt();
+			return new P2a(myLeaderId, readPValue(in));
+		}
+
+		case TAG_P2B:
+		{
+			int acceptorId = in.readInt();
+			Ballot ballot = readBallot(in);
+			return new P2b(acceptorId, ballot, in.readInt());
+		}
+
+		case TAG_PLAIN_MESSAGE:
+			return new PlainMessage(readString(in));
+
+		case TAG_PREEMPTED:
+			return new Preempted(readBallot(in));
+
+		case TAG_PROPOSAL:
+			return readProposal(in);
+
+		case TAG_PROPOSALS_REQUEST:
+			return new ProposalsRequest(in.readInt());
+
+		case TAG_PROPOSALS_RESPONSE:
+			return new ProposalsResponse(in.readInt());
+
+		case TAG_REQUEST:
+			return new Request(readCommand(in));
+
+		case TAG_RESPONSE:
+		{
+			int cid = in.readInt();
+			StateEntry result = readStateEntry(in);
+			return new Response(cid, result, in.readInt());
+		}
+
+		case TAG_TIME_BOMB_LEADER:
+		{
+			int numMessages = in.readInt();
+			return new TimeBombLeader(numMessages, in.readInt());
+		}
+
+		case TAG_P2A_BATCH:
+		{
+			int myLeaderId = in.readInt();
+			Ballot ballot = readBallot(in);
+			return new P2aBatch(myLeaderId, ballot, readProposals(in));
+		}
+
+		case TAG_P2B_BATCH:
+		{
+			int acceptorId = in.readInt();
+			Ballot ballot = readBallot(in);
+			return new P2bBatch(acceptorId, ballot, readInts(in));
+		}
+
+		case TAG_SNAPSHOTTED:
+		{
+			int senderId = in.readInt();
+			return new Snapshotted(senderId, in.readInt());
+		}
+
+		case TAG_DECISIONS_REQUEST:
+		{
+			int senderId = in.readInt();
+			int fromSlot = in.readInt();
+			return new DecisionsRequest(senderId, fromSlot, in.readInt());
+		}
+
+		case TAG_DECISIONS_RESPONSE:
+		{
+			int senderId = in.readInt();
+			int fromSlot = in.readInt();
+			int throughSlot = in.readInt();
+			return new DecisionsResponse(senderId, fromSlot, throughSlot, readProposals(in));
+		}
+
+		case TAG_SUBSCRIPTION_UPDATE:
+		{
+			int senderId = in.readInt();
+			int fromSlot = in.readInt();
+			int throughSlot = in.readInt();
+			return new SubscriptionUpdate(senderId, fromSlot, throughSlot, readStateEntries(in));
+		}
+
+		case TAG_SUBSCRIPTION_ACK:
+		{
+			int clientId = in.readInt();
+			int throughSlot = in.readInt();
+			return new SubscriptionAck(clientId, throughSlot, in.readBoolean());
+		}
+
+		default:
+			throw new IOException("Unknown message tag " + tag);
+		}
+	}
+
+
+	//**************************************************************************
+	//* FIELD ENCODINGS
+	//**************************************************************************
+
+	// The ballot, command and pvalue encodings are public so that on-disk
+	// formats (e.g., the acceptor's log) can share them.
+
+	// Fewest bytes each encoding takes, for checking list and string
+	// lengths against what is left of the input.
+	private static final int MIN_COMMAND_BYTES = 12;
+	private static final int MIN_PVALUE_BYTES = 5 + MIN_COMMAND_BYTES;
+	private static final int MIN_PROPOSAL_BYTES = 4 + MIN_COMMAND_BYTES;
+	private static final int MIN_STATE_ENTRY_BYTES = 4 + MIN_COMMAND_BYTES;
+
+	// Reads the length of a list (or string) whose elements take at least
+	// minBytes each.  A negative length, or one the rest of the input
+	// cannot hold, means the input is corrupt.
+	private static int readLength(DataInputStream in, int minBytes) throws IOException
+	{
+		return readLength(in, minBytes, false);
+	}
+
+	// As above, but when nullable a length of -1 (a null list) is returned
+	// as is.
+	private static int readLength(DataInputStream in, int minBytes, boolean nullable) throws IOException
+	{
+		int length = in.readInt();
+		if (nullable && length == -1)
+		{
+			return length;
+		}
+		if (length < 0 || (long) length * minBytes > in.available())
+		{
+			throw new IOException("Bad length " + length + " with " + in.available() + " bytes left");
+		}
+		return length;
+	}
+
+	// Ballots may be "bottom" (null), so they carry a presence byte.
+	public static void writeBallot(DataOutputStream out, Ballot ballot) throws IOException
+	{
+		if (ballot == null)
+		{
+			out.writeBoolean(false);
+			return;
+		}
+
+		out.writeBoolean(true);
+		out.writeInt(ballot.getBallotId());
+		out.writeInt(ballot.getLeaderId());
+	}
+
+	public static Ballot readBallot(DataInputStream in) throws IOException
+	{
+		if (!in.readBoolean())
+		{
+			return null;
+		}
+
+		int ballotId = in.readInt();
+		int leaderId = in.readInt();
+		return new Ballot(ballotId, leaderId);
+	}
+
+	public static void writeCommand(DataOutputStream out, Command command) throws IOException
+	{
+		out.writeInt(command.getClientId());
+		out.writeInt(command.getCommandId());
+		writeString(out, command.getOperation());
+	}
+
+	public static Command readCommand(DataInputStream in) throws IOException
+	{
+		int clientId = in.readInt();
+		int commandId = in.readInt();
+		return new Command(clientId, commandId, readString(in));
+	}
+
+	public static void writePValue(DataOutputStream out, PValue pvalue) throws IOException
+	{
+		writeBallot(out, pvalue.getBallot());
+		out.writeInt(pvalue.getSlotNumber());
+		writeCommand(out, pvalue.getCommand());
+	}
+
+	public static PValue readPValue(DataInputStream in) throws IOException
+	{
+		Ballot ballot = readBallot(in);
+		int slotNumber = in.readInt();
+		return new PValue(ballot, slotNumber, readCommand(in));
+	}
+
+	// A null list is written as length -1 so it survives the round trip.
+	private static void writePValues(DataOutputStream out, ArrayList<PValue> pvalues) throws IOException
+	{
+		if (pvalues == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+
+		out.writeInt(pvalues.size());
+		for (int i = 0; i < pvalues.size(); i++)
+		{
+			writePValue(out, pvalues.get(i));
+		}
+	}
+
+	private static ArrayList<PValue> readPValues(DataInputStream in) throws IOException
+	{
+		int size = readLength(in, MIN_PVALUE_BYTES, true);
+		if (size == -1)
+		{
+			return null;
+		}
+
+		ArrayList<PValue> pvalues = new ArrayList<PValue>(size);
+		for (int i = 0; i < size; i++)
+		{
+			pvalues.add(readPValue(in));
+		}
+		return pvalues;
+	}
+
+	private static void writeProposal(DataOutputStream out, Proposal proposal) throws IOException
+	{
+		out.writeInt(proposal.getSlotNum());
+		writeCommand(out, proposal.getCommand());
+	}
+
+	private static Proposal readProposal(DataInputStream in) throws IOException
+	{
+		int slotNum = in.readInt();
+		return new Proposal(slotNum, readCommand(in));
+	}
+
+	private static void writeProposals(DataOutputStream out, ArrayList<Proposal> proposals) throws IOException
+	{
+		out.writeInt(proposals.size());
+		for (int i = 0; i < proposals.size(); i++)
+		{
+			writeProposal(out, proposals.get(i));
+		}
+	}
+
+	private static ArrayList<Proposal> readProposals(DataInputStream in) throws IOException
+	{
+		int size = readLength(in, MIN_PROPOSAL_BYTES);
+		ArrayList<Proposal> proposals = new ArrayList<Proposal>(size);
+		for (int i = 0; i < size; i++)
+		{
+			proposals.add(readProposal(in));
+		}
+		return proposals;
+	}
+
+	private static void writeInts(DataOutputStream out, ArrayList<Integer> ints) throws IOException
+	{
+		out.writeInt(ints.size());
+		for (int i = 0; i < ints.size(); i++)
+		{
+			out.writeInt(ints.get(i));
+		}
+	}
+
+	private static ArrayList<Integer> readInts(DataInputStream in) throws IOException
+	{
+		int size = readLength(in, 4);
+		ArrayList<Integer> ints = new ArrayList<Integer>(size);
+		for (int i = 0; i < size; i++)
+		{
+			ints.add(in.readInt());
+		}
+		return ints;
+	}
+
+	private static void writeStateEntry(DataOutputStream out, StateEntry entry) throws IOException
+	{
+		out.writeInt(entry.getSlotNumber());
+		writeCommand(out, entry.getCommand());
+	}
+
+	private static StateEntry readStateEntry(DataInputStream in) throws IOException
+	{
+		int slotNumber = in.readInt();
+		return new StateEntry(readCommand(in), slotNumber);
+	}
+
+	private static void writeStateEntries(DataOutputStream out, ArrayList<StateEntry> entries) throws IOException
+	{
+		out.writeInt(entries.size());
+		for (int i = 0; i < entries.size(); i++)
+		{
+			writeStateEntry(out, entries.get(i));
+		}
+	}
+
+	private static ArrayList<StateEntry> readStateEntries(DataInputStream in) throws IOException
+	{
+		int size = readLength(in, MIN_STATE_ENTRY_BYTES);
+		ArrayList<StateEntry> entries = new ArrayList<StateEntry>(size);
+		for (int i = 0; i < size; i++)
+		{
+			entries.add(readStateEntry(in));
+		}
+		return entries;
+	}
+
+	// Strings are written as a length followed by UTF-8 bytes.  Unlike
+	// writeUTF(), this has no 64KB limit.
+	private static void writeString(DataOutputStream out, String s) throws IOException
+	{
+		byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(utf8.length);
+		out.write(utf8);
+	}
+
+	private static String readString(DataInputStream in) throws IOException
+	{
+		byte[] utf8 = new byte[readLength(in, 1)];
+		in.readFully(utf8);
+		return new String(utf8, StandardCharsets.UTF_8);
+	}
+}
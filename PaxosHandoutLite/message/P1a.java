@@ -20,10 +20,15 @@ public class P1a extends Message
 	// The ballot this scout is sending.
 	private Ballot ballot;
 	
-	public P1a(int myLeaderId, Ballot ballot)
+	// Phase 1 only covers slots >= fromSlot; the leader already knows
+	// every slot below it was decided.
+	private int fromSlot;
+	
+	public P1a(int myLeaderId, Ballot ballot, int fromSlot)
 	{
 		this.myLeaderId = myLeaderId;
 		this.ballot = ballot;
+		this.fromSlot = fromSlot;
 	}
 	
 	public int getMyLeaderId()
@@ -35,12 +40,17 @@ public class P1a extends Message
 	{
 		return this.ballot;
 	}
+	
+	public int getFromSlot()
+	{
+		return this.fromSlot;
+	}
 
 	@Override
 	public String toString()
 	{
 		String retVal = "";
-		retVal += "P1a: <myLeaderId: " + this.myLeaderId + ", " + this.ballot + ">";
+		retVal += "P1a: <myLeaderId: " + this.myLeaderId + ", " + this.ballot + ", fromSlot: " + this.fromSlot + ">";
 		return retVal;
 	}
 }
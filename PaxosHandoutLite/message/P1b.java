@@ -23,11 +23,16 @@ public class P1b extends Message
 	// The acceptor who is sending this.
 	private int acceptorId;
 	
-	public P1b(Ballot ballot, ArrayList<PValue> acceptedSet, int acceptorId)
+	// The acceptor has forgotten its pvalues below this slot (every slot
+	// below it is decided), so acceptedSet says nothing about them.
+	private int compactedSlot;
+	
+	public P1b(Ballot ballot, ArrayList<PValue> acceptedSet, int acceptorId, int compactedSlot)
 	{
 		this.ballot = ballot;
 		this.acceptedSet = acceptedSet;
 		this.acceptorId = acceptorId;
+		this.compactedSlot = compactedSlot;
 	}
 	
 	public Ballot getBallot()
@@ -44,6 +49,11 @@ public class P1b extends Message
 	{
 		return this.acceptorId;
 	}
+	
+	public int getCompactedSlot()
+	{
+		return this.compactedSlot;
+	}
 
 	@Override
 	public String toString()
@@ -51,6 +61,7 @@ public class P1b extends Message
 		String retVal = "";
 		retVal += "P1b: <acceptorId: " + this.acceptorId + ", " 
 				+ this.ballot 
+				+ ", compactedSlot: " + this.compactedSlot
 				+ ", acceptedSet: NOT PRINTED YET (IMPLEMENT)>";
 		return retVal;
 	}
@@ -0,0 +1,68 @@
+package message;
+
+import java.util.ArrayList;
+
+import ballot.Ballot;
+import server.PValue;
+
+
+/**
+ * A batch of p2a messages, sent from a leader's BatchCommander to an
+ * acceptor.  Every proposal in the batch is under the same ballot, so the
+ * ballot is only sent once.
+ */
+public class P2aBatch extends Message
+{
+	private static final long serialVersionUID = 1L;
+
+	// This commander's leader's ID.
+	private int myLeaderId;
+	
+	private Ballot ballot;
+	
+	private ArrayList<Proposal> proposals;
+	
+	public P2aBatch(int myLeaderId, Ballot ballot, ArrayList<Proposal> proposals)
+	{
+		this.myLeaderId = myLeaderId;
+		this.ballot = ballot;
+		this.proposals = proposals;
+	}
+	
+	public int getMyLeaderId()
+	{
+		return this.myLeaderId;
+	}
+	
+	public Ballot getBallot()
+	{
+		return this.ballot;
+	}
+	
+	public ArrayList<Proposal> getProposals()
+	{
+		return this.proposals;
+	}
+	
+	/**
+	 * Returns the <b, s, p> PValue for every proposal in this batch.
+	 */
+	public ArrayList<PValue> getPValues()
+	{
+		ArrayList<PValue> pvalues = new ArrayList<PValue>(this.proposals.size());
+		for (int i = 0; i < this.proposals.size(); i++)
+		{
+			Proposal p = this.proposals.get(i);
+			pvalues.add(new PValue(this.ballot, p.getSlotNum(), p.getCommand()));
+		}
+		return pvalues;
+	}
+
+	@Override
+	public String toString() {
+		String retVal = "";
+		retVal += "P2aBatch: <myLeaderId: " + this.myLeaderId + ", " + this.ballot
+				+ ", numProposals: " + this.proposals.size() + ">";
+		return retVal;
+	}
+}
@@ -17,10 +17,15 @@ public class P2b extends Message
 	
 	private Ballot ballot;
 	
-	public P2b(int acceptorId, Ballot ballot)
+	// The slot number of the p2a this p2b answers, so the leader can hand
+	// it to the Commander for that slot.
+	private int slotNumber;
+	
+	public P2b(int acceptorId, Ballot ballot, int slotNumber)
 	{
 		this.acceptorId = acceptorId;
 		this.ballot = ballot;
+		this.slotNumber = slotNumber;
 	}
 	
 	public int getAcceptorId()
@@ -33,11 +38,16 @@ public class P2b extends Message
 		return this.ballot;
 	}
 	
+	public int getSlotNumber()
+	{
+		return this.slotNumber;
+	}
+	
 	@Override
 	public String toString()
 	{
 		String retVal = "";
-		retVal += "P2b: <acceptorId: " + this.acceptorId + ", " + this.ballot + ">";
+		retVal += "P2b: <acceptorId: " + this.acceptorId + ", " + this.ballot + ", slotNumber: " + this.slotNumber + ">";
 		return retVal;
 	}
 
@@ -0,0 +1,54 @@
+package message;
+
+import java.util.ArrayList;
+
+import ballot.Ballot;
+
+
+/**
+ * The reply to a P2aBatch.  Acceptors send these to the leader's
+ * BatchCommander, carrying their current ballot and the slots of the
+ * batch they are answering for.
+ */
+public class P2bBatch extends Message
+{
+	private static final long serialVersionUID = 1L;
+
+	// The acceptor ID (which acceptor sent this message).
+	private int acceptorId;
+	
+	private Ballot ballot;
+	
+	private ArrayList<Integer> slots;
+	
+	public P2bBatch(int acceptorId, Ballot ballot, ArrayList<Integer> slots)
+	{
+		this.acceptorId = acceptorId;
+		this.ballot = ballot;
+		this.slots = slots;
+	}
+	
+	public int getAcceptorId()
+	{
+		return this.acceptorId;
+	}
+	
+	public Ballot getBallot()
+	{
+		return this.ballot;
+	}
+	
+	public ArrayList<Integer> getSlots()
+	{
+		return this.slots;
+	}
+	
+	@Override
+	public String toString()
+	{
+		String retVal = "";
+		retVal += "P2bBatch: <acceptorId: " + this.acceptorId + ", " + this.ballot
+				+ ", numSlots: " + this.slots.size() + ">";
+		return retVal;
+	}
+}
@@ -15,6 +15,11 @@ public class PlainMessage extends Message
 	{
 		this.content = messageContent;
 	}
+	
+	public String getContent()
+	{
+		return this.content;
+	}
 
 	@Override
 	public String toString()
@@ -11,8 +11,8 @@ public class Proposal extends Message
 {	
 	private static final long serialVersionUID = 1L;
 	
-	private int slotNum;
-	private Command command;
+	private final int slotNum;
+	private final Command command;
 	
 	public Proposal(int slotNum, Command command)
 	{
@@ -66,5 +66,11 @@ public class Proposal extends Message
 		
 		return false;
 	}
+	
+	@Override
+	public int hashCode()
+	{
+		return 31 * this.slotNum + this.command.hashCode();
+	}
 
 }
@@ -20,10 +20,15 @@ public class Response extends Message
 	// was applied.
 	private StateEntry result;
 	
-	public Response(int cid, StateEntry stateEntry)
+	// The server the sender believes is the current leader, or -1 if it
+	// does not know.  Clients send their next requests there.
+	private int leaderHint;
+	
+	public Response(int cid, StateEntry stateEntry, int leaderHint)
 	{
 		this.cid = cid;
 		this.result = stateEntry;
+		this.leaderHint = leaderHint;
 	}
 	
 	@Override
@@ -43,4 +48,9 @@ public class Response extends Message
 	{
 		return this.result;
 	}
+	
+	public int getLeaderHint()
+	{
+		return this.leaderHint;
+	}
 }
@@ -0,0 +1,42 @@
+package message;
+
+/**
+ * A replica sends this to all servers after taking a snapshot, to say
+ * that every slot below the watermark is in its snapshot.  Once a
+ * majority of replicas are past a slot, acceptors may forget the pvalues
+ * below it, and leaders know those slots are decided.
+ */
+public class Snapshotted extends Message
+{
+	private static final long serialVersionUID = 1L;
+	
+	private int senderId;
+	
+	// Every slot below this one is in the sender's snapshot.
+	private int watermark;
+	
+	public Snapshotted(int senderId, int watermark)
+	{
+		this.senderId = senderId;
+		this.watermark = watermark;
+	}
+	
+	public int getSenderId()
+	{
+		return this.senderId;
+	}
+	
+	public int getWatermark()
+	{
+		return this.watermark;
+	}
+
+	@Override
+	public String toString() 
+	{
+		String retVal = "";
+		retVal += "Snapshotted: <senderId: " + this.senderId + ", watermark: " + this.watermark + ">";
+		return retVal;
+	}
+
+}
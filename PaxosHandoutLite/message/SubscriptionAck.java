@@ -0,0 +1,51 @@
+package message;
+
+/**
+ * A client sends this to all servers after each SubscriptionUpdate: it
+ * has every entry below throughSlot.  Whichever replica is designated
+ * next picks the stream up from there.
+ */
+public class SubscriptionAck extends Message
+{
+	private static final long serialVersionUID = 1L;
+	
+	private int clientId;
+	
+	// The client has every entry below this slot.
+	private int throughSlot;
+	
+	// True if the client saw a gap (an update starting past throughSlot),
+	// so the stream must restart at throughSlot.
+	private boolean resend;
+	
+	public SubscriptionAck(int clientId, int throughSlot, boolean resend)
+	{
+		this.clientId = clientId;
+		this.throughSlot = throughSlot;
+		this.resend = resend;
+	}
+	
+	public int getClientId()
+	{
+		return this.clientId;
+	}
+	
+	public int getThroughSlot()
+	{
+		return this.throughSlot;
+	}
+	
+	public boolean isResend()
+	{
+		return this.resend;
+	}
+
+	@Override
+	public String toString() 
+	{
+		String retVal = "";
+		retVal += "SubscriptionAck: <clientId: " + this.clientId + ", throughSlot: " + this.throughSlot + ", resend: " + this.resend + ">";
+		return retVal;
+	}
+
+}
@@ -0,0 +1,64 @@
+package message;
+
+import java.util.ArrayList;
+
+import server.StateEntry;
+
+/**
+ * The designated replica streams decided entries to each client in these:
+ * every entry from fromSlot up to (not including) throughSlot, except the
+ * client's own commands (it got a Response for those).  fromSlot is where
+ * the last update to that client left off, so each update is a delta on
+ * top of the ones before it.
+ */
+public class SubscriptionUpdate extends Message
+{
+	private static final long serialVersionUID = 1L;
+	
+	private int senderId;
+	
+	private int fromSlot;
+	
+	// The update covers every slot below this one.
+	private int throughSlot;
+	
+	// The entries in [fromSlot, throughSlot), by slot.
+	private ArrayList<StateEntry> entries;
+	
+	public SubscriptionUpdate(int senderId, int fromSlot, int throughSlot, ArrayList<StateEntry> entries)
+	{
+		this.senderId = senderId;
+		this.fromSlot = fromSlot;
+		this.throughSlot = throughSlot;
+		this.entries = entries;
+	}
+	
+	public int getSenderId()
+	{
+		return this.senderId;
+	}
+	
+	public int getFromSlot()
+	{
+		return this.fromSlot;
+	}
+	
+	public int getThroughSlot()
+	{
+		return this.throughSlot;
+	}
+	
+	public ArrayList<StateEntry> getEntries()
+	{
+		return this.entries;
+	}
+
+	@Override
+	public String toString() 
+	{
+		String retVal = "";
+		retVal += "SubscriptionUpdate: <senderId: " + this.senderId + ", slots: [" + this.fromSlot + ", " + this.throughSlot + "), " + this.entries.size() + " entries>";
+		return retVal;
+	}
+
+}
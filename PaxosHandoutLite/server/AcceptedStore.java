@@ -0,0 +1,236 @@
+package server;
+
+import java.util.ArrayList;
+
+
+/**
+ * An acceptor's accepted set, keyed by slot number.  For each slot only
+ * the pvalue with the highest ballot is kept, since that is the only one
+ * pmax will ever pick for the slot.  Accepting a pvalue is O(1) and the
+ * memory used is bounded by the number of slots, not by how many ballots
+ * each slot went through.
+ *
+ * This is an open addressing (linear probing) hash table from int slot
+ * numbers to pvalues, so slot numbers are never boxed.
+ */
+public class AcceptedStore
+{
+	// Initial number of buckets.  Must be a power of 2.
+	private static final int INITIAL_CAPACITY = 64;
+
+	// Slot number held in each bucket.  Only meaningful if the bucket's
+	// entry in pvalues is non-null.
+	private int[] slots;
+
+	// PValue held in each bucket, null if the bucket is empty.
+	private PValue[] pvalues;
+
+	// Number of non-empty buckets.
+	private int size;
+
+	// Highest slot number stored, 0 if none.  Slot numbers start at 1.
+	private int maxSlot;
+
+	public AcceptedStore()
+	{
+		this.slots = new int[INITIAL_CAPACITY];
+		this.pvalues = new PValue[INITIAL_CAPACITY];
+		this.size = 0;
+		this.maxSlot = 0;
+	}
+
+
+	/**
+	 * Adds the given pvalue, unless a pvalue with a higher (or the same)
+	 * ballot is already stored for its slot.
+	 *
+	 * @param pvalue, the pvalue to add.
+	 */
+	public void add(PValue pvalue)
+	{
+		int slotNum = pvalue.getSlotNumber();
+		int i = this.indexOf(slotNum);
+
+		if (this.pvalues[i] == null)
+		{
+			this.slots[i] = slotNum;
+			this.pvalues[i] = pvalue;
+			this.size++;
+			this.maxSlot = Math.max(this.maxSlot, slotNum);
+
+			// Keep the table at most half full.
+			if (this.size * 2 > this.pvalues.length)
+			{
+				this.grow();
+			}
+		}
+		else if (pvalue.getBallot().greaterThan(this.pvalues[i].getBallot()))
+		{
+			this.pvalues[i] = pvalue;
+		}
+	}
+
+
+	/**
+	 * Adds every pvalue of the given list.  See add(PValue).
+	 *
+	 * @param list, the pvalues to add.
+	 */
+	public void addAll(ArrayList<PValue> list)
+	{
+		for (int i = 0; i < list.size(); i++)
+		{
+			this.add(list.get(i));
+		}
+	}
+
+
+	/**
+	 * @param slotNum, a slot number.
+	 *
+	 * @return the pvalue with the highest ballot for the given slot, or
+	 * null if none was accepted.
+	 */
+	public PValue get(int slotNum)
+	{
+		return this.pvalues[this.indexOf(slotNum)];
+	}
+
+
+	/**
+	 * @param fromSlot, the lowest slot number to include.
+	 *
+	 * @return the stored pvalues for all slots >= fromSlot, in no
+	 * particular order.
+	 */
+	public ArrayList<PValue> getFrom(int fromSlot)
+	{
+		ArrayList<PValue> list = new ArrayList<PValue>();
+
+		for (int i = 0; i < this.pvalues.length; i++)
+		{
+			if (this.pvalues[i] != null && this.slots[i] >= fromSlot)
+			{
+				list.add(this.pvalues[i]);
+			}
+		}
+
+		return list;
+	}
+
+
+	/**
+	 * Collects the stored pvalues from the given slot on, in slot order,
+	 * stopping after maxCount of them.  Slot numbers are mostly dense, so
+	 * this just looks up each slot in turn.
+	 *
+	 * @param fromSlot, the lowest slot number to include.
+	 * @param maxCount, the most pvalues to collect.
+	 * @param into, the list to add them to.
+	 *
+	 * @return the slot to continue from, or -1 if no slot after the ones
+	 * collected holds a pvalue.
+	 */
+	public int getRange(int fromSlot, int maxCount, ArrayList<PValue> into)
+	{
+		int count = 0;
+		for (int slotNum = Math.max(fromSlot, 1); slotNum <= this.maxSlot; slotNum++)
+		{
+			if (count == maxCount)
+			{
+				return slotNum;
+			}
+
+			PValue pvalue = this.get(slotNum);
+			if (pvalue != null)
+			{
+				into.add(pvalue);
+				count++;
+			}
+		}
+
+		return -1;
+	}
+
+
+	/**
+	 * @return all the stored pvalues, in no particular order.
+	 */
+	public ArrayList<PValue> toList()
+	{
+		return this.getFrom(Integer.MIN_VALUE);
+	}
+
+
+	public int size()
+	{
+		return this.size;
+	}
+
+
+	/**
+	 * Drops the pvalues of every slot below the given one, and shrinks the
+	 * table to fit what is left.
+	 *
+	 * @param slotNum, the lowest slot number to keep.
+	 */
+	public void removeBelow(int slotNum)
+	{
+		ArrayList<PValue> kept = this.getFrom(slotNum);
+
+		int capacity = INITIAL_CAPACITY;
+		while (kept.size() * 2 > capacity)
+		{
+			capacity *= 2;
+		}
+
+		this.slots = new int[capacity];
+		this.pvalues = new PValue[capacity];
+		this.size = 0;
+		this.maxSlot = 0;
+		this.addAll(kept);
+	}
+
+
+	/**
+	 * Returns the bucket holding the given slot, or else the empty bucket
+	 * where it would go.
+	 */
+	private int indexOf(int slotNum)
+	{
+		int mask = this.pvalues.length - 1;
+
+		// Spread the bits a little; slot numbers are mostly consecutive.
+		int i = (slotNum * 0x9E3779B9) & mask;
+
+		while (this.pvalues[i] != null && this.slots[i] != slotNum)
+		{
+			i = (i + 1) & mask;
+		}
+
+		return i;
+	}
+
+
+	/**
+	 * Doubles the number of buckets and re-inserts every entry.
+	 */
+	private void grow()
+	{
+		int[] oldSlots = this.slots;
+		PValue[] oldPValues = this.pvalues;
+
+		this.slots = new int[oldSlots.length * 2];
+		this.pvalues = new PValue[oldPValues.length * 2];
+
+		for (int j = 0; j < oldPValues.length; j++)
+		{
+			if (oldPValues[j] != null)
+			{
+				int i = this.indexOf(oldSlots[j]);
+				this.slots[i] = oldSlots[j];
+				this.pvalues[i] = oldPValues[j];
+			}
+		}
+	}
+}
@@ -1,17 +1,22 @@
 package server;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 import client.Command;
 import ballot.Ballot;
 import framework.NetController;
+import log.Logger;
 import message.AcceptedSetRequest;
 import message.AcceptedSetResponse;
 import message.Message;
 import message.P1a;
 import message.P1b;
 import message.P2a;
+import message.P2aBatch;
 import message.P2b;
+import message.P2bBatch;
+import message.Snapshotted;
 
 
 /**
@@ -27,8 +32,9 @@ public class Acceptor
 	// This acceptor's current ballot.
 	private Ballot currBallot;
 	
-	// This acceptor's accepted set.
-	private ArrayList<PValue> accepted;
+	// This acceptor's accepted set.  Only the highest ballot pvalue of
+	// each slot is kept.
+	private AcceptedStore accepted;
 	
 	// My server's NetController.
 	private NetController network;
@@ -36,23 +42,52 @@ public class Acceptor
 	// Number of servers in the system.
 	private int numServers;
 	
+	// This acceptor's write-ahead log, or null if it could not be opened.
+	private AcceptorLog log;
+	
+	// The replicas' snapshot watermarks.
+	private SnapshotWatermarks watermarks;
+	
+	// Every slot below this one is in the snapshot of a majority of
+	// replicas, so this acceptor has forgotten its pvalues and no longer
+	// accepts any for it.
+	private int compactedSlot;
+	
+	// Replies held back until the log records they depend on are on
+	// disk.  Sent by flush(), in order: pendingReplyTo.get(i) is the
+	// server pendingReplies.get(i) goes to.
+	private ArrayList<Message> pendingReplies;
+	private ArrayList<Integer> pendingReplyTo;
+	
 	// If this acceptor is currently recovering from a server crash.
 	// This is public so the Master class can read it (used for deciding
 	// when allClear is done).
 	public boolean isRecovering;
 	
-	// Roughly the time a recovering acceptor should stop waiting for '
-	// responses from other acceptors with their accepted sets.
-	private long recoveryStopWaitTime;
+	// Most pvalues sent in one AcceptedSetResponse chunk.
+	private static final int TRANSFER_CHUNK_SIZE = 64;
+	
+	// While recovering from peers: the slot the next chunk from each
+	// acceptor starts at, or -1 once its whole set has arrived.
+	private int[] transferFrom;
+	
+	// While recovering from peers: whether each acceptor sent a chunk
+	// since the last retry.
+	private boolean[] transferHeard;
+	
+	// Number of acceptors whose whole set has arrived, and how many it
+	// takes: a majority of all acceptors, counting only the others.
+	private int numTransfersDone;
+	private int numTransfersNeeded;
+	
+	// How long to wait for a chunk before asking again.
+	private long transferRetryTime;
 	
-	// When recovering, set this to true after we have sent our acceptor set
-	// requests, so we only do it once.
-	private boolean sentAcceptorSetRequests;
+	private TimerWheel timers;
 	
-	public Acceptor(int serverId, NetController network, boolean isRecovering, int numServers, long recoveryWaitTime)
+	public Acceptor(int serverId, NetController network, boolean isRecovering, int numServers, long recoveryWaitTime, TimerWheel timers)
 	{
 		this.isRecovering = isRecovering;
-		this.sentAcceptorSetRequests = false;
 		
 		this.numServers = numServers;
 		this.serverId = serverId;
@@ -63,200 +98,558 @@ public class Acceptor
 		this.currBallot = null;
 		
 		// This acceptor's accepted set is empty initially.
-		this.accepted = new ArrayList<PValue>();
+		this.accepted = new AcceptedStore();
 		
 		this.network = network;
 		
-		this.recoveryStopWaitTime = recoveryWaitTime + System.currentTimeMillis();
+		this.pendingReplies = new ArrayList<Message>();
+		this.pendingReplyTo = new ArrayList<Integer>();
+		
+		this.watermarks = new SnapshotWatermarks(numServers);
+		this.compactedSlot = 0;
+		
+		this.timers = timers;
 		
-		// Testing.
-		//if (this.isRecovering)
-		//{
-		//	Logger.getInstance().println("Current time:  " + System.currentTimeMillis());
-		//	Logger.getInstance().println("Waiting until: " + this.recoveryStopWaitTime);
-		//}
-	}
-	
-	public void runTasks(Message message)
-	{
 		//**********************************************************************
-		//* Recovery code (non-blocking).
+		//* Recovery from the local log.  A fresh acceptor starts an empty
+		//* log.  A restarted one replays its log, which holds every promise
+		//* and accept it ever replied to, so it is done recovering at once.
 		//**********************************************************************
-		if (this.isRecovering)
+		try
 		{
-			//******************************************************************
-			//* Recovering Acceptor received an AcceptedSetResponse message 
-			//* from a fellow Acceptor.
-			//******************************************************************
-			if (message instanceof AcceptedSetResponse)
+			this.log = new AcceptorLog(network.getLogDir(), serverId, !this.isRecovering);
+			
+			if (this.isRecovering && !this.log.isEmpty())
 			{
-				AcceptedSetResponse tempAcceptedSetMsg = (AcceptedSetResponse) message;
-				ArrayList<PValue> tempAcceptedSet = tempAcceptedSetMsg.getAcceptedSet();
-				
-				// Testing.
-				//Logger.getInstance().println("Acceptor " + this.serverId + " got accepted set from: " + tempAcceptedSetMsg.getSenderId());
-				
-				// Take union of my accepted set with the one I just received.
-				PValue.takeUnionOfPValueSets(this.accepted, tempAcceptedSet);
-				
-				// Testing.
-				//Logger.getInstance().println("Acceptor " + this.serverId + " new accepted set:");
-				//PValue.printNicely(this.accepted);
+				this.currBallot = this.log.replay(this.accepted);
+				this.compactedSlot = this.log.getCompactedSlot();
+				this.isRecovering = false;
 			}
+		}
+		catch (IOException exc)
+		{
+			Logger.getInstance().error("ERROR: I/O while opening acceptor log: {}", exc.getMessage());
+			this.log = null;
+		}
+		
+		//**********************************************************************
+		//* Recovery code (non-blocking), when there is no log to recover
+		//* from.  Stream the other acceptors' accepted sets, a chunk at a
+		//* time, starting as soon as the server runs.  Recovery is done
+		//* once the whole sets of a majority of the other acceptors have
+		//* arrived: any pvalue a majority accepted is in one of them.  This
+		//* acceptor's own set is empty, so it cannot count towards that
+		//* majority, and with three servers recovery waits for both peers.
+		//* An acceptor that sends nothing for recoveryWaitTime is asked
+		//* again.
+		//**********************************************************************
+		if (this.isRecovering)
+		{
+			this.transferFrom = new int[numServers];
+			this.transferHeard = new boolean[numServers];
+			this.numTransfersDone = 0;
+			this.numTransfersNeeded = Math.min(numServers / 2 + 1, numServers - 1);
+			this.transferRetryTime = recoveryWaitTime;
 			
-			if (this.sentAcceptorSetRequests == false)
+			if (this.numTransfersNeeded == 0)
 			{
-				// Send AcceptedSetRequest messages to all other servers.
-				for (int i = 0; i < this.numServers; i++)
-				{
-					AcceptedSetRequest request = new AcceptedSetRequest(this.serverId);
-					this.network.sendMsgToServer(i, request);
-				}
-			
-				// Done sending acceptor set requests, make sure we don't send them
-				// additional times.
-				this.sentAcceptorSetRequests = true;
+				this.stopRecovering();
 			}
-
-			// We are still waiting for messages from other acceptors.
-			// Check if we are done waiting yet.
-			if (System.currentTimeMillis() >= this.recoveryStopWaitTime)
+			else
 			{
-				this.isRecovering = false;
-				//Logger.getInstance().println("Acceptor " + this.serverId + " done recovering: Current time: " + System.currentTimeMillis());
+				timers.schedule(0, () -> this.sendAcceptedSetRequests());
 			}
-			
-			// If still recovering, do not execute commands on messages.
-			if (this.isRecovering)
+		}
+	}
+	
+	/**
+	 * Asks every other acceptor whose set has not all arrived, and which
+	 * sent nothing since the last time, for its next chunk.  Repeats every
+	 * transferRetryTime until recovery is done.
+	 */
+	private void sendAcceptedSetRequests()
+	{
+		if (!this.isRecovering)
+		{
+			return;
+		}
+		
+		for (int i = 0; i < this.numServers; i++)
+		{
+			if (i != this.serverId && this.transferFrom[i] != -1 && !this.transferHeard[i])
 			{
-				return;
+				AcceptedSetRequest request = new AcceptedSetRequest(this.serverId, this.transferFrom[i]);
+				this.network.sendMsgToServer(i, request);
 			}
+			this.transferHeard[i] = false;
 		}
 		
+		this.timers.schedule(this.transferRetryTime, () -> this.sendAcceptedSetRequests());
+	}
+	
+	
+	/**
+	 * We are done waiting for messages from other acceptors.
+	 */
+	private void stopRecovering()
+	{
+		this.isRecovering = false;
+		this.transferFrom = null;
+		this.transferHeard = null;
 		
-		//**********************************************************************
-		//* Acceptor received AcceptorSetRequest from a recovering Acceptor.
-		//**********************************************************************
-		if (message instanceof AcceptedSetRequest)
+		Logger.getInstance().info("Acceptor {} done recovering from {} acceptors.", this.serverId, this.numTransfersDone);
+	}
+	
+	
+	/**
+	 * @return the slot below which this acceptor has forgotten its pvalues.
+	 */
+	public int getCompactedSlot()
+	{
+		return this.compactedSlot;
+	}
+	
+	
+	/**
+	 * Forces this acceptor's new log records to disk, then sends the
+	 * replies that were held back for them.  The server calls this once
+	 * per pass of its event loop, so a single fsync covers every promise
+	 * and accept made while handling that pass's messages.
+	 */
+	public void flush()
+	{
+		if (this.pendingReplies.isEmpty())
 		{
-			AcceptedSetRequest acceptedSetRequest = (AcceptedSetRequest) message;
-			
-			// Find which acceptor is recovering (who sent the message?)
-			int recoveringAcceptor = acceptedSetRequest.getSenderId();
-			
-			// Send my accepted set to the recovering acceptor.
-			AcceptedSetResponse response = new AcceptedSetResponse(this.serverId, this.accepted);
-			this.network.sendMsgToServer(recoveringAcceptor, response);
+			return;
 		}
 		
-		//**********************************************************************
-		//* Acceptor received p1a from a Scout.
-		//**********************************************************************
-		if (message instanceof P1a)
+		if (this.log != null)
 		{
-			P1a p1a = (P1a) message;
-			
-			//Logger.getInstance().println("Acceptor got p1a from Scout " + p1a.getMyLeaderId() + ": " + p1a);
-			
-			// If the scout's ballot is larger than this acceptor's.
-			boolean scoutBallotLarger = false;
-			
-			// Check for "bottom" case always.
-			if (this.currBallot == null)
+			try
 			{
-				// Current ballot is "bottom," so any real ballot is larger.
-				scoutBallotLarger = true;
+				this.log.sync();
 			}
-			else
+			catch (IOException exc)
+			{
+				// Never answer for state that may not be on disk.  Dropping
+				// the replies looks like lost messages to the leaders, which
+				// Paxos already handles.
+				Logger.getInstance().error("ERROR: I/O while writing acceptor log: {}", exc.getMessage());
+				this.pendingReplies.clear();
+				this.pendingReplyTo.clear();
+				return;
+			}
+		}
+		
+		for (int i = 0; i < this.pendingReplies.size(); i++)
+		{
+			this.network.sendMsgToServer(this.pendingReplyTo.get(i), this.pendingReplies.get(i));
+		}
+		this.pendingReplies.clear();
+		this.pendingReplyTo.clear();
+	}
+	
+	
+	/**
+	 * Holds back a reply until flush().
+	 * 
+	 * @param serverId, the server to send the reply to.
+	 * @param reply, the reply.
+	 */
+	private void reply(int serverId, Message reply)
+	{
+		this.pendingReplyTo.add(serverId);
+		this.pendingReplies.add(reply);
+	}
+	
+	
+	/**
+	 * Takes the given ballot as this acceptor's current ballot, and logs
+	 * the promise.
+	 * 
+	 * @param ballot, the ballot.
+	 */
+	private void promise(Ballot ballot)
+	{
+		this.currBallot = ballot;
+		
+		if (this.log != null)
+		{
+			try
+			{
+				this.log.logPromise(ballot);
+			}
+			catch (IOException exc)
+			{
+				Logger.getInstance().error("ERROR: I/O while writing acceptor log: {}", exc.getMessage());
+			}
+		}
+	}
+	
+	
+	/**
+	 * Adds the given pvalues to this acceptor's accepted set, and logs
+	 * them.
+	 * 
+	 * @param pvalues, the pvalues.
+	 */
+	private void accept(ArrayList<PValue> pvalues)
+	{
+		this.accepted.addAll(pvalues);
+		
+		if (this.log != null)
+		{
+			try
 			{
-				// Current ballot is not "bottom."  Must actually compare it.
-				if (!this.currBallot.greaterThan(p1a.getBallot()))
+				for (int i = 0; i < pvalues.size(); i++)
 				{
-					// The ballot from the scout is larger, so take it.
-					scoutBallotLarger = true;
+					this.log.logAccept(pvalues.get(i));
 				}
 			}
-			
-			if (scoutBallotLarger)
+			catch (IOException exc)
 			{
-				this.currBallot = p1a.getBallot();
+				Logger.getInstance().error("ERROR: I/O while writing acceptor log: {}", exc.getMessage());
 			}
-			
-			// If we replaced ballot or not, send message back to the scout
-			// who sent us this p1a message.  This message is of type p1b.
-			
-			// NOTE: WE MUST send back a deep copy of the ballot and the accepted
-			// set.  Why?  Because if we send back a reference, the acceptor
-			// may change the contents dynamically without notice.
-			
-			// NOTE: all the classes in the package messages are serializable,
-			// and are serialized when sent over the network.  Thus, deep
-			// copying is not required, since it is done implicitly by the
-			// serialization when sending across the network.
-			P1b p1b = new P1b(Ballot.deepCopyBallot(this.currBallot), PValue.deepCopyPValueSet(this.accepted), this.serverId);
-			
-			this.network.sendMsgToServer(p1a.getMyLeaderId(), p1b);
+		}
+	}
+	
+	
+	/**
+	 * Recovering Acceptor received an AcceptedSetResponse message from a
+	 * fellow Acceptor: the next chunk of its accepted set.
+	 * 
+	 * @param response, a chunk of the fellow Acceptor's accepted set.
+	 */
+	public void handleAcceptedSetResponse(AcceptedSetResponse response)
+	{
+		if (!this.isRecovering)
+		{
+			return;
 		}
 		
+		// Only the chunk we asked for; a retry may have crossed with it.
+		int sender = response.getSenderId();
+		if (response.getFromSlot() != this.transferFrom[sender])
+		{
+			return;
+		}
+		this.transferHeard[sender] = true;
 		
-		//**********************************************************************
-		//* Acceptor received p2a from a Commander.
-		//**********************************************************************
-		if (message instanceof P2a)
+		// Testing.
+		//Logger.getInstance().println("Acceptor " + this.serverId + " got accepted set from: " + response.getSenderId());
+		
+		// Slots the sender has forgotten are decided; forget them too,
+		// including what other acceptors sent for them, and log it so a
+		// restart does not bring them back.
+		if (response.getCompactedSlot() > this.compactedSlot)
 		{
-			P2a p2a = (P2a) message;
-			
-			//Logger.getInstance().println("Acceptor got p2a from Commander " + p2a.getMyLeaderId() + ": " + p2a);
+			this.compactBelow(response.getCompactedSlot());
+		}
+		
+		// Take union of my accepted set with the chunk I just received.
+		ArrayList<PValue> chunk = response.getAcceptedSet();
+		chunk.removeIf(pvalue -> pvalue.getSlotNumber() < this.compactedSlot);
+		this.accept(chunk);
+		
+		// Ask for the next chunk, or count the sender as done.
+		this.transferFrom[sender] = response.getNextSlot();
+		if (response.getNextSlot() != -1)
+		{
+			AcceptedSetRequest request = new AcceptedSetRequest(this.serverId, response.getNextSlot());
+			this.network.sendMsgToServer(sender, request);
+		}
+		else
+		{
+			this.numTransfersDone++;
+			if (this.numTransfersDone == this.numTransfersNeeded)
+			{
+				this.stopRecovering();
+			}
+		}
+	}
+	
+	
+	/**
+	 * Acceptor heard that a replica took a snapshot.  Once a majority of
+	 * replicas have snapshotted past a slot, its pvalues are no longer
+	 * needed: forget them, and compact the log.
+	 * 
+	 * The watermarks start over when the acceptor restarts, but the
+	 * compacted slot comes back from the log (or from a peer), so the
+	 * majority watermark may still be below it: the compacted slot only
+	 * ever goes up.
+	 * 
+	 * @param snapshotted, the replica's announcement.
+	 */
+	public void handleSnapshotted(Snapshotted snapshotted)
+	{
+		if (!this.watermarks.update(snapshotted.getSenderId(), snapshotted.getWatermark()))
+		{
+			return;
+		}
+		
+		int majority = this.watermarks.getMajorityWatermark();
+		if (majority <= this.compactedSlot)
+		{
+			return;
+		}
+		
+		this.compactBelow(majority);
+	}
+	
+	
+	/**
+	 * Forgets the pvalues below the given slot, and compacts the log.
+	 * 
+	 * @param watermark, a slot above compactedSlot; every slot below it
+	 * is decided.
+	 */
+	private void compactBelow(int watermark)
+	{
+		this.compactedSlot = watermark;
+		this.accepted.removeBelow(this.compactedSlot);
+		
+		if (this.log != null)
+		{
+			try
+			{
+				this.log.compact(this.currBallot, this.compactedSlot, this.accepted);
+			}
+			catch (IOException exc)
+			{
+				Logger.getInstance().error("ERROR: I/O while compacting acceptor log: {}", exc.getMessage());
+			}
+		}
+	}
+	
+	
+	/**
+	 * Acceptor received AcceptorSetRequest from a recovering Acceptor.
+	 * 
+	 * @param acceptedSetRequest, the request.
+	 */
+	public void handleAcceptedSetRequest(AcceptedSetRequest acceptedSetRequest)
+	{
+		// A recovering acceptor does not take part in Paxos yet.
+		if (this.isRecovering)
+		{
+			return;
+		}
+		
+		// Find which acceptor is recovering (who sent the message?)
+		int recoveringAcceptor = acceptedSetRequest.getSenderId();
+		
+		// Send the recovering acceptor the chunk of my accepted set it
+		// asked for.  Slots I have forgotten are left out.
+		int fromSlot = acceptedSetRequest.getFromSlot();
+		ArrayList<PValue> chunk = new ArrayList<PValue>(Math.min(Acceptor.TRANSFER_CHUNK_SIZE, this.accepted.size()));
+		int nextSlot = this.accepted.getRange(Math.max(fromSlot, this.compactedSlot), Acceptor.TRANSFER_CHUNK_SIZE, chunk);
+		
+		AcceptedSetResponse response = new AcceptedSetResponse(this.serverId, fromSlot, chunk, nextSlot, this.compactedSlot);
+		this.reply(recoveringAcceptor, response);
+	}
+	
+	
+	/**
+	 * Acceptor received p1a from a Scout.
+	 * 
+	 * @param p1a, the p1a.
+	 */
+	public void handleP1a(P1a p1a)
+	{
+		// A recovering acceptor does not take part in Paxos yet.
+		if (this.isRecovering)
+		{
+			return;
+		}
+		
+		//Logger.getInstance().println("Acceptor got p1a from Scout " + p1a.getMyLeaderId() + ": " + p1a);
+		
+		// If the scout's ballot is larger than this acceptor's.
+		boolean scoutBallotLarger = false;
+		
+		// Check for "bottom" case always.
+		if (this.currBallot == null)
+		{
+			// Current ballot is "bottom," so any real ballot is larger.
+			scoutBallotLarger = true;
+		}
+		else
+		{
+			// Current ballot is not "bottom."  Must actually compare it.
+			if (!this.currBallot.greaterThan(p1a.getBallot()))
+			{
+				// The ballot from the scout is larger, so take it.
+				scoutBallotLarger = true;
+			}
+		}
+		
+		if (scoutBallotLarger)
+		{
+			this.promise(p1a.getBallot());
+		}
+		
+		// If we replaced ballot or not, send message back to the scout
+		// who sent us this p1a message.  This message is of type p1b.
+		
+		// NOTE: WE MUST send back a deep copy of the ballot and the accepted
+		// set.  Why?  Because if we send back a reference, the acceptor
+		// may change the contents dynamically without notice.
+		
+		// NOTE: all the classes in the package messages are serializable,
+		// and are serialized when sent over the network.  Thus, deep
+		// copying is not required, since it is done implicitly by the
+		// serialization when sending across the network.
+		
+		// Only the pvalues for slots >= fromSlot are sent; the scout's
+		// leader knows every slot below that was already decided.
+		// getFrom() returns a fresh list, and the pvalues in it are
+		// copied by the serialization, so no deep copy here.  The pvalues
+		// below compactedSlot are gone, so say where they stop.
+		P1b p1b = new P1b(Ballot.deepCopyBallot(this.currBallot), this.accepted.getFrom(p1a.getFromSlot()), this.serverId, this.compactedSlot);
+		
+		this.reply(p1a.getMyLeaderId(), p1b);
+	}
+	
+	
+	/**
+	 * Acceptor received p2a from a Commander.
+	 * 
+	 * @param p2a, the p2a.
+	 */
+	public void handleP2a(P2a p2a)
+	{
+		// A recovering acceptor does not take part in Paxos yet.
+		if (this.isRecovering)
+		{
+			return;
+		}
+		
+		//Logger.getInstance().println("Acceptor got p2a from Commander " + p2a.getMyLeaderId() + ": " + p2a);
+		
+		// The slot is decided and forgotten.  Accepting anything for it
+		// now could decide it again, so don't.  Tell the leader where we
+		// compacted to instead, so it stops re-sending the slot (a leader
+		// that just restarted missed the snapshots).
+		if (p2a.getMyPValue().getSlotNumber() < this.compactedSlot)
+		{
+			this.reply(p2a.getMyLeaderId(), new Snapshotted(this.serverId, this.compactedSlot));
+			return;
+		}
+		
+		// If commander ballot is larger than or equal to this acceptor's.
+		boolean commanderBallotIsLargerOrEqual = false;
+		Ballot commanderBallot = p2a.getMyPValue().getBallot();
+		
+		// Check for "bottom" case always.
+		if (this.currBallot == null)
+		{
+			// Current ballot is "bottom," so any real ballot is larger.
+			commanderBallotIsLargerOrEqual = true;
+		}
+		else
+		{
+			// Current ballot is not "bottom."  Must actually compare it.
+			boolean ballotsEqual = this.currBallot.equals(commanderBallot);
+			boolean commanderBallotLarger = false;
 			
-			// If commander ballot is larger than or equal to this acceptor's.
-			boolean commanderBallotIsLargerOrEqual = false;
-			Ballot commanderBallot = p2a.getMyPValue().getBallot();
+			// If ballots are equal, do not call greaterThan, it will return false.
+			if (!ballotsEqual)
+			{
+				commanderBallotLarger = !this.currBallot.greaterThan(commanderBallot);
+			}
+			 
 			
-			// Check for "bottom" case always.
-			if (this.currBallot == null)
+			if (ballotsEqual || commanderBallotLarger)
 			{
-				// Current ballot is "bottom," so any real ballot is larger.
+				// The ballot from the commander is larger or equal, so take it.
 				commanderBallotIsLargerOrEqual = true;
 			}
-			else
+		}
+		
+		// if b >= ballot_num (from the Paper).
+		if (commanderBallotIsLargerOrEqual)
+		{
+			// Replace this acceptor's ballot.  Only a new ballot needs a
+			// promise record.
+			if (this.currBallot == null || !this.currBallot.equals(commanderBallot))
 			{
-				// Current ballot is not "bottom."  Must actually compare it.
-				boolean ballotsEqual = this.currBallot.equals(commanderBallot);
-				boolean commanderBallotLarger = false;
-				
-				// If ballots are equal, do not call greaterThan, it will return false.
-				if (!ballotsEqual)
-				{
-					commanderBallotLarger = !this.currBallot.greaterThan(commanderBallot);
-				}
-				 
-				
-				if (ballotsEqual || commanderBallotLarger)
-				{
-					// The ballot from the commander is larger or equal, so take it.
-					commanderBallotIsLargerOrEqual = true;
-				}
+				this.promise(commanderBallot);
 			}
 			
-			// if b >= ballot_num (from the Paper).
-			if (commanderBallotIsLargerOrEqual)
+			// accepted = accepted (union) {<b, s, p>} (from the Paper).
+			// Since b >= every ballot we accepted before, this replaces
+			// whatever pvalue we had for the slot.
+			ArrayList<PValue> pvalues = new ArrayList<PValue>(1);
+			pvalues.add(p2a.getMyPValue());
+			this.accept(pvalues);
+		}
+		
+		// Send to the commander a p2b message.
+		P2b p2b = new P2b(this.serverId, Ballot.deepCopyBallot(this.currBallot), p2a.getMyPValue().getSlotNumber());
+		
+		this.reply(p2a.getMyLeaderId(), p2b);
+	}
+	
+	
+	/**
+	 * Acceptor received a batch of p2a's from a batched Commander.
+	 * 
+	 * @param p2aBatch, the batch.
+	 */
+	public void handleP2aBatch(P2aBatch p2aBatch)
+	{
+		// A recovering acceptor does not take part in Paxos yet.
+		if (this.isRecovering)
+		{
+			return;
+		}
+		
+		// Same as for a single p2a, done once for the whole batch since
+		// all of its pvalues share one ballot.
+		if (this.currBallot == null || !this.currBallot.greaterThan(p2aBatch.getBallot()))
+		{
+			// Replace this acceptor's ballot.
+			if (this.currBallot == null || !this.currBallot.equals(p2aBatch.getBallot()))
 			{
-				// Replace this acceptor's ballot.
-				this.currBallot = p2a.getMyPValue().getBallot();
-				
-				// accepted = accepted (union) {<b, s, p>} (from the Paper).
-				// In other words, if the PValue from p2a is not in accepted,
-				// add it, else don't.
-				if (!this.accepted.contains(p2a.getMyPValue()))
-				{
-					this.accepted.add(p2a.getMyPValue());
-				}
+				this.promise(p2aBatch.getBallot());
 			}
 			
-			// Send to the commander a p2b message.
-			P2b p2b = new P2b(this.serverId, Ballot.deepCopyBallot(this.currBallot));
-			
-			this.network.sendMsgToServer(p2a.getMyLeaderId(), p2b);
+			// accepted = accepted (union) {<b, s, p>} for every pvalue,
+			// except those of forgotten slots (see handleP2a()).
+			ArrayList<PValue> pvalues = p2aBatch.getPValues();
+			if (this.compactedSlot > 0)
+			{
+				pvalues.removeIf(pvalue -> pvalue.getSlotNumber() < this.compactedSlot);
+			}
+			this.accept(pvalues);
+		}
+		
+		// One p2b for the whole batch, listing the slots it answers.
+		// Forgotten slots get no p2b, but the leader is told where we
+		// compacted to (see handleP2a()).
+		ArrayList<Integer> slots = new ArrayList<Integer>(p2aBatch.getProposals().size());
+		boolean anyForgotten = false;
+		for (int i = 0; i < p2aBatch.getProposals().size(); i++)
+		{
+			int slotNum = p2aBatch.getProposals().get(i).getSlotNum();
+			if (slotNum >= this.compactedSlot)
+			{
+				slots.add(slotNum);
+			}
+			else
+			{
+				anyForgotten = true;
+			}
+		}
+		
+		P2bBatch p2bBatch = new P2bBatch(this.serverId, Ballot.deepCopyBallot(this.currBallot), slots);
+		
+		this.reply(p2aBatch.getMyLeaderId(), p2bBatch);
+		
+		if (anyForgotten)
+		{
+			this.reply(p2aBatch.getMyLeaderId(), new Snapshotted(this.serverId, this.compactedSlot));
 		}
 	}
 }
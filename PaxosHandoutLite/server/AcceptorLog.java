@@ -0,0 +1,361 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+import ballot.Ballot;
+import log.Logger;
+import message.MessageCodec;
+
+
+/**
+ * An acceptor's write-ahead log: an append-only file of the ballots it
+ * promised and the pvalues it accepted, so a restarted acceptor can
+ * rebuild its state from local disk instead of from its peers.
+ *
+ * Each record is written as
+ *
+ *     int length, int CRC32, byte type, body
+ *
+ * where length counts the type byte and the body, and the CRC covers
+ * both.  Replay stops at the first record that is cut short or fails its
+ * check (a write the crash interrupted) and drops the rest of the file.
+ *
+ * Records are buffered in memory and made durable by sync(), which writes
+ * them all and forces them to disk once.  The acceptor holds back its
+ * replies until then, so one fsync commits a whole group of promises and
+ * accepts.
+ *
+ * Once the acceptor may forget the slots below a watermark, compact()
+ * rewrites the log as just the current ballot, the watermark and the
+ * pvalues that are left, so the log does not grow forever.
+ */
+public class AcceptorLog
+{
+	// Directory, under the configured log directory, holding the logs.
+	private static final String LOG_DIR = "acceptorLogs";
+
+	// Record types.  Part of the file format -- never renumber.
+	private static final byte RECORD_PROMISE = 1;
+	private static final byte RECORD_ACCEPT  = 2;
+	private static final byte RECORD_COMPACT = 3;
+
+	// Largest record replay will believe; anything bigger is garbage.
+	private static final int MAX_RECORD_LENGTH = 1 << 20;
+
+	private File file;
+
+	private FileChannel channel;
+
+	// Records appended since the last sync().
+	private ByteArrayOutputStream pending;
+
+	// Scratch space for one record's type and body.
+	private ByteArrayOutputStream record;
+	private DataOutputStream recordOut;
+
+	private CRC32 crc;
+
+	// The watermark of the last compaction, as of replay() or compact().
+	private int compactedSlot;
+
+	/**
+	 * Opens the log of the given acceptor.
+	 *
+	 * @param logDir, the directory the server keeps its logs under.
+	 * @param serverId, the acceptor's server.
+	 * @param fresh, true to start an empty log (discarding any old one),
+	 * false to keep the existing records for replay().
+	 */
+	public AcceptorLog(String logDir, int serverId, boolean fresh) throws IOException
+	{
+		File dir = new File(logDir, AcceptorLog.LOG_DIR);
+		dir.mkdirs();
+		this.file = new File(dir, "acceptor" + serverId + ".log");
+
+		this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (fresh)
+		{
+			this.channel.truncate(0);
+			this.channel.force(true);
+		}
+
+		this.pending = new ByteArrayOutputStream();
+		this.record = new ByteArrayOutputStream();
+		this.recordOut = new DataOutputStream(this.record);
+		this.crc = new CRC32();
+		this.compactedSlot = 0;
+	}
+
+
+	/**
+	 * @return true if the log holds any records.
+	 */
+	public boolean isEmpty() throws IOException
+	{
+		return this.channel.size() == 0;
+	}
+
+
+	/**
+	 * Appends a promise: the acceptor's ballot is now the given ballot.
+	 *
+	 * @param ballot, the ballot.
+	 */
+	public void logPromise(Ballot ballot) throws IOException
+	{
+		this.recordOut.writeByte(AcceptorLog.RECORD_PROMISE);
+		MessageCodec.writeBallot(this.recordOut, ballot);
+		this.endRecord();
+	}
+
+
+	/**
+	 * Appends an accept: the acceptor accepted the given pvalue.
+	 *
+	 * @param pvalue, the pvalue.
+	 */
+	public void logAccept(PValue pvalue) throws IOException
+	{
+		this.recordOut.writeByte(AcceptorLog.RECORD_ACCEPT);
+		MessageCodec.writePValue(this.recordOut, pvalue);
+		this.endRecord();
+	}
+
+
+	/**
+	 * @return the watermark of the last compaction (the acceptor has
+	 * forgotten every slot below it), or 0 if there was none.
+	 */
+	public int getCompactedSlot()
+	{
+		return this.compactedSlot;
+	}
+
+
+	/**
+	 * Replaces the log with one holding only the given state.  The records
+	 * appended since the last sync() are dropped, since the state given
+	 * already includes them.  If the log cannot be replaced, the old one
+	 * stays open and keeps those records for the next sync().
+	 *
+	 * @param ballot, the acceptor's current ballot (may be null).
+	 * @param watermark, every slot below it has been forgotten.
+	 * @param accepted, the acceptor's accepted set, with the slots below
+	 * the watermark already removed.
+	 */
+	public void compact(Ballot ballot, int watermark, AcceptedStore accepted) throws IOException
+	{
+		byte[] unsynced = this.pending.toByteArray();
+		this.pending.reset();
+
+		if (ballot != null)
+		{
+			this.logPromise(ballot);
+		}
+		this.recordOut.writeByte(AcceptorLog.RECORD_COMPACT);
+		this.recordOut.writeInt(watermark);
+		this.endRecord();
+
+		ArrayList<PValue> pvalues = accepted.toList();
+		for (int i = 0; i < pvalues.size(); i++)
+		{
+			this.logAccept(pvalues.get(i));
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(this.pending.toByteArray());
+		this.pending.reset();
+
+		// Write the new log beside the old one, then rename it over the
+		// old one, so a crash leaves one or the other.  The new channel
+		// stays open across the rename, so the old channel is only given
+		// up once the new log is in place.
+		File tmp = new File(this.file.getPath() + ".tmp");
+		FileChannel out = null;
+		try
+		{
+			out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			while (buffer.hasRemaining())
+			{
+				out.write(buffer);
+			}
+			out.force(true);
+			Files.move(tmp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException exc)
+		{
+			this.pending.write(unsynced);
+			if (out != null)
+			{
+				out.close();
+			}
+			tmp.delete();
+			throw exc;
+		}
+
+		FileChannel old = this.channel;
+		this.channel = out;
+		this.compactedSlot = watermark;
+		old.close();
+
+		// Make the rename itself durable.
+		AcceptorLog.forceDirectory(this.file.getParentFile());
+	}
+
+
+	/**
+	 * @return true if records were appended since the last sync().
+	 */
+	public boolean needsSync()
+	{
+		return this.pending.size() > 0;
+	}
+
+
+	/**
+	 * Writes the records appended since the last sync() and forces them
+	 * to disk.
+	 */
+	public void sync() throws IOException
+	{
+		if (!this.needsSync())
+		{
+			return;
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(this.pending.toByteArray());
+		this.pending.reset();
+
+		while (buffer.hasRemaining())
+		{
+			this.channel.write(buffer);
+		}
+		this.channel.force(false);
+	}
+
+
+	/**
+	 * Replays the log into the given accepted set.  A torn or corrupt tail
+	 * is cut off, and new records go after the last good one.
+	 *
+	 * @param accepted, the accepted set to fill.
+	 *
+	 * @return the last promised ballot, or null ("bottom") if none.
+	 */
+	public Ballot replay(AcceptedStore accepted) throws IOException
+	{
+		Ballot ballot = null;
+		long goodLength = 0;
+		int numRecords = 0;
+
+		this.channel.position(0);
+		InputStream stream = new BufferedInputStream(Channels.newInputStream(this.channel));
+		DataInputStream in = new DataInputStream(stream);
+
+		while (true)
+		{
+			byte[] body;
+			try
+			{
+				int length = in.readInt();
+				long checksum = in.readInt() & 0xFFFFFFFFL;
+				if (length <= 0 || length > AcceptorLog.MAX_RECORD_LENGTH)
+				{
+					break;
+				}
+
+				body = new byte[length];
+				in.readFully(body);
+
+				this.crc.reset();
+				this.crc.update(body, 0, length);
+				if (this.crc.getValue() != checksum)
+				{
+					break;
+				}
+			}
+			catch (EOFException e)
+			{
+				break;
+			}
+
+			DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(body));
+			byte type = recordIn.readByte();
+			if (type == AcceptorLog.RECORD_PROMISE)
+			{
+				ballot = MessageCodec.readBallot(recordIn);
+			}
+			else if (type == AcceptorLog.RECORD_ACCEPT)
+			{
+				accepted.add(MessageCodec.readPValue(recordIn));
+			}
+			else if (type == AcceptorLog.RECORD_COMPACT)
+			{
+				this.compactedSlot = recordIn.readInt();
+			}
+			else
+			{
+				break;
+			}
+
+			goodLength += 8 + body.length;
+			numRecords++;
+		}
+
+		if (goodLength < this.channel.size())
+		{
+			Logger.getInstance().warn("Acceptor log {}: dropped {} bytes of torn records.", this.file, this.channel.size() - goodLength);
+			this.channel.truncate(goodLength);
+		}
+		this.channel.position(goodLength);
+
+		Logger.getInstance().info("Acceptor log {}: replayed {} records.", this.file, numRecords);
+
+		return ballot;
+	}
+
+
+	/**
+	 * Frames the record in the scratch buffer and moves it to pending.
+	 */
+	private void endRecord() throws IOException
+	{
+		byte[] body = this.record.toByteArray();
+		this.record.reset();
+
+		this.crc.reset();
+		this.crc.update(body, 0, body.length);
+
+		DataOutputStream out = new DataOutputStream(this.pending);
+		out.writeInt(body.length);
+		out.writeInt((int) this.crc.getValue());
+		out.write(body);
+	}
+
+
+	/**
+	 * Forces the given directory's entries (e.g., a rename) to disk.
+	 */
+	private static void forceDirectory(File dir) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ))
+		{
+			channel.force(true);
+		}
+	}
+}
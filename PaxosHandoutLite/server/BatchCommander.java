@@ -0,0 +1,296 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+import ballot.Ballot;
+import framework.NetController;
+import message.Decision;
+import message.P2aBatch;
+import message.P2bBatch;
+import message.Preempted;
+import message.Proposal;
+
+
+/**
+ * Runs phase 2 of Paxos for many slots at once.  Rather than one Commander
+ * per slot, each sending its own p2a to every acceptor, the proposals of a
+ * round go to each acceptor as a single P2aBatch, and the P2bBatch replies
+ * are tallied per slot in one table.  A leader has one of these.
+ */
+public class BatchCommander
+{
+	// A slot whose pvalue has been sent out but not yet decided.
+	private static class PendingSlot
+	{
+		PValue pvalue;
+		boolean[] accepted;
+		int numAccepted;
+		Round round;
+	}
+
+	// The slots sent out by one call to start().  They share one timeout.
+	private static class Round
+	{
+		ArrayList<PendingSlot> slots;
+		int numPending;
+		TimerWheel.Timer timeout;
+	}
+
+	// Slot number -> pending pvalue for that slot.
+	private HashMap<Integer, PendingSlot> pending;
+
+	// Timeouts of the rounds.
+	private TimerWheel timers;
+
+	// Gets the pvalues of the slots which were not decided in time.
+	private Consumer<ArrayList<PValue>> onTimeout;
+
+	// This server's NetController.
+	private NetController network;
+
+	// The number of servers in the network.
+	private int numServers;
+
+	private int myLeaderId;
+
+	// Leader's timebomb
+	private Timebomb timebomb;
+
+	public BatchCommander(int myLeaderId, NetController network, int numServers, Timebomb timebomb, TimerWheel timers, Consumer<ArrayList<PValue>> onTimeout)
+	{
+		this.pending = new HashMap<Integer, PendingSlot>();
+		this.timers = timers;
+		this.onTimeout = onTimeout;
+		this.myLeaderId = myLeaderId;
+		this.network = network;
+		this.numServers = numServers;
+		this.timebomb = timebomb;
+	}
+
+
+	/**
+	 * Sends the given pvalues to all acceptors, one P2aBatch per acceptor
+	 * for each distinct ballot among them.
+	 *
+	 * @param pvalues, the pvalues to get accepted.
+	 */
+	public void start(ArrayList<PValue> pvalues)
+	{
+		// Group by ballot.  There is almost always only one.
+		ArrayList<Ballot> ballots = new ArrayList<Ballot>();
+		ArrayList<ArrayList<Proposal>> batches = new ArrayList<ArrayList<Proposal>>();
+		
+		final Round round = new Round();
+		round.slots = new ArrayList<PendingSlot>(pvalues.size());
+		round.numPending = 0;
+
+		for (int i = 0; i < pvalues.size(); i++)
+		{
+			PValue pvalue = pvalues.get(i);
+
+			int batchIndex = ballots.indexOf(pvalue.getBallot());
+			if (batchIndex == -1)
+			{
+				ballots.add(pvalue.getBallot());
+				batches.add(new ArrayList<Proposal>());
+				batchIndex = ballots.size() - 1;
+			}
+			batches.get(batchIndex).add(new Proposal(pvalue.getSlotNumber(), pvalue.getCommand()));
+
+			PendingSlot slot = new PendingSlot();
+			slot.pvalue = pvalue;
+			slot.accepted = new boolean[this.numServers];
+			slot.numAccepted = 0;
+			slot.round = round;
+			this.remove(pvalue.getSlotNumber());
+			this.pending.put(pvalue.getSlotNumber(), slot);
+			round.slots.add(slot);
+			round.numPending++;
+		}
+
+		round.timeout = this.timers.schedule(Commander.COMMANDER_TIMEOUT, () -> this.timedOut(round));
+
+		for (int b = 0; b < ballots.size(); b++)
+		{
+			ArrayList<Proposal> batch = batches.get(b);
+			P2aBatch p2aBatch = new P2aBatch(this.myLeaderId, Ballot.deepCopyBallot(ballots.get(b)), batch);
+			
+			// The timebomb counts p2as, as if each slot had its own
+			// Commander sending to servers 0, 1, ... in turn: the j-th slot
+			// to server i is message j * numServers + i + 1.  Each server
+			// only gets the slots that would have gone out before it blew.
+			int remaining = this.timebomb.getRemaining();
+			int numSent = 0;
+			for (int i = 0; i < this.numServers; i++)
+			{
+				int count = batch.size();
+				if (remaining != Integer.MAX_VALUE)
+				{
+					count = Math.min(count, Math.max(0, (remaining - i + this.numServers - 1) / this.numServers));
+				}
+				
+				if (count == batch.size())
+				{
+					this.network.sendMsgToServer(i, p2aBatch);
+				}
+				else if (count > 0)
+				{
+					ArrayList<Proposal> prefix = new ArrayList<Proposal>(batch.subList(0, count));
+					this.network.sendMsgToServer(i, new P2aBatch(this.myLeaderId, Ballot.deepCopyBallot(ballots.get(b)), prefix));
+				}
+				numSent += count;
+			}
+			this.timebomb.tick(numSent);
+		}
+	}
+
+
+	/**
+	 * The leader learned that the given slot was decided: stop tallying
+	 * and re-sending it.
+	 *
+	 * @param slotNumber, the slot.
+	 */
+	public void decided(int slotNumber)
+	{
+		this.remove(slotNumber);
+	}
+
+
+	/**
+	 * The leader learned that every slot below the given one was decided:
+	 * stop tallying and re-sending them.
+	 *
+	 * @param watermark, the first slot that may still be undecided.
+	 */
+	public void decidedBelow(int watermark)
+	{
+		ArrayList<Integer> slotNumbers = new ArrayList<Integer>();
+		for (int slotNumber : this.pending.keySet())
+		{
+			if (slotNumber < watermark)
+			{
+				slotNumbers.add(slotNumber);
+			}
+		}
+
+		for (int i = 0; i < slotNumbers.size(); i++)
+		{
+			this.remove(slotNumbers.get(i));
+		}
+	}
+
+
+	/**
+	 * Tallies an acceptor's reply.  A slot is decided once a majority of
+	 * acceptors accepted its pvalue; a reply with a higher ballot ends the
+	 * round for its slots and preempts the leader.
+	 *
+	 * @param p2bBatch, the acceptor's reply.
+	 */
+	public void handle(P2bBatch p2bBatch)
+	{
+		Ballot acceptorBallot = p2bBatch.getBallot();
+		int acceptorId = p2bBatch.getAcceptorId();
+		boolean preempted = false;
+
+		ArrayList<Integer> slots = p2bBatch.getSlots();
+		for (int i = 0; i < slots.size(); i++)
+		{
+			int slotNumber = slots.get(i);
+			PendingSlot slot = this.pending.get(slotNumber);
+
+			// Already decided, timed out, or from an older round.
+			if (slot == null)
+			{
+				continue;
+			}
+
+			Ballot myBallot = slot.pvalue.getBallot();
+			if (acceptorBallot.equals(myBallot))
+			{
+				if (!slot.accepted[acceptorId])
+				{
+					slot.accepted[acceptorId] = true;
+					slot.numAccepted++;
+				}
+
+				// Do we have a majority of acceptors?
+				if (((double) slot.numAccepted) > ((double) this.numServers) / 2)
+				{
+					Decision decision = new Decision(new Proposal(slotNumber, slot.pvalue.getCommand()));
+
+					// send to all replicas: <decision, s, p> (from the Paper).
+					for (int j = 0; j < this.numServers; j++)
+					{
+						this.network.sendMsgToServer(j, decision);
+					}
+
+					this.remove(slotNumber);
+				}
+			}
+			else if (acceptorBallot.greaterThan(myBallot))
+			{
+				// This is exit() in the Paper for this slot.
+				this.remove(slotNumber);
+				preempted = true;
+			}
+		}
+
+		if (preempted)
+		{
+			// send to leader: <preempted, b'>
+			this.network.sendMsgToServer(this.myLeaderId, new Preempted(Ballot.deepCopyBallot(acceptorBallot)));
+		}
+	}
+
+
+	/**
+	 * Stops tracking the given slot, if it is pending.  The round's
+	 * timeout is cancelled once none of its slots are left.
+	 *
+	 * @param slotNumber, the slot.
+	 */
+	private void remove(int slotNumber)
+	{
+		PendingSlot slot = this.pending.remove(slotNumber);
+		if (slot != null && --slot.round.numPending == 0)
+		{
+			this.timers.cancel(slot.round.timeout);
+		}
+	}
+
+
+	/**
+	 * A round timed out: hands the pvalues of its slots which are still
+	 * pending to onTimeout, so the leader can re-send them once a majority
+	 * is up.
+	 *
+	 * @param round, the round.
+	 */
+	private void timedOut(Round round)
+	{
+		ArrayList<PValue> timedOut = new ArrayList<PValue>();
+
+		for (int i = 0; i < round.slots.size(); i++)
+		{
+			PendingSlot slot = round.slots.get(i);
+			int slotNumber = slot.pvalue.getSlotNumber();
+
+			// Skip slots that were decided, or re-sent in a later round.
+			if (this.pending.get(slotNumber) == slot)
+			{
+				this.pending.remove(slotNumber);
+				timedOut.add(slot.pvalue);
+			}
+		}
+		round.numPending = 0;
+
+		if (timedOut.size() > 0)
+		{
+			this.onTimeout.accept(timedOut);
+		}
+	}
+}
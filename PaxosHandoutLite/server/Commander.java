@@ -22,10 +22,12 @@ import framework.NetController;
  */
 public class Commander
 {
-	// Scout timeout in milliseconds.
-	private static final long COMMANDER_TIMEOUT = 1000;
-		
-	private long commanderCreatedTime;
+	// Commander timeout in milliseconds.
+	static final long COMMANDER_TIMEOUT = 1000;
+	
+	// Fires if this Commander is not done within COMMANDER_TIMEOUT.
+	private TimerWheel timers;
+	private TimerWheel.Timer timeout;
 	
 	// This Commander's unique ID in the eyes of the leader who spawned him.
 	private int uniqueId;
@@ -47,9 +49,10 @@ public class Commander
 	// Leader's timebomb
 	private Timebomb timebomb;
 		
-	public Commander(int myLeaderId, NetController network, int numServers, PValue pvalue, int uniqueId, Timebomb timebomb)
+	public Commander(int myLeaderId, NetController network, int numServers, PValue pvalue, int uniqueId, Timebomb timebomb, TimerWheel timers, Runnable onTimeout)
 	{
-		this.commanderCreatedTime = System.currentTimeMillis();
+		this.timers = timers;
+		this.timeout = timers.schedule(Commander.COMMANDER_TIMEOUT, onTimeout);
 		
 		this.uniqueId = uniqueId;
 		this.network = network;
@@ -79,6 +82,34 @@ public class Commander
 	}
 	
 	
+	/**
+	 * @return the slot number of this Commander's pvalue.
+	 */
+	public int getSlotNumber()
+	{
+		return this.pvalue.getSlotNumber();
+	}
+	
+	
+	/**
+	 * @return this Commander's pvalue.
+	 */
+	public PValue getPValue()
+	{
+		return this.pvalue;
+	}
+	
+	
+	/**
+	 * Cancels this Commander's timeout.  Call once the Commander is done
+	 * or has been replaced.
+	 */
+	public void cancelTimeout()
+	{
+		this.timers.cancel(this.timeout);
+	}
+	
+	
 	/**
 	 * This Commanders's run method.  When it is done completing its tasks,
 	 * the method will return the Commander's unique ID, at which point this 
@@ -152,10 +183,12 @@ public class Commander
 					return new CommanderReturnValue(null, this.myLeaderId, this.uniqueId);
 				}
 			}
-			else
+			// A p2b with a lower ballot answers an older p2a of our leader's,
+			// so it says nothing about this Commander's ballot -- ignore it.
+			else if (p2b.getBallot().greaterThan(this.pvalue.getBallot()))
 			{
 				// An acceptor returned a ballot which did not match.
-				Preempted preempted = new Preempted(Ballot.deepCopyBallot(this.pvalue.getBallot()));
+				Preempted preempted = new Preempted(Ballot.deepCopyBallot(p2b.getBallot()));
 				
 				// send to leader: <preempted, b'>
 				this.network.sendMsgToServer(this.myLeaderId, preempted);
@@ -166,14 +199,6 @@ public class Commander
 			}
 		}
 		
-		//**********************************************************************
-		//* Check if scout has timed out.
-		//**********************************************************************
-		if (System.currentTimeMillis() >= (this.commanderCreatedTime + Commander.COMMANDER_TIMEOUT))
-		{
-			return new CommanderReturnValue(this.pvalue, this.myLeaderId, -2);
-		}
-		
 		// This Commander is not done with its tasks yet.
 		return new CommanderReturnValue(null, this.myLeaderId, -1);
 	}
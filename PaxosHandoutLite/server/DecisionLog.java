@@ -0,0 +1,494 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import client.Command;
+import message.MessageCodec;
+
+
+/**
+ * A replica's log of performed commands (slot -> command), kept on disk
+ * in memory-mapped segment files rather than on the heap.
+ *
+ * Commands are appended in slot order.  Each segment is a file of
+ * SEGMENT_BYTES holding records
+ *
+ *     int slot, int length, command
+ *
+ * back to back, followed by zeros; a slot of 0 (slots start at 1) marks
+ * the end.  When a record does not fit, a new segment is started, named
+ * after its first slot.  A record too long for any segment gets one of
+ * its own, just big enough for it.
+ *
+ * The heap holds only the first slot of every segment, plus the mapping
+ * and a slot -> offset index of the last few segments used.  Reading an
+ * older slot maps its segment back in (and lets the least recently used
+ * one go), so the heap stays flat however long the history gets.
+ *
+ * Beside the segments, a snapshot file holds the rest of the replica's
+ * state as of a slot watermark: just the watermark and the bounded
+ * per-client table of performed commands (for duplicate detection), so
+ * its size does not depend on how many slots are below it.  With the
+ * segments forced to disk at the same time, that is the replica's whole
+ * state below the watermark, so a restart only has to scan the segments
+ * from there on.
+ *
+ * Segments are only deleted on a fresh start, never below a snapshot.
+ * The replica's state is the chat log itself -- every performed command
+ * -- and peers catching up and clients being streamed to read it from
+ * here, so there is nothing smaller to install in its place.  A replica
+ * that lags or lost its log replays the decisions from a peer's log
+ * rather than installing the peer's snapshot, and the segments grow with
+ * the history.
+ */
+public class DecisionLog
+{
+	// Directory, under the configured log directory, holding the logs.
+	private static final String LOG_DIR = "decisionLogs";
+
+	// Size of a segment file.
+	private static final int SEGMENT_BYTES = 1 << 20;
+
+	// Size of a record's slot and length fields.
+	private static final int HEADER_BYTES = 8;
+
+	// Most segments kept mapped and indexed at once (the one being
+	// appended to included).
+	private static final int MAX_LOADED_SEGMENTS = 4;
+
+	// Name of the snapshot file.
+	private static final String SNAPSHOT_FILE = "snapshot";
+
+	// First int of a snapshot file.  Snapshots of older formats (which held
+	// every performed command) do not start with it, and are ignored.
+	private static final int SNAPSHOT_MAGIC = 0x534E5032;
+
+	/**
+	 * One segment file.  Only its first slot and file stay on the heap
+	 * while it is not loaded.
+	 */
+	private static class Segment
+	{
+		private int firstSlot;
+
+		private File file;
+
+		// Size of the file: SEGMENT_BYTES, unless it holds a single record
+		// longer than that.
+		private long size;
+
+		// Null while the segment is not loaded.
+		private MappedByteBuffer buffer;
+
+		// slots[i] is the slot of the i-th record, which starts at
+		// offsets[i].  Only the first count entries are used.
+		private int[] slots;
+		private int[] offsets;
+		private int count;
+
+		// Where the next record goes.
+		private int end;
+	}
+
+	private File dir;
+
+	// First slot -> segment, for every segment.
+	private TreeMap<Integer, Segment> segments;
+
+	// The segment being appended to, or null if there is none yet.  It is
+	// always loaded.
+	private Segment tail;
+
+	// The other loaded segments, least recently used first.
+	private LinkedHashMap<Integer, Segment> loaded;
+
+	// Highest slot appended, 0 if none.
+	private int lastSlot;
+
+	// Scratch space for encoding one command.
+	private ByteArrayOutputStream scratch;
+	private DataOutputStream scratchOut;
+
+	/**
+	 * Opens the log of the given replica.
+	 *
+	 * @param logDir, the directory the server keeps its logs under.
+	 * @param serverId, the replica's server.
+	 * @param fresh, true to start an empty log (discarding any old one),
+	 * false to keep the existing segments.
+	 */
+	public DecisionLog(String logDir, int serverId, boolean fresh) throws IOException
+	{
+		this.dir = new File(new File(logDir, DecisionLog.LOG_DIR), "replica" + serverId);
+		this.dir.mkdirs();
+
+		this.segments = new TreeMap<Integer, Segment>();
+		this.loaded = new LinkedHashMap<Integer, Segment>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Segment> eldest)
+			{
+				if (this.size() > DecisionLog.MAX_LOADED_SEGMENTS - 1)
+				{
+					DecisionLog.unload(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+		this.tail = null;
+		this.lastSlot = 0;
+
+		this.scratch = new ByteArrayOutputStream();
+		this.scratchOut = new DataOutputStream(this.scratch);
+
+		File[] files = this.dir.listFiles();
+		for (int i = 0; i < files.length; i++)
+		{
+			String name = files[i].getName();
+			if (fresh)
+			{
+				files[i].delete();
+				continue;
+			}
+
+			if (!name.startsWith("segment") || !name.endsWith(".log"))
+			{
+				continue;
+			}
+
+			Segment segment = new Segment();
+			segment.firstSlot = Integer.parseInt(name.substring("segment".length(), name.length() - ".log".length()));
+			segment.file = files[i];
+			segment.size = Math.max(files[i].length(), DecisionLog.SEGMENT_BYTES);
+			this.segments.put(segment.firstSlot, segment);
+		}
+
+		// Appends go after the last record of the last segment.
+		if (!this.segments.isEmpty())
+		{
+			this.tail = this.load(this.segments.lastEntry().getValue());
+			if (this.tail.count > 0)
+			{
+				this.lastSlot = this.tail.slots[this.tail.count - 1];
+			}
+		}
+	}
+
+
+	/**
+	 * @return the highest slot appended, or 0 if the log is empty.
+	 */
+	public int getLastSlot()
+	{
+		return this.lastSlot;
+	}
+
+
+	/**
+	 * Appends the command performed in the given slot.  Slots must be
+	 * appended in increasing order.
+	 *
+	 * @param slot, the slot.
+	 * @param command, the command.
+	 */
+	public void append(int slot, Command command) throws IOException
+	{
+		this.scratch.reset();
+		MessageCodec.writeCommand(this.scratchOut, command);
+		int length = this.scratch.size();
+
+		// Room for the record, and for the zero slot that ends the log.
+		long needed = DecisionLog.HEADER_BYTES + length + DecisionLog.HEADER_BYTES;
+		if (this.tail == null || this.tail.end + needed > this.tail.size)
+		{
+			this.startSegment(slot, Math.max(needed, DecisionLog.SEGMENT_BYTES));
+		}
+
+		// Write the slot last: until it is there, the record reads as the
+		// end of the log.
+		Segment segment = this.tail;
+		int offset = segment.end;
+		segment.buffer.position(offset + DecisionLog.HEADER_BYTES);
+		segment.buffer.put(this.scratch.toByteArray());
+		segment.buffer.putInt(offset + 4, length);
+		segment.buffer.putInt(offset, slot);
+
+		if (segment.count == segment.slots.length)
+		{
+			segment.slots = Arrays.copyOf(segment.slots, segment.count * 2);
+			segment.offsets = Arrays.copyOf(segment.offsets, segment.count * 2);
+		}
+		segment.slots[segment.count] = slot;
+		segment.offsets[segment.count] = offset;
+		segment.count++;
+		segment.end = offset + DecisionLog.HEADER_BYTES + length;
+
+		this.lastSlot = slot;
+	}
+
+
+	/**
+	 * Returns the command performed in the given slot.
+	 *
+	 * @param slot, the slot.
+	 *
+	 * @return the command, or null if none is logged for the slot.
+	 */
+	public Command get(int slot) throws IOException
+	{
+		Map.Entry<Integer, Segment> entry = this.segments.floorEntry(slot);
+		if (entry == null || slot > this.lastSlot)
+		{
+			return null;
+		}
+
+		Segment segment = this.page(entry.getValue());
+		int i = Arrays.binarySearch(segment.slots, 0, segment.count, slot);
+		if (i < 0)
+		{
+			return null;
+		}
+
+		int offset = segment.offsets[i];
+		byte[] bytes = new byte[segment.buffer.getInt(offset + 4)];
+		segment.buffer.position(offset + DecisionLog.HEADER_BYTES);
+		segment.buffer.get(bytes);
+
+		return MessageCodec.readCommand(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+
+	/**
+	 * Returns the slot of the first logged command at or after the given
+	 * slot.
+	 *
+	 * @param slot, the slot to start from.
+	 *
+	 * @return the slot, or -1 if no command is logged at or after it.
+	 */
+	public int nextSlot(int slot) throws IOException
+	{
+		if (slot > this.lastSlot)
+		{
+			return -1;
+		}
+
+		Map.Entry<Integer, Segment> entry = this.segments.floorEntry(slot);
+		if (entry == null)
+		{
+			entry = this.segments.firstEntry();
+		}
+
+		while (entry != null)
+		{
+			Segment segment = this.page(entry.getValue());
+			int i = Arrays.binarySearch(segment.slots, 0, segment.count, slot);
+			if (i < 0)
+			{
+				i = -i - 1;
+			}
+			if (i < segment.count)
+			{
+				return segment.slots[i];
+			}
+
+			entry = this.segments.higherEntry(entry.getKey());
+		}
+
+		return -1;
+	}
+
+
+	/**
+	 * Writes a snapshot at the given watermark, after forcing the segments
+	 * to disk.  The last snapshot written is the one readSnapshot() finds.
+	 *
+	 * @param watermark, every slot below it has been performed.
+	 * @param performed, the commands performed below the watermark.
+	 */
+	public void writeSnapshot(int watermark, PerformedCommands performed) throws IOException
+	{
+		if (this.tail != null)
+		{
+			this.tail.buffer.force();
+		}
+
+		// Write it beside the old one, then swap it in, so a crash leaves
+		// one or the other.
+		File tmp = new File(this.dir, DecisionLog.SNAPSHOT_FILE + ".tmp");
+		try (FileOutputStream file = new FileOutputStream(tmp))
+		{
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+			out.writeInt(DecisionLog.SNAPSHOT_MAGIC);
+			out.writeInt(watermark);
+			performed.writeTo(out);
+			out.flush();
+			file.getFD().sync();
+		}
+
+		Files.move(tmp.toPath(), new File(this.dir, DecisionLog.SNAPSHOT_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+
+	/**
+	 * Reads the last snapshot written.
+	 *
+	 * @param performed, set to the snapshot's performed commands.
+	 *
+	 * @return the snapshot's watermark, or 0 if there is no snapshot (or
+	 * only one of an older format).
+	 */
+	public int readSnapshot(PerformedCommands performed) throws IOException
+	{
+		File file = new File(this.dir, DecisionLog.SNAPSHOT_FILE);
+		if (!file.exists())
+		{
+			return 0;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+		{
+			if (in.readInt() != DecisionLog.SNAPSHOT_MAGIC)
+			{
+				return 0;
+			}
+
+			int watermark = in.readInt();
+			performed.readFrom(in);
+			return watermark;
+		}
+	}
+
+
+	/**
+	 * Starts a new segment, and makes it the one appended to.
+	 *
+	 * @param firstSlot, the slot of the segment's first record.
+	 * @param size, the size of the segment file.
+	 */
+	private void startSegment(int firstSlot, long size) throws IOException
+	{
+		Segment segment = new Segment();
+		segment.firstSlot = firstSlot;
+		segment.file = new File(this.dir, "segment" + firstSlot + ".log");
+		segment.size = size;
+		this.segments.put(firstSlot, segment);
+
+		// The old tail is full; it is now just another loaded segment.
+		if (this.tail != null)
+		{
+			this.tail.buffer.force();
+			this.loaded.put(this.tail.firstSlot, this.tail);
+		}
+
+		this.tail = this.load(segment);
+	}
+
+
+	/**
+	 * Makes sure the given segment is loaded, unloading the least recently
+	 * used one if too many are.
+	 *
+	 * @param segment, the segment.
+	 *
+	 * @return the segment.
+	 */
+	private Segment page(Segment segment) throws IOException
+	{
+		if (segment == this.tail)
+		{
+			return segment;
+		}
+
+		if (segment.buffer != null)
+		{
+			// Mark it most recently used.
+			this.loaded.get(segment.firstSlot);
+			return segment;
+		}
+
+		this.loaded.put(segment.firstSlot, this.load(segment));
+		return segment;
+	}
+
+
+	/**
+	 * Maps and indexes the given segment.
+	 *
+	 * @param segment, the segment.
+	 *
+	 * @return the segment.
+	 */
+	private Segment load(Segment segment) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(segment.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+		{
+			// The mapping stays valid after the channel is closed.
+			segment.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segment.size);
+		}
+
+		segment.slots = new int[64];
+		segment.offsets = new int[64];
+		segment.count = 0;
+
+		int offset = 0;
+		while (offset + DecisionLog.HEADER_BYTES <= segment.size)
+		{
+			int slot = segment.buffer.getInt(offset);
+			int length = segment.buffer.getInt(offset + 4);
+			if (slot <= 0 || length < 0 || offset + DecisionLog.HEADER_BYTES + (long) length > segment.size)
+			{
+				break;
+			}
+
+			if (segment.count == segment.slots.length)
+			{
+				segment.slots = Arrays.copyOf(segment.slots, segment.count * 2);
+				segment.offsets = Arrays.copyOf(segment.offsets, segment.count * 2);
+			}
+			segment.slots[segment.count] = slot;
+			segment.offsets[segment.count] = offset;
+			segment.count++;
+
+			offset += DecisionLog.HEADER_BYTES + length;
+		}
+		segment.end = offset;
+
+		return segment;
+	}
+
+
+	/**
+	 * Drops the given segment's mapping and index from the heap.
+	 *
+	 * @param segment, the segment.
+	 */
+	private static void unload(Segment segment)
+	{
+		segment.buffer = null;
+		segment.slots = null;
+		segment.offsets = null;
+		segment.count = 0;
+	}
+}
@@ -32,12 +32,6 @@ public class HeartBeatGenerator
 	// this time.  This is in ms.
 	public static final long updateSystemViewPeriod = 2000;
 	
-	// Time to send heat beat next.
-	private long nextHeartBeatTime;
-	
-	// Time to update system view next.  This is in ms.
-	private long nextUpdateTime;
-	
 	// Who we have heard from in the last update period.
 	private Boolean[] heartBeatsInLastUpdatePeriod;
 	
@@ -45,16 +39,41 @@ public class HeartBeatGenerator
 	// Note: This value is NOT taken mod N.
 	private int leader;
 	
+	// Runs the heart beat and update periods.
+	private TimerWheel timers;
+	
+	// The leader these heart beats are for.
+	private Listener listener;
+	
 	
-	public HeartBeatGenerator(int senderId, NetController network, int numServers)
+	/**
+	 * What the generator needs from the leader whose heart beats it sends.
+	 */
+	public interface Listener
+	{
+		/**
+		 * @return the current leader from the view of this leader, to put
+		 * in its heart beats.
+		 */
+		int getCurrentLeaderId();
+		
+		/**
+		 * Called at the end of each update period.
+		 * 
+		 * @param deadLeaderIds, the leader IDs who we believe are dead,
+		 * i.e., who we did not hear from during the last update period.
+		 */
+		void systemViewUpdated(ArrayList<Integer> deadLeaderIds);
+	}
+	
+	
+	public HeartBeatGenerator(int senderId, NetController network, int numServers, TimerWheel timers, Listener listener)
 	{
 		this.senderId = senderId;
 		this.network = network;
 		this.numServers = numServers;
-		
-		// Prime the generator.
-		this.nextHeartBeatTime = -1;
-		this.nextUpdateTime = -1;
+		this.timers = timers;
+		this.listener = listener;
 		
 		// Set to false for all leaders.
 		this.heartBeatsInLastUpdatePeriod = new Boolean[numServers];
@@ -66,80 +85,54 @@ public class HeartBeatGenerator
 		{
 			this.heartBeatsInLastUpdatePeriod[i] = false;
 		}
+		
+		// The first heart beat goes out right away, the first update at
+		// the end of the first update period.
+		this.timers.schedule(0, () -> this.beat());
+		this.timers.schedule(HeartBeatGenerator.updateSystemViewPeriod, () -> this.analyze());
 	}
 	
 	
 	/**
-	 * Sends a heart beat if the time is appropriate.  Updates system view
-	 * if time is appropriate.
-	 * 
-	 * @param currentLeader, the current leader from the view of who is
-	 * calling this method.
-	 * 
-	 * @return A list of the leader IDs who we believe are dead during
-	 * the last update period (or longer than the last update period
-	 * if this method is not called exactly at the time the update
-	 * period ends), else null if we have not collected enough information
-	 * determine who is dead in this current period).
+	 * Sends a heart beat to all servers, and schedules the next one.
 	 */
-	public ArrayList<Integer> beatAndAnalyze(int currentLeader)
+	private void beat()
 	{
-		ArrayList<Integer> deadLeaders = new ArrayList<Integer>();
-		
-		HeartBeat hb = new HeartBeat(this.senderId, currentLeader);
-		long currTime = System.currentTimeMillis();
+		HeartBeat hb = new HeartBeat(this.senderId, this.listener.getCurrentLeaderId());
 		
-		// If we haven't send a heart beat yet, prime it.
-		if (this.nextHeartBeatTime == -1)
+		// Send this heart beat to all servers (including my own).
+		for (int i = 0; i < numServers; i++)
 		{
-			this.nextHeartBeatTime = currTime;
+			this.network.sendMsgToServer(i, hb);
 		}
 		
-		// If we haven't send a heart beat yet, prime it.
-		if (this.nextUpdateTime == -1)
-		{
-			nextUpdateTime = currTime + this.updateSystemViewPeriod;
-		}
+		this.timers.schedule(HeartBeatGenerator.heartBeatPeriod, () -> this.beat());
+	}
+	
+	
+	/**
+	 * Updates the system view: tells the listener which leaders we did not
+	 * hear from in the last update period (those we think are dead), and
+	 * starts the next period.
+	 */
+	private void analyze()
+	{
+		ArrayList<Integer> deadLeaders = new ArrayList<Integer>();
 		
-		// If it is time to send another heart beat.
-		if (currTime >= this.nextHeartBeatTime)
+		for (int i = 0; i < this.heartBeatsInLastUpdatePeriod.length; i++)
 		{
-			// Send this heart beat to all servers (including my own).
-			for (int i = 0; i < numServers; i++)
+			if (this.heartBeatsInLastUpdatePeriod[i] == false)
 			{
-				this.network.sendMsgToServer(i, hb);
+				deadLeaders.add(i);
 			}
-			
-			this.nextHeartBeatTime = currTime + this.heartBeatPeriod;
-			
-			//Logger.getInstance().println("Leader " + this.senderId + " Sent heart beat: " + currTime);
 		}
 		
+		// Clear data from last update period.
+		this.clearHeartBeatsArray();
 		
-		// If it is time to update the system view.
-		if (currTime >= this.nextUpdateTime)
-		{
-			//Logger.getInstance().println("Leader " + this.senderId + " Updating system view: " + currTime);
-			
-			this.nextUpdateTime = currTime + this.updateSystemViewPeriod;
-			
-			// Send back list of leader IDs who we did not hear from in last
-			// update period (those we think are dead).
-			for (int i = 0; i < this.heartBeatsInLastUpdatePeriod.length; i++)
-			{
-				if (this.heartBeatsInLastUpdatePeriod[i] == false)
-				{
-					deadLeaders.add(i);
-				}
-			}
-			
-			// Clear data from last update period.
-			this.clearHeartBeatsArray();
-			
-			return deadLeaders;
-		}
+		this.timers.schedule(HeartBeatGenerator.updateSystemViewPeriod, () -> this.analyze());
 		
-		return null;
+		this.listener.systemViewUpdated(deadLeaders);
 	}
 	
 	
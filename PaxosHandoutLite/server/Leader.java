@@ -1,6 +1,10 @@
 package server;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.function.IntConsumer;
 
 import client.Command;
 import ballot.Ballot;
@@ -8,10 +12,15 @@ import ballot.BallotGenerator;
 import framework.NetController;
 import log.Logger;
 import message.Adopted;
+import message.Decision;
 import message.HeartBeat;
 import message.Message;
+import message.P1b;
+import message.P2b;
+import message.P2bBatch;
 import message.Preempted;
 import message.Proposal;
+import message.Snapshotted;
 
 
 /**
@@ -19,7 +28,7 @@ import message.Proposal;
  * @author Mike Feilbach
  *
  */
-public class Leader
+public class Leader implements HeartBeatGenerator.Listener
 {
 	// (NEW) Current leader ID from the view of this leader.
 	private int currentLeaderId;
@@ -39,8 +48,29 @@ public class Leader
 	// This will give a leader its next ballot whenever it needs one.
 	private BallotGenerator ballotGenerator;
 	
+	// True while our ballot is adopted.  This is the stable-leader mode:
+	// new proposals go straight to phase 2 under the adopted ballot, and
+	// phase 1 is only run again when we are preempted.
 	private boolean active;
-	private ArrayList<Proposal> proposals;
+	
+	// This leader's proposals, keyed by slot number.  A slot's proposal is
+	// dropped once we see its Decision, so this only holds undecided slots.
+	private HashMap<Integer, Proposal> proposals;
+	
+	// Every slot below this one has been decided, as far as we have seen
+	// from Decisions.  Scouts only run phase 1 for the slots from here on,
+	// so acceptors don't send back pvalues for slots already decided.
+	private int firstUndecidedSlot;
+	
+	// Decided slots above firstUndecidedSlot.
+	private HashSet<Integer> decidedAhead;
+	
+	// The replicas' snapshot watermarks.  Every slot below the majority
+	// watermark is decided, even if we never saw its Decision.
+	private SnapshotWatermarks watermarks;
+	
+	// Has our replica fetch the decisions below a slot from its peers.
+	private IntConsumer catchUp;
 	
 	// My server's NetController.
 	private NetController network;
@@ -48,15 +78,26 @@ public class Leader
 	// Number of servers in the system.
 	private int numServers;
 	
-	// A list of the Commanders that have been spawned.  When a Commander
-	// is spawned, its unique ID will be the index of the element that
-	// will contain its reference in this list.
-	private ArrayList<Commander> commanders;
+	// The live Commanders, keyed by the slot of their pvalue.  A Commander
+	// is removed as soon as it is done, and a new Commander for a slot
+	// replaces the old one, whose ballot is lower (the key is really
+	// (currBallot, slot)).
+	private HashMap<Integer, Commander> commanders;
+	
+	// Runs phase 2 for whole batches of proposals at once, e.g., all of
+	// the proposals we have when a ballot is adopted.
+	private BatchCommander batchCommander;
+	
+	// The live Scout, if any.  Only the Scout for currBallot matters: a
+	// new Scout is only spawned with a new ballot, so it replaces the old.
+	private Scout scout;
 	
-	// A list of the Scouts that have been spawned.  When a Scout
-	// is spawned, its unique ID will be the index of the element that
-	// will contain its reference in this list.
-	private ArrayList<Scout> scouts;
+	// Number of Scouts and Commanders spawned so far, used to give each
+	// one a unique ID.
+	private int numSpawned;
+	
+	// This server's timers: heart beats, and Scout and Commander timeouts.
+	private TimerWheel timers;
 	
 	// This is used to implement the Master class test hook timeBombLeader.
 	// After the leader has sent the specified number of qualifying messages,
@@ -80,15 +121,18 @@ public class Leader
 	// Note: Debugging purposes only.
 	private ArrayList<Integer> heartbeatSnapshot;
 	
-	public Leader(int serverId, int numServers, NetController network, boolean isRecovering)
+	public Leader(int serverId, int numServers, NetController network, boolean isRecovering, int firstUndecidedSlot, TimerWheel timers, IntConsumer catchUp)
 	{
+		this.timers = timers;
+		
 		this.scoutWaiting = false;
 		this.commandersWaiting = new ArrayList<PValue>();
 		
 		this.isRecovering = isRecovering;
 		
-		this.commanders = new ArrayList<Commander>();
-		this.scouts = new ArrayList<Scout>();
+		this.commanders = new HashMap<Integer, Commander>();
+		this.scout = null;
+		this.numSpawned = 0;
 		
 		this.serverId = serverId;
 		
@@ -102,7 +146,14 @@ public class Leader
 		this.active = false;
 		
 		// Create an empty set of proposals.
-		this.proposals = new ArrayList<Proposal>();
+		this.proposals = new HashMap<Integer, Proposal>();
+		
+		// Every slot below this one was performed by our replica (slots
+		// start at 1), so it is decided.
+		this.firstUndecidedSlot = firstUndecidedSlot;
+		this.decidedAhead = new HashSet<Integer>();
+		this.watermarks = new SnapshotWatermarks(numServers);
+		this.catchUp = catchUp;
 		
 		// My server's network.
 		this.network = network;
@@ -113,6 +164,8 @@ public class Leader
 		// Initialize timebomb infrastructure.
 		this.timebomb = new Timebomb();
 		
+		this.batchCommander = new BatchCommander(serverId, network, numServers, this.timebomb, this.timers, pvalues -> this.batchTimedOut(pvalues));
+		
 		//if (isRecovering)
 		//{
 			// Heart beat period = .4 seconds.
@@ -159,7 +212,7 @@ public class Leader
 			this.isRecovering = false;
 		}
 		
-		this.hbg = new HeartBeatGenerator(serverId, network, numServers);
+		this.hbg = new HeartBeatGenerator(serverId, network, numServers, this.timers, this);
 		
 		// Only if we are not recovering do we consider leader initialization.
 		// When recovering, we will NEVER be current leader.
@@ -173,373 +226,641 @@ public class Leader
 	}
 	
 	
-	public void runTasks(Message message)
-	{	
-		//**********************************************************************
-		//* See if we need to send another heart beat.  If so, send it.  Also
-		//* check if an update period has passed.  If so, we will receive a
-		//* list of the leaders we believe to be dead now.
-		//**********************************************************************
-		ArrayList<Integer> deadLeaderIds = this.hbg.beatAndAnalyze(this.currentLeaderId);
+	/**
+	 * @return the current leader from the view of this leader.
+	 */
+	@Override
+	public int getCurrentLeaderId()
+	{
+		return this.currentLeaderId;
+	}
+	
+	
+	/**
+	 * Called by the heart beat generator at the end of each update period,
+	 * with a list of the leaders we believe to be dead now.
+	 * 
+	 * @param deadLeaderIds, the leaders we did not hear from.
+	 */
+	@Override
+	public void systemViewUpdated(ArrayList<Integer> deadLeaderIds)
+	{
+		// Update debug copy of dead list.
+		this.heartbeatSnapshot = deadLeaderIds;
 		
-		// If the current update period has passed, we will receive a list of
-		// leaders we believe to be dead now.
-		if (deadLeaderIds != null)
+		//******************************************************************
+		//* If majority of servers are up, and scout timed out, restart
+		//* scout.
+		//******************************************************************
+		if (((double) deadLeaderIds.size()) < ((double) this.numServers / 2))
 		{
-			// Update debug copy of dead list.
-			this.heartbeatSnapshot = deadLeaderIds;
-			
-			//******************************************************************
-			//* If majority of servers are up, and scout timed out, restart
-			//* scout.
-			//******************************************************************
-			if (((double) deadLeaderIds.size()) < ((double) this.numServers / 2))
+			if (this.scoutWaiting)
 			{
-				if (this.scoutWaiting)
-				{
-					this.scoutWaiting = false;
-					
-					Scout newScout = new Scout(this.currBallot, serverId, network, numServers, this.scouts.size(), this.timebomb);
-					this.scouts.add(newScout);
-					
-					Logger.getInstance().println("Leader " + this.serverId + " RESPAWNED a Scout.");
-				}
+				this.scoutWaiting = false;
 				
-				if (this.commandersWaiting.size() > 0)
-				{
-					for (int i = 0; i < this.commandersWaiting.size(); i++)
-					{
-						PValue newPValue = this.commandersWaiting.get(i);
-						Commander newCommander = new Commander(this.serverId, this.network, this.numServers, newPValue, this.commanders.size(), this.timebomb);
-						this.commanders.add(newCommander);
-						
-						Logger.getInstance().println("Leader " + this.serverId + " created Commander for " + newPValue);
-					}
-					
-					// Clear the list, we have revived all commanders!
-					this.commandersWaiting = new ArrayList<PValue>();
-				}
+				this.spawnScout();
 				
+				Logger.getInstance().info("Leader {} RESPAWNED a Scout.", this.serverId);
 			}
 			
-			// Testing.
-			/*
-			System.out.print("Leader " + this.serverId + " dead leaders detected: ");
-			for (int i = 0; i < deadLeaderIds.size(); i++)
-			{
-				System.out.print(deadLeaderIds.get(i) + ", ");
-			}
-			Logger.getInstance().println();
-			*/
+			// Slots decided in the meantime need no more work.
+			this.commandersWaiting.removeIf(pvalue -> this.isDecided(pvalue.getSlotNumber()));
 			
-			//****************************************
-			// Leader Election logic for if current leader dies.
-			//****************************************
-			// If we observe that the process we believe to be the leader is dead,
-			// we choose N + 1 as the new leader. Note that this is the raw value
-			// and not the value mod N (actual process ID)
-			boolean leaderChanged = false;
-			while (deadLeaderIds.contains(this.currentLeaderId % this.numServers))
+			if (this.commandersWaiting.size() > 0)
 			{
-				leaderChanged = true;
-				this.currentLeaderId += 1;
-				// TSM: If we have just become leader, send out first scouts.
-				if (this.isCurrentLeader())
-				{
-					leaderInitialization();
-				}
+				// Re-send all of them as one batch.
+				this.batchCommander.start(this.commandersWaiting);
+				
+				Logger.getInstance().info("Leader {} RESPAWNED Commanders for {} pvalues.", this.serverId, this.commandersWaiting.size());
+				
+				// Clear the list, we have revived all commanders!
+				this.commandersWaiting = new ArrayList<PValue>();
 			}
 			
-			if (leaderChanged)
-			{
-				Logger.getInstance().println("~~~ Current leader died.                  Leader " + this.serverId + ": my current leader is now " + this.currentLeaderId);
-			}
 		}
 		
-		//**********************************************************************
-		//* Leader received HeartBeat from another leader, or itself.
-		//**********************************************************************
-		if (message instanceof HeartBeat)
+		// Testing.
+		/*
+		System.out.print("Leader " + this.serverId + " dead leaders detected: ");
+		for (int i = 0; i < deadLeaderIds.size(); i++)
 		{
-			// If received a heart beat, let the generator know.
-			HeartBeat hb = (HeartBeat) message;
-			this.hbg.addBeat(hb);
-			
-			//*****************************************************************
-			//* Leader election logic for if someone has a higher current ID
-			//*****************************************************************
-			// Here, we take the max of our own belief about the current leader
-			// and everyone else's belief about the current leader. We use the
-			// raw (not taken mod N) value so that we can use simple max() logic.
-			int oldLeader = this.currentLeaderId;
-			this.currentLeaderId = Math.max(this.currentLeaderId, hb.getCurrentLeaderId());
-			if (oldLeader != this.currentLeaderId && this.isCurrentLeader())
+			System.out.print(deadLeaderIds.get(i) + ", ");
+		}
+		Logger.getInstance().println();
+		*/
+		
+		//****************************************
+		// Leader Election logic for if current leader dies.
+		//****************************************
+		// If we observe that the process we believe to be the leader is dead,
+		// we choose N + 1 as the new leader. Note that this is the raw value
+		// and not the value mod N (actual process ID)
+		boolean leaderChanged = false;
+		while (deadLeaderIds.contains(this.currentLeaderId % this.numServers))
+		{
+			leaderChanged = true;
+			this.currentLeaderId += 1;
+			// TSM: If we have just become leader, send out first scouts.
+			if (this.isCurrentLeader())
 			{
-				// TSM: If we have just become leader, send out first scouts.
 				leaderInitialization();
 			}
-			
-			// Testing.
-			if (oldLeader != this.currentLeaderId)
-			{
-				Logger.getInstance().println("~~~ Current leader changed (found in HB). Leader " + this.serverId + ": my current leader is now " + this.currentLeaderId);
-			}
 		}
 		
+		if (leaderChanged)
+		{
+			Logger.getInstance().info("~~~ Current leader died.                  Leader {}: my current leader is now {}", this.serverId, this.currentLeaderId);
+		}
+	}
+	
+	
+	/**
+	 * The Scout did not receive enough responses to send the adopted or
+	 * the preempted message within its timeout.
+	 */
+	private void scoutTimedOut()
+	{
+		this.scout = null;
+		
+		// Re-run him again once we know that a majority of servers are
+		// back up -- if we are still the current leader by then.
+		if (this.isCurrentLeader())
+		{
+			this.scoutWaiting = true;
+			
+			Logger.getInstance().debug("Scout {} timed out.", this.serverId);
+		}
+	}
+	
+	
+	/**
+	 * The Commander for the given slot was not done within its timeout.
+	 * 
+	 * @param slotNum, the Commander's slot.
+	 */
+	private void commanderTimedOut(int slotNum)
+	{
+		Commander commander = this.commanders.remove(slotNum);
 		
-		//**********************************************************************
-		//* Leader received a Proposal from a Replica.
-		//**********************************************************************
-		if (message instanceof Proposal)
+		// Re-run him again once we know that a majority of servers are
+		// back up.
+		if (commander != null && this.isCurrentLeader())
 		{
-			Proposal proposal = (Proposal) message;
-			//Logger.getInstance().println("Leader " + this.serverId + " received " + proposal);
+			this.commandersWaiting.add(commander.getPValue());
 			
-			// Find out if we have a proposal for this slot number already.
-			// If so, we can't consider this new proposal.
-			boolean existsCmdForThisSlot = false;
-			for (int i = 0; i < this.proposals.size(); i++)
-			{
-				Proposal existingProposal = this.proposals.get(i);
-				
-				if (existingProposal.getSlotNum() == proposal.getSlotNum())
-				{
-					existsCmdForThisSlot = true;
-				}
-			}
+			Logger.getInstance().debug("Commander {} timed out.", this.serverId);
+		}
+	}
+	
+	
+	/**
+	 * Slots of the batched Commander which timed out wait, like timed out
+	 * Commanders, until a majority of servers is up.
+	 * 
+	 * @param pvalues, the pvalues of the slots.
+	 */
+	private void batchTimedOut(ArrayList<PValue> pvalues)
+	{
+		if (this.isCurrentLeader())
+		{
+			this.commandersWaiting.addAll(pvalues);
 			
-			// If there is no command for this slot number already.
-			if (existsCmdForThisSlot == false)
-			{
-				// Take union of proposals and this new proposal.
-				// This need not be a union, since we know that there is no
-				// proposal in the leader's proposals set with the slot number 
-				// of this new proposal.  So, just add it.
-				
-				// TODO: is this correct? Yes, I think so.
-				
-				//if (!this.proposals.contains(proposal))
-				//{
-				this.proposals.add(proposal);
-				//Logger.getInstance().println("Leader " + this.serverId + " added Proposal: " + proposal);
-				//}
-				
-				
-				//**************************************************************
-				//* Even if we are not current leader, rack up the proposal set
-				//* so when we do become leader (if we do), we know which
-				//* proposals to run through, especially in the case:
-				//* Current leader dies, message is sent by client (but only
-				//* the current leader can add it to their proposal set, so
-				//* clearly no one does), then I become leader, and don't have
-				//* it in my proposal set.  Bad news => make this fix.
-				//**************************************************************
-				if (!this.isCurrentLeader())
-				{
-					return;
-				}
-				
-				if (this.active)
-				{
-					// Create a commander for this new proposal.
-					PValue newPValue = new PValue(this.currBallot, proposal.getSlotNum(), proposal.getCommand());
-					
-					Commander newCommander = new Commander(this.serverId, this.network, this.numServers, newPValue, this.commanders.size(), this.timebomb);
-					this.commanders.add(newCommander);
-					
-					Logger.getInstance().println("\nLeader " + this.serverId + " created Commander for " + newPValue + "\n");
-				}
-			}
+			Logger.getInstance().debug("Commander {} timed out for {} pvalues.", this.serverId, pvalues.size());
+		}
+	}
+	
+	
+	/**
+	 * Leader received HeartBeat from another leader, or itself.
+	 * 
+	 * @param hb, the heart beat.
+	 */
+	public void handleHeartBeat(HeartBeat hb)
+	{
+		// Let the generator know.
+		this.hbg.addBeat(hb);
+		
+		//*****************************************************************
+		//* Leader election logic for if someone has a higher current ID
+		//*****************************************************************
+		// Here, we take the max of our own belief about the current leader
+		// and everyone else's belief about the current leader. We use the
+		// raw (not taken mod N) value so that we can use simple max() logic.
+		int oldLeader = this.currentLeaderId;
+		this.currentLeaderId = Math.max(this.currentLeaderId, hb.getCurrentLeaderId());
+		if (oldLeader != this.currentLeaderId && this.isCurrentLeader())
+		{
+			// TSM: If we have just become leader, send out first scouts.
+			leaderInitialization();
 		}
 		
-		//**********************************************************************
-		//* Do not run the below tasks if we are not the current leader.
-		//**********************************************************************
-		if (!this.isCurrentLeader())
+		// Testing.
+		if (oldLeader != this.currentLeaderId)
+		{
+			Logger.getInstance().info("~~~ Current leader changed (found in HB). Leader {}: my current leader is now {}", this.serverId, this.currentLeaderId);
+		}
+	}
+	
+	
+	/**
+	 * Leader saw a Decision sent to this server's Replica.
+	 * 
+	 * @param decision, the decision.
+	 */
+	public void handleDecision(Decision decision)
+	{
+		int slotNum = decision.getProposalSlotNum();
+		this.addDecidedSlot(slotNum);
+		
+		// Nothing left to do for this slot.
+		this.proposals.remove(slotNum);
+		
+		Commander commander = this.commanders.remove(slotNum);
+		if (commander != null)
+		{
+			commander.cancelTimeout();
+		}
+		this.batchCommander.decided(slotNum);
+	}
+	
+	
+	/**
+	 * Leader heard that a replica took a snapshot.  Once a majority of
+	 * replicas are past a slot, it is decided; acceptors will not accept
+	 * anything more for it, so stop working on it.
+	 * 
+	 * Acceptors also send one, with the slot they compacted to, in answer
+	 * to a p2a for a slot they forgot.  That slot is below a majority's
+	 * snapshots too, so counting it as the acceptor's server's watermark
+	 * never takes the majority watermark past what is decided.
+	 * 
+	 * @param snapshotted, the replica's announcement.
+	 */
+	public void handleSnapshotted(Snapshotted snapshotted)
+	{
+		if (!this.watermarks.update(snapshotted.getSenderId(), snapshotted.getWatermark()))
 		{
 			return;
 		}
 		
-		//**********************************************************************
-		//* Leader received Adopted from a Scout.
-		//**********************************************************************
-		if (message instanceof Adopted)
+		this.decidedBelow(this.watermarks.getMajorityWatermark());
+	}
+	
+	
+	/**
+	 * Every slot below the given watermark is decided: stop working on
+	 * them.
+	 * 
+	 * @param watermark, the watermark.
+	 */
+	private void decidedBelow(int watermark)
+	{
+		if (watermark <= this.firstUndecidedSlot)
 		{
-			Adopted adopted = (Adopted) message;
-			Logger.getInstance().println("Leader " + this.serverId + " received " + adopted);
-			
-			// pvals from the Paper.
-			ArrayList<PValue> pvals = adopted.getPvalues();
-
-			// Perform pmax(pvals) from the Paper.
-			// Roughly speaking, for each slot: determine the maximum ballot
-			// for this slot, and only include this proposal in the result.
-			// "it determines, for each slot, the proposal corresponding to
-			// the maximum ballot number in pvals by invoking pmax."
-			ArrayList<Proposal> pmax_pvals = pmax(pvals);
-			
-			/*
-			Logger.getInstance().println("pmax_pvals:");
-			for (int i = 0; i < pmax_pvals.size(); i++)
+			return;
+		}
+		
+		this.firstUndecidedSlot = watermark;
+		this.decidedAhead.removeIf(slotNum -> slotNum < watermark);
+		while (this.decidedAhead.remove(this.firstUndecidedSlot))
+		{
+			this.firstUndecidedSlot++;
+		}
+		
+		this.proposals.keySet().removeIf(slotNum -> slotNum < watermark);
+		this.commandersWaiting.removeIf(pvalue -> pvalue.getSlotNumber() < watermark);
+		this.batchCommander.decidedBelow(watermark);
+		
+		Iterator<Commander> it = this.commanders.values().iterator();
+		while (it.hasNext())
+		{
+			Commander commander = it.next();
+			if (commander.getSlotNumber() < watermark)
 			{
-				Logger.getInstance().println("slotNum: " + pmax_pvals.get(i).getSlotNum() + ", " + pmax_pvals.get(i));
+				commander.cancelTimeout();
+				it.remove();
 			}
-			*/
-						
-			// Perform proposals = proposals (\oplus) pmax(pvals) from the Paper.
-			this.proposals = oplus(this.proposals, pmax_pvals);
-			
-			//Logger.getInstance().println("Proposals");
+		}
+	}
+	
+	
+	/**
+	 * Leader received a Proposal from a Replica.
+	 * 
+	 * @param proposal, the proposal.
+	 */
+	public void handleProposal(Proposal proposal)
+	{
+		//Logger.getInstance().println("Leader " + this.serverId + " received " + proposal);
+		
+		// Find out if we have a proposal for this slot number already.
+		// If so, we can't consider this new proposal.
+		boolean existsCmdForThisSlot = this.proposals.containsKey(proposal.getSlotNum());
+		
+		// A slot we know was decided must never get another command.
+		// Phase 1 no longer reports pvalues for such slots (see
+		// firstUndecidedSlot), so nothing else would stop it.
+		if (this.isDecided(proposal.getSlotNum()))
+		{
+			existsCmdForThisSlot = true;
+		}
+		
+		// If there is no command for this slot number already.
+		if (existsCmdForThisSlot == false)
+		{
+			// Take union of proposals and this new proposal.
+			// This need not be a union, since we know that there is no
+			// proposal in the leader's proposals set with the slot number 
+			// of this new proposal.  So, just add it.
 			
+			// TODO: is this correct? Yes, I think so.
 			
-			//Logger.getInstance().println("proposals after \\oplus:");
-			//for (int i = 0; i < this.proposals.size(); i++)
+			//if (!this.proposals.contains(proposal))
 			//{
-			//	Logger.getInstance().println("slotNum: " + this.proposals.get(i).getSlotNum() + ", " + this.proposals.get(i));
+			this.proposals.put(proposal.getSlotNum(), proposal);
+			//Logger.getInstance().println("Leader " + this.serverId + " added Proposal: " + proposal);
 			//}
 			
 			
-			// For all <s, p> \in proposals, spawn a Commander.
-			Logger.getInstance().println("");
-			for (int i = 0; i < this.proposals.size(); i++)
+			//**************************************************************
+			//* Even if we are not current leader, rack up the proposal set
+			//* so when we do become leader (if we do), we know which
+			//* proposals to run through, especially in the case:
+			//* Current leader dies, message is sent by client (but only
+			//* the current leader can add it to their proposal set, so
+			//* clearly no one does), then I become leader, and don't have
+			//* it in my proposal set.  Bad news => make this fix.
+			//**************************************************************
+			if (!this.isCurrentLeader())
+			{
+				return;
+			}
+			
+			if (this.active)
 			{
-				Proposal currProposal = this.proposals.get(i);
-				PValue newPValue = new PValue(adopted.getBallot(), currProposal.getSlotNum(), currProposal.getCommand());
+				// Create a commander for this new proposal.
+				PValue newPValue = new PValue(this.currBallot, proposal.getSlotNum(), proposal.getCommand());
 				
-				Commander newCommander = new Commander(this.serverId, this.network, this.numServers, newPValue, this.commanders.size(), this.timebomb);
-				this.commanders.add(newCommander);
+				this.spawnCommander(newPValue);
 				
-				Logger.getInstance().println("Leader " + this.serverId + " created Commander for " + newPValue + "");
+				Logger.getInstance().debug("\nLeader {} created Commander for {}\n", this.serverId, newPValue);
 			}
-			Logger.getInstance().println("");
-			
-			this.active = true;
+		}
+	}
+	
+	
+	/**
+	 * Leader received Adopted from a Scout.
+	 * 
+	 * @param adopted, the adopted message.
+	 */
+	public void handleAdopted(Adopted adopted)
+	{
+		// Only the current leader runs Scouts and Commanders.
+		if (!this.isCurrentLeader())
+		{
+			return;
 		}
 		
+		Logger.getInstance().debug("Leader {} received {}", this.serverId, adopted);
 		
-		//**********************************************************************
-		//* Leader received Preempted from a Scout or Commander.
-		//**********************************************************************
-		if (message instanceof Preempted)
+		// pvals from the Paper.
+		ArrayList<PValue> pvals = adopted.getPvalues();
+		
+		// An acceptor in the quorum forgot its pvalues below compactedSlot,
+		// so pvals may not show what was chosen there.  Those slots are
+		// decided: never propose for them, and have our replica fetch
+		// their decisions from its peers instead.
+		int compactedSlot = adopted.getCompactedSlot();
+		if (compactedSlot > this.firstUndecidedSlot)
 		{
-			Preempted preempted = (Preempted) message;
-			Logger.getInstance().println("Leader " + this.serverId + " received " + preempted);
-			
-			// The Ballot which we were preempted with.
-			Ballot preemptingBallot = preempted.getBallot();
-			
-			// TSM: If the the process that pre-empted us has a greater leader ID, resign.
-			//if (preemptingBallot.getLeaderId() > this.currentLeaderId)
-			//{
-			//	this.currentLeaderId = preemptingBallot.getLeaderId();
-			//	this.active = false;
-			//	return;
-			//}
-			if (preemptingBallot.greaterThan(this.currBallot))
-			{
-				this.active = false;
-				
-				// Generate new ballots until we are greater than this one.
-				boolean notGreater = true;
-				Ballot newBallot = null;
-				
-				while (notGreater)
-				{
-					newBallot = this.getNextBallot();
+			this.decidedBelow(compactedSlot);
+			this.catchUp.accept(compactedSlot);
+		}
+		pvals.removeIf(pvalue -> pvalue.getSlotNumber() < compactedSlot);
+
+		// Perform pmax(pvals) from the Paper.
+		// Roughly speaking, for each slot: determine the maximum ballot
+		// for this slot, and only include this proposal in the result.
+		// "it determines, for each slot, the proposal corresponding to
+		// the maximum ballot number in pvals by invoking pmax."
+		HashMap<Integer, Proposal> pmax_pvals = pmax(pvals);
+		
 					
-					if (newBallot.greaterThan(preemptingBallot))
-					{
-						notGreater = false;
-					}
-				}
-				
-				this.currBallot = newBallot;
-				
-				Logger.getInstance().println("Leader " + this.serverId + ": *** NEW BALLOT: " + newBallot + "\n\n");
-				
-				// We now have a ballot larger than the ballot we were preempted
-				// with.  Spawn a Scout with this new ballot.
-				Scout newScout = new Scout(this.currBallot, serverId, network, numServers, this.scouts.size(), this.timebomb);
-				this.scouts.add(newScout);
+		// Perform proposals = proposals (\oplus) pmax(pvals) from the Paper.
+		oplus(this.proposals, pmax_pvals);
+		
+		//Logger.getInstance().println("Proposals");
+		
+		
+		//Logger.getInstance().println("proposals after \\oplus:");
+		//for (int i = 0; i < this.proposals.size(); i++)
+		//{
+		//	Logger.getInstance().println("slotNum: " + this.proposals.get(i).getSlotNum() + ", " + this.proposals.get(i));
+		//}
+		
+		
+		// For all <s, p> \in proposals, spawn a Commander.  These all
+		// share the adopted ballot, so they go out as a single batch
+		// per acceptor rather than one Commander each.
+		// The ballot was only adopted for slots >= fromSlot.  The slots
+		// below, and any we have seen decided since, need nothing more.
+		ArrayList<PValue> newPValues = new ArrayList<PValue>();
+		for (Proposal currProposal : this.proposals.values())
+		{
+			if (currProposal.getSlotNum() < adopted.getFromSlot() || this.isDecided(currProposal.getSlotNum()))
+			{
+				continue;
 			}
+			newPValues.add(new PValue(adopted.getBallot(), currProposal.getSlotNum(), currProposal.getCommand()));
 		}
-	
-		//**********************************************************************
-		//* If we have any working Scouts, run their tasks.
-		//**********************************************************************
-		for (int i = 0; i < this.scouts.size(); i++)
+		
+		if (newPValues.size() > 0)
 		{
-			Scout currScout = this.scouts.get(i);
+			this.batchCommander.start(newPValues);
 			
-			// If we haven't nulled out this Scout, it still has work to do.
-			if (currScout != null)
-			{
-				int scoutReturnValue = currScout.runScout(message);
-				
-				if (scoutReturnValue == -2)
-				{
-					// This scout timed out.  Re-run him again once we know that a majority
-					// of servers are back up.
-					this.scoutWaiting = true;
-					
-					Logger.getInstance().println("Scout " + this.serverId + " timed out.");
-					
-					this.scouts.add(i, null);
-					this.scouts.remove(i + 1);
-				}
-				
-				// If Scout returned its ID, null it out in our list -- it's
-				// done with all its tasks and can be garbage collected.
-				if (scoutReturnValue != -1)
-				{
-					// Testing.
-					//Logger.getInstance().println("Nulled out Scout of ID: " + scoutReturnValue);
-					
-					this.scouts.add(i, null);
-					this.scouts.remove(i + 1);
-				}
-			}
+			Logger.getInstance().debug("\nLeader {} created batched Commander for {} pvalues.\n", this.serverId, newPValues.size());
+		}
+		
+		this.active = true;
+	}
+	
+	
+	/**
+	 * Leader received P2bBatch from an acceptor, for a batched Commander.
+	 * 
+	 * @param p2bBatch, the acceptor's reply.
+	 */
+	public void handleP2bBatch(P2bBatch p2bBatch)
+	{
+		// Only the current leader runs Scouts and Commanders.
+		if (!this.isCurrentLeader())
+		{
+			return;
 		}
 		
-		//**********************************************************************
-		//* If we have any working Commanders, run their tasks.
-		//**********************************************************************
-		for (int i = 0; i < this.commanders.size(); i++)
+		this.batchCommander.handle(p2bBatch);
+	}
+	
+	
+	/**
+	 * Leader received Preempted from a Scout or Commander.
+	 * 
+	 * @param preempted, the preempted message.
+	 */
+	public void handlePreempted(Preempted preempted)
+	{
+		// Only the current leader runs Scouts and Commanders.
+		if (!this.isCurrentLeader())
 		{
-			Commander currCommander = this.commanders.get(i);
+			return;
+		}
+		
+		Logger.getInstance().debug("Leader {} received {}", this.serverId, preempted);
+		
+		// The Ballot which we were preempted with.
+		Ballot preemptingBallot = preempted.getBallot();
+		
+		// TSM: If the the process that pre-empted us has a greater leader ID, resign.
+		//if (preemptingBallot.getLeaderId() > this.currentLeaderId)
+		//{
+		//	this.currentLeaderId = preemptingBallot.getLeaderId();
+		//	this.active = false;
+		//	return;
+		//}
+		if (preemptingBallot.greaterThan(this.currBallot))
+		{
+			this.active = false;
 			
-			// If we haven't nulled out this Commander, it still has work to do.
-			if (currCommander != null)
+			// Generate new ballots until we are greater than this one.
+			boolean notGreater = true;
+			Ballot newBallot = null;
+			
+			while (notGreater)
 			{
-				CommanderReturnValue commanderReturnValue = currCommander.runCommander(message);
-				
-				if (commanderReturnValue.getReturnValue() == -2)
-				{
-					// This scout timed out.  Re-run him again once we know that a majority
-					// of servers are back up.
-					this.commandersWaiting.add(commanderReturnValue.getPValue());
-					
-					Logger.getInstance().println("Commander " + this.serverId + " timed out.");
-					
-					this.commanders.add(i, null);
-					this.commanders.remove(i + 1);
-				}
+				newBallot = this.getNextBallot();
 				
-				
-				// If Commander returned its ID, null it out in our list -- it's
-				// done with all its tasks and can be garbage collected.
-				if (commanderReturnValue.getReturnValue() != -1)
+				if (newBallot.greaterThan(preemptingBallot))
 				{
-					// Testing.
-					//Logger.getInstance().println("Leader " + this.serverId + " nulled out Commander of ID: " + commanderReturnValue);
-					
-					this.commanders.add(i, null);
-					this.commanders.remove(i + 1);
+					notGreater = false;
 				}
 			}
+			
+			this.currBallot = newBallot;
+			
+			Logger.getInstance().debug("Leader {}: *** NEW BALLOT: {}\n\n", this.serverId, newBallot);
+			
+			// We now have a ballot larger than the ballot we were preempted
+			// with.  Spawn a Scout with this new ballot.
+			this.spawnScout();
+		}
+	}
+	
+	
+	/**
+	 * Leader received a p1b from an acceptor; hand it to the Scout.
+	 * 
+	 * @param p1b, the acceptor's reply.
+	 */
+	public void handleP1b(P1b p1b)
+	{
+		// Only the current leader runs Scouts and Commanders.
+		if (!this.isCurrentLeader())
+		{
+			return;
+		}
+		
+		if (this.scout != null)
+		{
+			this.runScout(p1b);
+		}
+	}
+	
+	
+	/**
+	 * Leader received a p2b from an acceptor; hand it to the Commander for
+	 * its slot.
+	 * 
+	 * @param p2b, the acceptor's reply.
+	 */
+	public void handleP2b(P2b p2b)
+	{
+		// Only the current leader runs Scouts and Commanders.
+		if (!this.isCurrentLeader())
+		{
+			return;
+		}
+		
+		Commander commander = this.commanders.get(p2b.getSlotNumber());
+		
+		if (commander != null)
+		{
+			this.runCommander(commander, p2b);
+		}
+	}
+	
+	/**
+	 * @return the number of proposals this leader holds, i.e., the number
+	 * of slots it has a proposal for but has not seen decided.
+	 */
+	public int getNumProposals()
+	{
+		return this.proposals.size();
+	}
+	
+	/**
+	 * @param slotNum, a slot number.
+	 * 
+	 * @return true iff we have seen a Decision for the given slot.
+	 */
+	private boolean isDecided(int slotNum)
+	{
+		return slotNum < this.firstUndecidedSlot || this.decidedAhead.contains(slotNum);
+	}
+	
+	/**
+	 * @return the first slot not known to be decided: the fromSlot of the
+	 * next p1a this leader sends.
+	 */
+	public int getFirstUndecidedSlot()
+	{
+		return this.firstUndecidedSlot;
+	}
+	
+	/**
+	 * Records that the given slot was decided, advancing firstUndecidedSlot
+	 * past every slot decided so far.
+	 * 
+	 * @param slotNum, the slot number of a Decision.
+	 */
+	private void addDecidedSlot(int slotNum)
+	{
+		if (slotNum < this.firstUndecidedSlot || this.decidedAhead.contains(slotNum))
+		{
+			return;
+		}
+		
+		this.decidedAhead.add(slotNum);
+		
+		while (this.decidedAhead.remove(this.firstUndecidedSlot))
+		{
+			this.firstUndecidedSlot++;
+		}
+	}
+	
+	/**
+	 * Spawns a Scout for currBallot, replacing the current one (if any).
+	 */
+	private void spawnScout()
+	{
+		if (this.scout != null)
+		{
+			this.scout.cancelTimeout();
+		}
+		this.scout = new Scout(this.currBallot, this.serverId, this.network, this.numServers, this.numSpawned++, this.timebomb, this.firstUndecidedSlot, this.timers, () -> this.scoutTimedOut());
+	}
+	
+	
+	/**
+	 * Spawns a Commander for the given pvalue, replacing the current one
+	 * for its slot (if any).
+	 * 
+	 * @param pvalue, the pvalue to run phase 2 for.
+	 */
+	private void spawnCommander(PValue pvalue)
+	{
+		final int slotNum = pvalue.getSlotNumber();
+		Commander commander = new Commander(this.serverId, this.network, this.numServers, pvalue, this.numSpawned++, this.timebomb, this.timers, () -> this.commanderTimedOut(slotNum));
+		
+		Commander old = this.commanders.put(slotNum, commander);
+		if (old != null)
+		{
+			old.cancelTimeout();
 		}
 	}
 	
+	
+	/**
+	 * Runs the Scout's tasks for the given message, and drops it once it
+	 * is done.
+	 * 
+	 * @param message, the message to process.
+	 */
+	private void runScout(Message message)
+	{
+		int scoutReturnValue = this.scout.runScout(message);
+		
+		// If Scout returned its ID, drop it -- it's done with all its
+		// tasks and can be garbage collected.
+		if (scoutReturnValue != -1)
+		{
+			this.scout.cancelTimeout();
+			this.scout = null;
+		}
+	}
+	
+	
+	/**
+	 * Runs the given Commander's tasks for the given message, and drops it
+	 * from the registry once it is done.
+	 * 
+	 * @param commander, a live Commander.
+	 * @param message, the message to process.
+	 */
+	private void runCommander(Commander commander, Message message)
+	{
+		CommanderReturnValue commanderReturnValue = commander.runCommander(message);
+		
+		// If Commander returned its ID, drop it -- it's done with all its
+		// tasks and can be garbage collected.
+		if (commanderReturnValue.getReturnValue() != -1)
+		{
+			commander.cancelTimeout();
+			this.commanders.remove(commander.getSlotNumber());
+		}
+	}
+	
+	
 	/**
 	 * This should be called when a process becomes a leader for the first
 	 * time, either during initialization of process 0, or when another 
@@ -548,10 +869,9 @@ public class Leader
 	public void leaderInitialization()
 	{
 		// Spawn a Scout for the initial ballot.
-		Scout firstScout = new Scout(this.currBallot, serverId, network, numServers, this.scouts.size(), this.timebomb);
-		this.scouts.add(firstScout);
+		this.spawnScout();
 		
-		Logger.getInstance().println("\nLeader " + this.serverId + " is now current leader -- spawned Scout.\n");
+		Logger.getInstance().info("\nLeader {} is now current leader -- spawned Scout.\n", this.serverId);
 	}
 	
 
@@ -580,181 +900,75 @@ public class Leader
 	 */
 	public void whois()
 	{
-		Logger.getInstance().println("Process " + this.serverId + " summary.");
+		Logger.getInstance().info("Process {} summary.", this.serverId);
 		Logger.getInstance().println("--------------------------------------");
-		Logger.getInstance().println("Leader: " + this.currentLeaderId);
+		Logger.getInstance().info("Leader: {}", this.currentLeaderId);
+		Logger.getInstance().info("Proposals: {}", this.getNumProposals());
 		for (int i = 0; i < this.numServers; i++)
 		{
 			if (this.heartbeatSnapshot.contains(i))
 			{
-				Logger.getInstance().println("Server " + i + ": " + "DEAD");
+				Logger.getInstance().info("Server {}: DEAD", i);
 			}
 			else
 			{
-				Logger.getInstance().println("Server " + i + ": " + "ALIVE");
+				Logger.getInstance().info("Server {}: ALIVE", i);
 			}
 		}
 	}
 	
 	/**
-	 * Performs x \oplus y (from the Paper).
-	 * 
-	 * @param x, a List of Proposals.
-	 * @param y, a List of Proposals.
+	 * Performs x = x \oplus y (from the Paper): the proposals of y replace
+	 * those of x for the same slot, and the rest of x is kept.  One pass
+	 * over y.
 	 * 
-	 * @return x \oplus y
+	 * @param x, Proposals keyed by slot number.  Updated in place.
+	 * @param y, Proposals keyed by slot number (as returned by pmax).
 	 */
-	private static ArrayList<Proposal> oplus(ArrayList<Proposal> x, ArrayList<Proposal> y)
+	private static void oplus(HashMap<Integer, Proposal> x, HashMap<Integer, Proposal> y)
 	{
-		ArrayList<Proposal> result = new ArrayList<Proposal>();
-		
-		// Step (1): Add all elements of y.
-		result.addAll(y);
-		
-		// Informally: if there is a mapping for a slot number in y, overwrite
-		// the mapping in x, if there is no mapping for a slot number in y,
-		// but there is one in x, keep the one in x.
-		
-		// Step (2): Find all slot number mappings that are in x but not in y.
-		// Add them to the result list, then we're done.
-		
-		// Get slot numbers in x.
-		ArrayList<Integer> slotNumsInX = new ArrayList<Integer>();
-		for (int i = 0; i < x.size(); i++)
-		{
-			Integer currSlotNum = x.get(i).getSlotNum();
-			
-			if (!slotNumsInX.contains(currSlotNum))
-			{
-				slotNumsInX.add(currSlotNum);
-			}
-		}
-		
-		// Testing.
-		/*
-		System.out.print("SlotNums in x: ");
-		for (int i = 0; i < slotNumsInX.size(); i++)
-		{
-			System.out.print(slotNumsInX.get(i) + ", ");
-		}
-		*/
-		
-		// Get slot numbers in y.
-		ArrayList<Integer> slotNumsInY = new ArrayList<Integer>();
-		for (int i = 0; i < y.size(); i++)
-		{
-			Integer currSlotNum = y.get(i).getSlotNum();
-			if (!slotNumsInY.contains(currSlotNum))
-			{
-				slotNumsInY.add(currSlotNum);
-			}
-		}
-		
-		// Testing.
-		/*
-		System.out.print("SlotNums in y: ");
-		for (int i = 0; i < slotNumsInY.size(); i++)
-		{
-			System.out.print(slotNumsInY.get(i) + ", ");
-		}
-		*/
-		
-		
-		// For each slot number in x's elements, check if y has an element
-		// with it.  If it doesn't add the Proposal corresponding to this
-		// slot number in x's set.
-		for (int i = 0; i < slotNumsInX.size(); i++)
-		{
-			Integer xSlotNum = slotNumsInX.get(i);
-			
-			if (!slotNumsInY.contains(xSlotNum))
-			{
-				// Testing.
-				//Logger.getInstance().println("Slot number NOT in y: " + xSlotNum);
-				
-				// Add the elements of x with this slot number to the
-				// result list.  There should only be one? // TODO //  ///  / / / / / / /// // // /  // // // // // // // // 
-				for (int j = 0; j < x.size(); j++)
-				{
-					Proposal currProposal = x.get(j);
-					if (currProposal.getSlotNum() == (int) xSlotNum)
-					{
-						result.add(currProposal);
-					}
-				}
-			}
-		}
-		
-		return result;
+		x.putAll(y);
 	}
 	
 	
 	/**
-	 * Does the pmax function as described in the Paper.  Returns a list
-	 * of Proposals, which include, for each slot in pvals, the proposal
-	 * corresponding to the highest ballot.
+	 * Does the pmax function as described in the Paper, in a single pass
+	 * over pvals.  Returns, for each slot in pvals, the proposal
+	 * corresponding to the highest ballot.  Slots we know were decided are
+	 * left out, since there is nothing left to do for them.
 	 * 
 	 * @param pvals
 	 * 
-	 * @return a list of Proposals, which include, for each slot in pvals,
-	 * the proposal corresponding to the highest ballot.
+	 * @return slot number -> the proposal with the highest ballot for that
+	 * slot in pvals, for every undecided slot in pvals.
 	 */
-	private ArrayList<Proposal> pmax(ArrayList<PValue> pvals)
+	private HashMap<Integer, Proposal> pmax(ArrayList<PValue> pvals)
 	{
-		ArrayList<Proposal> pmax_pvals = new ArrayList<Proposal>();
+		// The best pvalue so far for each slot number.
+		HashMap<Integer, PValue> bestYet = new HashMap<Integer, PValue>();
 		
-		// Find out all the slots in pvals.
-		ArrayList<Integer> slots = new ArrayList<Integer>();
 		for (int i = 0; i < pvals.size(); i++)
 		{
-			if (!slots.contains(pvals.get(i).getSlotNumber()))
+			PValue pval = pvals.get(i);
+			int slotNumber = pval.getSlotNumber();
+			
+			if (this.isDecided(slotNumber))
 			{
-				slots.add(pvals.get(i).getSlotNumber());
+				continue;
+			}
+			
+			PValue best = bestYet.get(slotNumber);
+			if (best == null || pval.getBallot().greaterThan(best.getBallot()))
+			{
+				bestYet.put(slotNumber, pval);
 			}
 		}
 		
-		// For each slot, find the max proposal (max ballot).
-		for (int i = 0; i < slots.size(); i++)
+		HashMap<Integer, Proposal> pmax_pvals = new HashMap<Integer, Proposal>();
+		for (PValue best : bestYet.values())
 		{
-			// The best pvalue for this slot number.
-			PValue bestYet = null;
-			
-			// The slot number we will look at this iteration.
-			int slotNumber = slots.get(i);
-			
-			// Testing.
-			//Logger.getInstance().println("Considering slot number: " + slotNumber);
-			
-			for (int j = 0; j < pvals.size(); j++)
-			{
-				// The proposal we are looking at.
-				PValue pval = pvals.get(j);
-				
-				// If this pvalue has to do with the current slot number.
-				if (pval.getSlotNumber() == slotNumber)
-				{
-					// It does, consider it.
-					if (bestYet == null)
-					{
-						// This is the first one we've seen -- take it.
-						bestYet = pval;
-					}
-					else
-					{
-						// This isn't the first one we've seen.
-						if (pval.getBallot().greaterThan(bestYet.getBallot()))
-						{
-							bestYet = pval;
-						}
-					}
-				}
-			} // End inner for loop.
-			
-			// We found our best pvalue for this slot number.
-			// Add it to the list.
-			pmax_pvals.add(new Proposal(bestYet.getSlotNumber(), bestYet.getCommand()));
-			
-		} // End outer for loop.
+			pmax_pvals.put(best.getSlotNumber(), new Proposal(best.getSlotNumber(), best.getCommand()));
+		}
 		
 		return pmax_pvals;
 	}
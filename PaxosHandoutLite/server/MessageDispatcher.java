@@ -0,0 +1,78 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import message.Message;
+
+
+/**
+ * Maps each message class to the handlers that consume it, so a server
+ * hands a message only to the roles that care about it: one lookup,
+ * rather than every role running its own chain of instanceof checks.
+ */
+public class MessageDispatcher
+{
+	/**
+	 * Consumes messages of type M.
+	 */
+	public interface Handler<M extends Message>
+	{
+		void handle(M message);
+	}
+
+	// Message class -> its handlers, in the order they were registered.
+	private HashMap<Class<? extends Message>, ArrayList<Handler<Message>>> handlers;
+
+	public MessageDispatcher()
+	{
+		this.handlers = new HashMap<Class<? extends Message>, ArrayList<Handler<Message>>>();
+	}
+
+
+	/**
+	 * Registers a handler for messages of the given class.  A class may
+	 * have several handlers; they run in the order they were registered.
+	 *
+	 * @param type, the message class.  Only messages of exactly this class
+	 * are handed to the handler.
+	 * @param handler, the handler.
+	 */
+	@SuppressWarnings("unchecked")
+	public <M extends Message> void register(Class<M> type, Handler<? super M> handler)
+	{
+		ArrayList<Handler<Message>> list = this.handlers.get(type);
+		if (list == null)
+		{
+			list = new ArrayList<Handler<Message>>(1);
+			this.handlers.put(type, list);
+		}
+
+		// Safe, since dispatch() only hands this handler messages of type M.
+		list.add((Handler<Message>) handler);
+	}
+
+
+	/**
+	 * Hands the given message to the handlers registered for its class.
+	 *
+	 * @param message, the message to dispatch.
+	 *
+	 * @return false if no handler is registered for the message's class.
+	 */
+	public boolean dispatch(Message message)
+	{
+		ArrayList<Handler<Message>> list = this.handlers.get(message.getClass());
+		if (list == null)
+		{
+			return false;
+		}
+
+		for (int i = 0; i < list.size(); i++)
+		{
+			list.get(i).handle(message);
+		}
+
+		return true;
+	}
+}
@@ -2,6 +2,7 @@ package server;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashSet;
 
 import ballot.Ballot;
 import client.Command;
@@ -18,9 +19,13 @@ public class PValue implements Serializable
 {
 	private static final long serialVersionUID = 1L;
 	
-	private Ballot ballot;
-	private int slotNumber;
-	private Command command;
+	private final Ballot ballot;
+	private final int slotNumber;
+	private final Command command;
+	
+	// Cached by hashCode(), since pvalues are hashed over and over when
+	// taking unions of pvalue sets.
+	private transient int hash;
 	
 	public PValue(Ballot ballot, int slotNumber, Command command)
 	{
@@ -129,13 +134,15 @@ public class PValue implements Serializable
 	 */
 	public static ArrayList<PValue> takeUnionOfPValueSets(ArrayList<PValue> a, ArrayList<PValue> b)
 	{
+		HashSet<PValue> inA = new HashSet<PValue>(a);
+		
 		// Traverse set b.
 		for (int i = 0; i < b.size(); i++)
 		{
 			// If set a doesn't have this item, add it.
 			PValue currVal = b.get(i);
 			
-			if (!a.contains(currVal))
+			if (inA.add(currVal))
 			{
 				a.add(currVal);
 			}
@@ -183,4 +190,16 @@ public class PValue implements Serializable
 		
 		return false;
 	}
+	
+	@Override
+	public int hashCode()
+	{
+		int h = this.hash;
+		if (h == 0)
+		{
+			h = 31 * (31 * this.ballot.hashCode() + this.slotNumber) + this.command.hashCode();
+			this.hash = h;
+		}
+		return h;
+	}
 }
@@ -0,0 +1,176 @@
+package server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import client.Command;
+
+/**
+ * The commands a replica has performed, for duplicate detection, kept per
+ * client rather than per command so it does not grow with the history.
+ *
+ * A client numbers its commands 0, 1, 2, ... and only sends a command
+ * whose cid is less than the window size past its oldest one without a
+ * response.  So per client this keeps a floor (every cid below it was
+ * performed) and the slot of each performed cid above the floor, plus
+ * the last window's worth below it: a command the client may still
+ * re-send is never further below the floor than that, and is answered
+ * with the slot it was performed in.  Older slots are forgotten; those
+ * commands are still known to be performed.
+ */
+public class PerformedCommands
+{
+	// Slots kept per client below its floor: the client window size.
+	private final int retained;
+
+	/**
+	 * What was performed for one client.
+	 */
+	private static final class ClientEntry
+	{
+		// Every cid below this was performed.
+		int floor;
+
+		// Performed cid -> the slot it was performed in, for cids at or
+		// above floor - retained.
+		TreeMap<Integer, Integer> slotOfCid = new TreeMap<Integer, Integer>();
+	}
+
+	// Client id -> what was performed for it.
+	private HashMap<Integer, ClientEntry> clients;
+
+
+	/**
+	 * @param retained, the client window size (see Config).
+	 */
+	public PerformedCommands(int retained)
+	{
+		this.retained = retained;
+		this.clients = new HashMap<Integer, ClientEntry>();
+	}
+
+
+	/**
+	 * @param command, a command.
+	 *
+	 * @return true iff the given command was performed.
+	 */
+	public boolean contains(Command command)
+	{
+		ClientEntry entry = this.clients.get(command.getClientId());
+		if (entry == null)
+		{
+			return false;
+		}
+
+		return command.getCommandId() < entry.floor || entry.slotOfCid.containsKey(command.getCommandId());
+	}
+
+
+	/**
+	 * @param command, a command.
+	 *
+	 * @return the slot the given command was performed in, or -1 if it
+	 * was not performed or was performed too long ago to remember.
+	 */
+	public int getSlot(Command command)
+	{
+		ClientEntry entry = this.clients.get(command.getClientId());
+		if (entry == null)
+		{
+			return -1;
+		}
+
+		Integer slot = entry.slotOfCid.get(command.getCommandId());
+		return slot == null ? -1 : slot;
+	}
+
+
+	/**
+	 * Records that the given command was performed in the given slot.
+	 *
+	 * @param command, the command.
+	 * @param slot, the slot it was performed in.
+	 */
+	public void add(Command command, int slot)
+	{
+		ClientEntry entry = this.clients.get(command.getClientId());
+		if (entry == null)
+		{
+			entry = new ClientEntry();
+			this.clients.put(command.getClientId(), entry);
+		}
+
+		if (command.getCommandId() < entry.floor - this.retained)
+		{
+			return;
+		}
+		entry.slotOfCid.put(command.getCommandId(), slot);
+
+		// Raise the floor past the cids performed in a row, and forget
+		// the slots that fall out of the retained range.
+		while (entry.slotOfCid.containsKey(entry.floor))
+		{
+			entry.floor++;
+		}
+		while (entry.slotOfCid.firstKey() < entry.floor - this.retained)
+		{
+			entry.slotOfCid.pollFirstEntry();
+		}
+	}
+
+
+	/**
+	 * Writes the table: per client, the floor and the slots kept.
+	 *
+	 * @param out, where to write it.
+	 */
+	public void writeTo(DataOutputStream out) throws IOException
+	{
+		out.writeInt(this.clients.size());
+		for (Map.Entry<Integer, ClientEntry> client : this.clients.entrySet())
+		{
+			ClientEntry entry = client.getValue();
+			out.writeInt(client.getKey());
+			out.writeInt(entry.floor);
+			out.writeInt(entry.slotOfCid.size());
+			for (Map.Entry<Integer, Integer> performed : entry.slotOfCid.entrySet())
+			{
+				out.writeInt(performed.getKey());
+				out.writeInt(performed.getValue());
+			}
+		}
+	}
+
+
+	/**
+	 * Replaces the table with one written by writeTo().
+	 *
+	 * @param in, where to read it from.
+	 */
+	public void readFrom(DataInputStream in) throws IOException
+	{
+		this.clients.clear();
+
+		int numClients = in.readInt();
+		for (int i = 0; i < numClients; i++)
+		{
+			ClientEntry entry = new ClientEntry();
+			int clientId = in.readInt();
+			entry.floor = in.readInt();
+
+			int numPerformed = in.readInt();
+			for (int j = 0; j < numPerformed; j++)
+			{
+				int cid = in.readInt();
+				entry.slotOfCid.put(cid, in.readInt());
+			}
+
+			this.clients.put(clientId, entry);
+		}
+	}
+}
@@ -1,14 +1,23 @@
 package server;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.function.IntSupplier;
 
 import client.Command;
 import framework.NetController;
+import log.Logger;
 import message.Decision;
-import message.Message;
+import message.DecisionsRequest;
+import message.DecisionsResponse;
 import message.Proposal;
 import message.Request;
 import message.Response;
+import message.Snapshotted;
+import message.SubscriptionAck;
+import message.SubscriptionUpdate;
 
 
 /**
@@ -18,15 +27,59 @@ import message.Response;
  */
 public class Replica
 {
+	// A snapshot is taken every this many slots.
+	private static final int SNAPSHOT_INTERVAL = 100;
+	
+	// Most slots asked for in one DecisionsRequest.
+	private static final int CATCH_UP_BATCH = 100;
+	
+	// How long to wait for a DecisionsResponse before asking another
+	// replica, in ms.
+	private static final long CATCH_UP_TIMEOUT = 500;
+	
+	// How long a gap below buffered decisions may last before a peer is
+	// asked to fill it, in ms.
+	private static final long GAP_TIMEOUT = 100;
+	
+	// Buffered decisions behind a gap at which a peer is asked at once.
+	private static final int GAP_THRESHOLD = 100;
+	
+	// Most slots covered by one SubscriptionUpdate.
+	private static final int SUBSCRIPTION_BATCH = 100;
+	
+	// Most slots streamed to a client past the last one it acknowledged.
+	private static final int SUBSCRIPTION_WINDOW = 500;
+	
+	// How long streamed slots may go unacknowledged before they are
+	// streamed again, in ms.
+	private static final long SUBSCRIPTION_RESEND_TIMEOUT = 1000;
+	
 	// Let this replica be p. This is p.proposals.
 	// This replica's set of <slot number, command> pairs for proposals 
-	// that this replica has made in the past (initially empty).
-	private ArrayList<Proposal> proposals;
+	// that this replica has made in the past (initially empty), keyed by
+	// slot number.  There is at most one proposal per slot.
+	private HashMap<Integer, Proposal> proposals;
 	
 	// Let this replica be p. This is p.decisions.
 	// This replica's set of <slot number, command> pairs for decided slots
-	// (initially empty).
-	private ArrayList<Decision> decisions;
+	// (initially empty), keyed by slot number.  Only one command is ever
+	// decided for a slot.  Only slots >= slot_num are kept here; the
+	// decisions of performed slots are in the decision log.
+	private HashMap<Integer, Decision> decisions;
+	
+	// Slots >= slot_num that a peer told us were decided as duplicates
+	// (see DecisionsResponse); they are skipped when reached.
+	private HashSet<Integer> skippedSlots;
+	
+	// Every command decided for a slot >= slot_num, and not yet
+	// performed -> the lowest such slot.
+	private HashMap<Command, Integer> decidedSlotOfCommand;
+	
+	// The commands performed so far, per client.
+	private PerformedCommands performed;
+	
+	// The lowest slot number not used in the proposals or decisions sets.
+	private int nextFreeSlot;
 	
 	// Let this replica be p. This is p.slot_num.
 	// This replica's current slot number (equivalent to the version
@@ -37,9 +90,32 @@ public class Replica
 		
 	// Let this replica be p. This is p.state.
 	// This replica's copy of the application state.  All replicas start
-	// with the same initial application state.
+	// with the same initial application state.  Backed by the decision log
+	// (if it could be opened), so it does not grow the heap.
 	private State state;
 	
+	// The commands this replica performed, by slot.  Null if the log
+	// could not be opened.
+	private DecisionLog decisionLog;
+	
+	// Watermark of the last snapshot taken: every slot below it is in it.
+	private int snapshotSlot;
+	
+	private TimerWheel timers;
+	
+	// Timeout of the outstanding DecisionsRequest, or null if none.
+	private TimerWheel.Timer catchUpTimer;
+	
+	// Fires when the gap at slot_num has lasted GAP_TIMEOUT, or null.
+	private TimerWheel.Timer gapTimer;
+	
+	// The replica asked last for missing decisions.
+	private int catchUpPeer;
+	
+	// Slots below this one are decided (our leader learned so from the
+	// acceptors), so keep fetching from peers until slot_num gets here.
+	private int catchUpTarget;
+	
 	// What server this replica is on.
 	private int serverId;
 	
@@ -52,12 +128,49 @@ public class Replica
 	// Number of clients in the system
 	private int numClients;
 	
-	public Replica(int serverId, int numServers, NetController network, int numClients)
+	// The server this server's leader believes is the current leader.
+	// Sent to clients with each response, so they know where to send.
+	private IntSupplier currentLeader;
+	
+	// Per client: every entry below this slot was acknowledged.  Every
+	// replica tracks this, so whichever is designated next can stream on
+	// from there.
+	private int[] clientAckedSlot;
+	
+	// Per client: every entry below this slot was streamed to it (acked
+	// or not).  Only meaningful while this replica is designated.
+	private int[] clientSentSlot;
+	
+	// Whether this replica was the designated one at the last flush.
+	private boolean wasDesignated;
+	
+	// Per client: fires when what was streamed to it has gone
+	// unacknowledged for SUBSCRIPTION_RESEND_TIMEOUT, or null.
+	private TimerWheel.Timer[] subscriptionTimers;
+	
+	public Replica(int serverId, int numServers, NetController network, int numClients, boolean isRecovering, TimerWheel timers, IntSupplier currentLeader)
 	{
+		this.currentLeader = currentLeader;
+		
 		this.numClients = numClients;
 		
-		this.proposals = new ArrayList<Proposal>();
-		this.decisions = new ArrayList<Decision>();
+		// A restarted replica does not know how far the clients are, so it
+		// starts at the beginning; the first ack moves it up.
+		this.clientAckedSlot = new int[numClients];
+		this.clientSentSlot = new int[numClients];
+		for (int i = 0; i < numClients; i++)
+		{
+			this.clientAckedSlot[i] = 1;
+			this.clientSentSlot[i] = 1;
+		}
+		this.wasDesignated = false;
+		this.subscriptionTimers = new TimerWheel.Timer[numClients];
+		
+		this.proposals = new HashMap<Integer, Proposal>();
+		this.decisions = new HashMap<Integer, Decision>();
+		this.skippedSlots = new HashSet<Integer>();
+		this.decidedSlotOfCommand = new HashMap<Command, Integer>();
+		this.performed = new PerformedCommands(network.getWindowSize());
 		
 		// Number of servers in the system.
 		this.numServers = numServers;
@@ -70,131 +183,579 @@ public class Replica
 		// numbers will be incorrect.
 		// MIKE: changed back to 1.
 		this.slot_num = 1;
-		
-		// All replicas start with the same initial state.
-		this.state = new State();
+		this.nextFreeSlot = 1;
 		
 		this.serverId = serverId;
 		this.network = network;
+		
+		this.snapshotSlot = 1;
+		
+		this.timers = timers;
+		this.catchUpTimer = null;
+		this.gapTimer = null;
+		this.catchUpPeer = serverId;
+		this.catchUpTarget = 0;
+		
+		// All replicas start with the same initial state.  A fresh replica
+		// starts an empty decision log; a restarted one keeps its log, and
+		// picks up after the last command it performed.
+		try
+		{
+			this.decisionLog = new DecisionLog(network.getLogDir(), serverId, !isRecovering);
+			this.state = new State(this.decisionLog);
+			
+			if (isRecovering)
+			{
+				this.recoverFromLog();
+			}
+		}
+		catch (IOException exc)
+		{
+			Logger.getInstance().error("ERROR: I/O while opening decision log: {}", exc.getMessage());
+			this.decisionLog = null;
+			this.state = new State();
+		}
+		
+		// Whatever was decided while we were down, fetch it from a peer
+		// rather than wait for decisions that will not come again.
+		if (isRecovering)
+		{
+			timers.schedule(0, () -> this.requestCatchUp());
+		}
+	}
+	
+	
+	/**
+	 * Restores slot_num and the performed commands from the latest
+	 * snapshot, plus the slots logged after it.
+	 */
+	private void recoverFromLog() throws IOException
+	{
+		int watermark = this.decisionLog.readSnapshot(this.performed);
+		if (watermark > 0)
+		{
+			this.snapshotSlot = watermark;
+		}
+		
+		int slot = this.decisionLog.nextSlot(this.snapshotSlot);
+		while (slot != -1)
+		{
+			// Only the slot a command was performed in is logged.
+			this.performed.add(this.decisionLog.get(slot), slot);
+			
+			slot = this.decisionLog.nextSlot(slot + 1);
+		}
+		
+		// Slots performed as duplicates are not logged, so the snapshot may
+		// be past the last logged slot.
+		this.slot_num = Math.max(this.decisionLog.getLastSlot() + 1, this.snapshotSlot);
+		this.nextFreeSlot = this.slot_num;
+		
+		Logger.getInstance().info("Replica {} recovered from snapshot at slot {} and log up to slot {}.", this.serverId, this.snapshotSlot, this.slot_num - 1);
 	}
 	
 	
 	/**
-	 * Analyze this message, and if it is relevant to a replica, carry out
-	 * a task as a replica.
+	 * @return the next slot this replica will perform; every slot below
+	 * it has been performed.
+	 */
+	public int getSlotNum()
+	{
+		return this.slot_num;
+	}
+	
+	
+	/**
+	 * Takes a snapshot at slot_num, and tells every server about it so
+	 * acceptors can forget what is below it.
+	 */
+	private void takeSnapshot()
+	{
+		try
+		{
+			this.decisionLog.writeSnapshot(this.slot_num, this.performed);
+		}
+		catch (IOException exc)
+		{
+			Logger.getInstance().error("ERROR: I/O while writing replica snapshot: {}", exc.getMessage());
+			return;
+		}
+		
+		this.snapshotSlot = this.slot_num;
+		
+		Snapshotted snapshotted = new Snapshotted(this.serverId, this.snapshotSlot);
+		for (int i = 0; i < this.numServers; i++)
+		{
+			this.network.sendMsgToServer(i, snapshotted);
+		}
+	}
+	
+	
+	/**
+	 * Replica received Request from a client.
+	 * IN PAPER: case <request, p>
 	 * 
-	 * @param message, the given message.
+	 * @param request, the request.
 	 */
-	public void runTasks(Message message)
+	public void handleRequest(Request request)
 	{
-		//**********************************************************************
-		//* Replica received Request from a client.
-		//**********************************************************************
-		if (message instanceof Request)
-		{
-			// IN PAPER: case <request, p>
-			Request request = (Request) message;
-			//Logger.getInstance().println("Replica " + this.serverId + " received " + request);
+		//Logger.getInstance().println("Replica " + this.serverId + " received " + request);
+		
+		// A command we already performed is being re-sent, so its
+		// response went missing: answer it directly.  (Its slot is kept as
+		// long as the client's window lets it be outstanding.)
+		Command command = request.getCommand();
+		if (this.performed.contains(command))
+		{
+			int performedSlot = this.performed.getSlot(command);
+			if (performedSlot != -1)
+			{
+				StateEntry result = new StateEntry(command, performedSlot);
+				this.network.sendMsgToClient(command.getClientId(), new Response(command.getCommandId(), result, this.currentLeader.getAsInt()));
+			}
+			return;
+		}
+		
+		propose(command);
+	}
+	
+	
+	/**
+	 * Replica received a SubscriptionAck: the client has every entry below
+	 * the slot it names.
+	 * 
+	 * @param ack, the ack.
+	 */
+	public void handleSubscriptionAck(SubscriptionAck ack)
+	{
+		int clientId = ack.getClientId();
+		this.clientAckedSlot[clientId] = Math.max(this.clientAckedSlot[clientId], ack.getThroughSlot());
+		
+		if (ack.isResend())
+		{
+			this.clientSentSlot[clientId] = ack.getThroughSlot();
+		}
+		else
+		{
+			this.clientSentSlot[clientId] = Math.max(this.clientSentSlot[clientId], this.clientAckedSlot[clientId]);
+		}
+	}
+	
+	
+	/**
+	 * If this is the designated replica (the one on the current leader's
+	 * server), streams each client the entries performed since the last
+	 * update, in batches of up to SUBSCRIPTION_BATCH slots, while it has
+	 * fewer than SUBSCRIPTION_WINDOW slots unacknowledged.  Called once
+	 * per pass of the server's loop, so one update carries every decision
+	 * performed in that pass.
+	 */
+	public void flushSubscriptions()
+	{
+		if (!this.isDesignated())
+		{
+			this.wasDesignated = false;
+			return;
+		}
+		
+		// We may have streamed to clients the last time we were designated;
+		// pick up from what they acked since.
+		if (!this.wasDesignated)
+		{
+			for (int i = 0; i < this.numClients; i++)
+			{
+				this.clientSentSlot[i] = this.clientAckedSlot[i];
+			}
+			this.wasDesignated = true;
+		}
+		
+		if (this.decisionLog == null)
+		{
+			return;
+		}
+		
+		for (int i = 0; i < this.numClients; i++)
+		{
+			int fromSlot = this.clientSentSlot[i];
+			if (fromSlot >= this.slot_num || fromSlot - this.clientAckedSlot[i] >= Replica.SUBSCRIPTION_WINDOW)
+			{
+				continue;
+			}
+			
+			int throughSlot = Math.min(this.slot_num, fromSlot + Replica.SUBSCRIPTION_BATCH);
+			ArrayList<StateEntry> entries = new ArrayList<StateEntry>();
+			
+			try
+			{
+				int slot = this.decisionLog.nextSlot(fromSlot);
+				while (slot != -1 && slot < throughSlot)
+				{
+					Command command = this.decisionLog.get(slot);
+					if (command.getClientId() != i)
+					{
+						entries.add(new StateEntry(command, slot));
+					}
+					slot = this.decisionLog.nextSlot(slot + 1);
+				}
+			}
+			catch (IOException exc)
+			{
+				Logger.getInstance().error("ERROR: I/O while reading decision log: {}", exc.getMessage());
+				return;
+			}
 			
-			propose(request.getCommand());
+			this.network.sendMsgToClient(i, new SubscriptionUpdate(this.serverId, fromSlot, throughSlot, entries));
+			this.clientSentSlot[i] = throughSlot;
+			this.watchSubscription(i);
+		}
+	}
+	
+	
+	/**
+	 * Streams to the given client again from what it acknowledged if it
+	 * acknowledges nothing more within SUBSCRIPTION_RESEND_TIMEOUT.  An
+	 * update (or its ack) may have been dropped, and the client only
+	 * notices a gap when a later update arrives, which it may never do.
+	 * 
+	 * @param clientId, the client.
+	 */
+	private void watchSubscription(final int clientId)
+	{
+		if (this.subscriptionTimers[clientId] != null)
+		{
+			return;
 		}
+		
+		final int ackedSlot = this.clientAckedSlot[clientId];
+		this.subscriptionTimers[clientId] = this.timers.schedule(Replica.SUBSCRIPTION_RESEND_TIMEOUT, () ->
+		{
+			this.subscriptionTimers[clientId] = null;
+			if (this.clientAckedSlot[clientId] >= this.clientSentSlot[clientId])
+			{
+				return;
+			}
 			
+			if (this.clientAckedSlot[clientId] == ackedSlot)
+			{
+				// The next flushSubscriptions() streams it again.
+				this.clientSentSlot[clientId] = ackedSlot;
+			}
+			else
+			{
+				this.watchSubscription(clientId);
+			}
+		});
+	}
+	
+	
+	/**
+	 * @return true iff this replica is the one that answers clients: the
+	 * one on the server its leader believes is the current leader.
+	 */
+	private boolean isDesignated()
+	{
+		return this.currentLeader.getAsInt() == this.serverId;
+	}
+	
+	
+	/**
+	 * Replica received Decision from a Commander.
+	 * IN PAPER: case <decision, s, p>
+	 * 
+	 * @param decision, the decision.
+	 */
+	public void handleDecision(Decision decision)
+	{
+		//Logger.getInstance().println("Replica " + this.serverId + " received " + decision);
 		
-		//**********************************************************************
-		//* Replica received Decision from a Commander.
-		//**********************************************************************
-		if (message instanceof Decision)
+		// Add to the local list of decisions, only if we don't already
+		// have it.  Decisions can arrive multiple times.  Slots below
+		// slot_num were already performed.
+		this.addDecision(decision);
+		
+		this.performDecisions();
+	}
+	
+	
+	/**
+	 * Adds the given decision to the decisions set, unless we already have
+	 * it.  Decisions can arrive multiple times.  Slots below slot_num were
+	 * already performed.
+	 * 
+	 * @param decision, the decision.
+	 */
+	private void addDecision(Decision decision)
+	{
+		int decisionSlotNum = decision.getProposalSlotNum();
+		if (decisionSlotNum >= this.slot_num && !this.decisions.containsKey(decisionSlotNum) && !this.skippedSlots.contains(decisionSlotNum))
 		{
-			// IN PAPER: case <decision, s, p>
-			Decision decision = (Decision) message;
-			//Logger.getInstance().println("Replica " + this.serverId + " received " + decision);
+			this.decisions.put(decisionSlotNum, decision);
+			//Logger.getInstance().println("Replica " + this.serverId + ": added decision: " + decision);
 			
-			// Add to the local list of decisions, only if we don't already
-			// have it.  Decisions can arrive multiple times.
-			if (!this.decisions.contains(decision))
+			Command decisionCommand = decision.getProposal().getCommand();
+			Integer decidedSlot = this.decidedSlotOfCommand.get(decisionCommand);
+			if (!this.performed.contains(decisionCommand) && (decidedSlot == null || decisionSlotNum < decidedSlot))
 			{
-				this.decisions.add(decision);
-				//Logger.getInstance().println("Replica " + this.serverId + ": added decision: " + decision);
+				this.decidedSlotOfCommand.put(decisionCommand, decisionSlotNum);
 			}
 			
-			// Keep performing decisions in slot_num as long as we can.
-			// Note: this decision may have to do with a higher slot than slot_num,
-			// since decisions can come from other replicas.  In fact, we may have
-			// received a decision to a command we have never seen before.
-			while (hasDecisionWithSlotNum(this.slot_num) != null)
+			this.advanceNextFreeSlot();
+		}
+	}
+	
+	
+	/**
+	 * Performs decisions in slot_num as long as we can.  If that leaves
+	 * decisions for higher slots waiting, there is a gap: fetch it if it
+	 * lasts or is wide.
+	 */
+	private void performDecisions()
+	{
+		// Keep performing decisions in slot_num as long as we can.
+		// Note: this decision may have to do with a higher slot than slot_num,
+		// since decisions can come from other replicas.  In fact, we may have
+		// received a decision to a command we have never seen before.
+		while (true)
+		{
+			// This is the decision that has slot_num (which we will
+			// perform).  Once performed, it only lives in the log.
+			Decision d = this.decisions.remove(this.slot_num);
+			
+			if (d == null)
 			{
-				// This is the decision that has slot_num (which we will
-				// perform).
-				Decision d = hasDecisionWithSlotNum(this.slot_num);
-				
-				// Testing.
-				//Logger.getInstance().println("Replica " + this.serverId + ": has decision with slot_num");
-				
-				// Check if there are any proposals in proposals which
-				// have the same slot number as this decision, but are
-				// not equal to this decision (the command is different).
-				// If so, re-propose this proposal so it can fill a higher
-				// slot in the future.
-				// TODO there can only be one max, right?  I think so.
-				
-				// Get all the proposals for this slot number.
-				ArrayList<Proposal> proposalsForSlotNum = new ArrayList<Proposal>();
-				for (int i = 0; i < this.proposals.size(); i++)
+				// A slot decided as a duplicate (which we learned from a
+				// peer) is skipped, as perform() would.
+				if (!this.skippedSlots.remove(this.slot_num))
 				{
-					Proposal currProposal = this.proposals.get(i);
-					
-					if (currProposal.getSlotNum() == this.slot_num)
-					{
-						proposalsForSlotNum.add(currProposal);
-					}
+					break;
 				}
 				
-				// TODO: This loop should only loop once if ever, since
-				// there should only be one proposal for any given slot in
-				// proposals.  Modify this later on.
-				for (int i = 0; i < proposalsForSlotNum.size(); i++)
+				Proposal proposalForSlotNum = this.proposals.remove(this.slot_num);
+				if (proposalForSlotNum != null)
 				{
-					Command currCommand = proposalsForSlotNum.get(i).getCommand();
-					Command decisionCommand = decision.getProposal().getCommand();
-					if (!currCommand.equals(decisionCommand))
-					{
-						propose(currCommand);
-					}
+					propose(proposalForSlotNum.getCommand());
 				}
-				
-				// Perform the command of the decision.
-				perform(d.getProposal().getCommand());
+				this.slot_num++;
+				continue;
+			}
+			
+			// Testing.
+			//Logger.getInstance().println("Replica " + this.serverId + ": has decision with slot_num");
+			
+			// Check if there is a proposal in proposals which has
+			// the same slot number as this decision, but is not equal
+			// to this decision (the command is different).  If so,
+			// re-propose this proposal so it can fill a higher slot in
+			// the future.  There is at most one proposal per slot.
+			Proposal proposalForSlotNum = this.proposals.remove(this.slot_num);
+			if (proposalForSlotNum != null)
+			{
+				Command currCommand = proposalForSlotNum.getCommand();
+				Command decisionCommand = d.getProposal().getCommand();
+				if (!currCommand.equals(decisionCommand))
+				{
+					propose(currCommand);
+				}
+			}
+			
+			// Perform the command of the decision.
+			perform(d.getProposal().getCommand());
+		}
+		
+		// Slots we caught up on may not have been in decisions.
+		if (this.nextFreeSlot < this.slot_num)
+		{
+			this.nextFreeSlot = this.slot_num;
+			this.advanceNextFreeSlot();
+		}
+		
+		if (this.decisionLog != null && this.slot_num - this.snapshotSlot >= Replica.SNAPSHOT_INTERVAL)
+		{
+			this.takeSnapshot();
+		}
+		
+		// Everything left in decisions is above slot_num, so slot_num is
+		// a gap.  Decisions often just arrive out of order, and the gap
+		// fills by itself; only a wide one is fetched at once.
+		if (this.decisions.size() >= Replica.GAP_THRESHOLD)
+		{
+			this.requestCatchUp();
+		}
+		else if (!this.decisions.isEmpty())
+		{
+			this.watchGap();
+		}
+	}
+	
+	
+	/**
+	 * Asks a peer for the decisions from slot_num on if the gap at
+	 * slot_num is still there after GAP_TIMEOUT.  If slot_num moved on
+	 * but there is a gap again, that one is watched in turn.
+	 */
+	private void watchGap()
+	{
+		if (this.gapTimer != null)
+		{
+			return;
+		}
+		
+		final int gapSlot = this.slot_num;
+		this.gapTimer = this.timers.schedule(Replica.GAP_TIMEOUT, () ->
+		{
+			this.gapTimer = null;
+			if (this.decisions.isEmpty())
+			{
+				return;
 			}
+			
+			if (this.slot_num == gapSlot)
+			{
+				this.requestCatchUp();
+			}
+			else
+			{
+				this.watchGap();
+			}
+		});
+	}
+	
+	
+	/**
+	 * Fetches the decisions below the given slot from peers, if this
+	 * replica has not performed them yet.  Every slot below it is decided,
+	 * but no Decision for it may ever come again.
+	 * 
+	 * @param slot, the slot.
+	 */
+	public void catchUpTo(int slot)
+	{
+		if (slot <= this.catchUpTarget)
+		{
+			return;
+		}
+		this.catchUpTarget = slot;
+		
+		if (this.slot_num < slot)
+		{
+			this.requestCatchUp();
+		}
+	}
+	
+	
+	/**
+	 * Asks a peer replica for the decisions from slot_num on, unless a
+	 * request is already outstanding.  If no answer comes, the next peer
+	 * is asked.  A replica with no local state fetches every slot from 1:
+	 * peers send decisions, not snapshots (see DecisionLog).
+	 */
+	private void requestCatchUp()
+	{
+		if (this.catchUpTimer != null || this.numServers == 1)
+		{
+			return;
 		}
+		
+		this.catchUpPeer = (this.catchUpPeer + 1) % this.numServers;
+		if (this.catchUpPeer == this.serverId)
+		{
+			this.catchUpPeer = (this.catchUpPeer + 1) % this.numServers;
+		}
+		
+		DecisionsRequest request = new DecisionsRequest(this.serverId, this.slot_num, this.slot_num + Replica.CATCH_UP_BATCH);
+		this.network.sendMsgToServer(this.catchUpPeer, request);
+		
+		this.catchUpTimer = this.timers.schedule(Replica.CATCH_UP_TIMEOUT, () ->
+		{
+			this.catchUpTimer = null;
+			if (!this.decisions.isEmpty() || this.slot_num < this.catchUpTarget)
+			{
+				this.requestCatchUp();
+			}
+		});
 	}
 	
 	
 	/**
-	 * Returns the decision in this server's replica's list of decisions
-	 * which has slot_num equal to slotNum.  Else, if not found, returns
-	 * null.
+	 * Replica received a DecisionsRequest from a peer that is behind.
+	 * Answers with what it performed in the slots asked for, as far as it
+	 * has got.
 	 * 
-	 * @param slotNum, the slotNum we are looking for.
+	 * @param request, the request.
+	 */
+	public void handleDecisionsRequest(DecisionsRequest request)
+	{
+		if (this.decisionLog == null)
+		{
+			return;
+		}
+		
+		int throughSlot = Math.min(request.getToSlot(), this.slot_num);
+		ArrayList<Proposal> performed = new ArrayList<Proposal>();
+		
+		try
+		{
+			int slot = this.decisionLog.nextSlot(request.getFromSlot());
+			while (slot != -1 && slot < throughSlot)
+			{
+				performed.add(new Proposal(slot, this.decisionLog.get(slot)));
+				slot = this.decisionLog.nextSlot(slot + 1);
+			}
+		}
+		catch (IOException exc)
+		{
+			Logger.getInstance().error("ERROR: I/O while reading decision log: {}", exc.getMessage());
+			return;
+		}
+		
+		DecisionsResponse response = new DecisionsResponse(this.serverId, request.getFromSlot(), throughSlot, performed);
+		this.network.sendMsgToServer(request.getSenderId(), response);
+	}
+	
+	
+	/**
+	 * Replica received a DecisionsResponse: decisions it was missing.
+	 * Performs them, and asks for more while it is still behind.
 	 * 
-	 * @return the decision in this server's replica's list of decisions
-	 * which has slot_num equal to slotNum.  Else, if not found, returns
-	 * null.
+	 * @param response, the response.
 	 */
-	private Decision hasDecisionWithSlotNum(int slotNum)
+	public void handleDecisionsResponse(DecisionsResponse response)
 	{
-		// Traverse decisions looking for the given slot_num.
-		// slot_num is unique to each decision. 
-		for (int i = 0; i < this.decisions.size(); i++)
+		// Only an answer to the outstanding request moves catch-up on.  A
+		// peer no further along than us knows nothing we don't; the
+		// timeout will ask another one.
+		if (this.catchUpTimer == null || response.getFromSlot() != this.slot_num || response.getThroughSlot() <= this.slot_num)
 		{
-			Decision tempDecision = this.decisions.get(i);
-			
-			if (tempDecision.getProposalSlotNum() == this.slot_num)
+			return;
+		}
+		this.timers.cancel(this.catchUpTimer);
+		this.catchUpTimer = null;
+		
+		ArrayList<Proposal> performed = response.getDecisions();
+		for (int i = 0; i < performed.size(); i++)
+		{
+			this.addDecision(new Decision(performed.get(i)));
+		}
+		
+		// Slots with nothing performed were duplicates.
+		for (int slot = this.slot_num; slot < response.getThroughSlot(); slot++)
+		{
+			if (!this.decisions.containsKey(slot))
 			{
-				return tempDecision;
+				this.skippedSlots.add(slot);
 			}
 		}
 		
-		return null;
+		int oldSlotNum = this.slot_num;
+		this.performDecisions();
+		
+		Logger.getInstance().info("Replica {} caught up from slot {} to {}.", this.serverId, oldSlotNum, this.slot_num);
+		
+		// A full batch means the peer may have more.
+		if (response.getThroughSlot() == response.getFromSlot() + Replica.CATCH_UP_BATCH || this.slot_num < this.catchUpTarget)
+		{
+			this.requestCatchUp();
+		}
 	}
 	
 	
@@ -212,7 +773,7 @@ public class Replica
 			// (2) Find lowest unused slow number s'.
 			// This means finding the lowest unused slot number in the union
 			// of this.decisions and this.proposals sets.
-			int lowestSlotNum = getLowestSlotNum();
+			int lowestSlotNum = this.nextFreeSlot;
 		
 			//Logger.getInstance().println("LOWEST SLOT NUMBER: " + lowestSlotNum + " for: " + p);
 		
@@ -221,11 +782,10 @@ public class Replica
 			// the union necessarily.
 			// FALSE -- We re-transmit commands from the client to make Paxos live in some
 			// cases.  Therefore, take union!
+			// (The slot is unused, so this always adds it.)
 			Proposal newProposal = new Proposal(lowestSlotNum, p);
-			if (!this.proposals.contains(newProposal))
-			{
-				this.proposals.add(newProposal);
-			}
+			this.proposals.put(lowestSlotNum, newProposal);
+			this.advanceNextFreeSlot();
 			
 			// (4) Send <"propose", s', p> to all leaders.
 			sendProposalToAllLeaders(newProposal);
@@ -249,59 +809,16 @@ public class Replica
 	
 	
 	/**
-	 * Returns the lowest unused slot number (in the union of this
-	 * replica's proposals decisions sets).
-	 * 
-	 * @return the lowest unused slot number (in the union of this
-	 * replica's proposals decisions sets).
+	 * Moves nextFreeSlot up past every slot used in the proposals or
+	 * decisions sets.  Slots are only ever added to those sets, so the
+	 * lowest unused slot number never goes down.
 	 */
-	private int getLowestSlotNum()
+	private void advanceNextFreeSlot()
 	{
-		// Convert all Decisions into proposals, and merge the proposals
-		// and decisions sets (create a master set of pure proposals).
-		ArrayList<Proposal> masterSet = new ArrayList<Proposal>();
-		
-		// Add all Proposals in the proposals set.
-		masterSet.addAll(this.proposals);
-		
-		// Add all Decisions in the decisions set.  First, convert all
-		// Decisions to Proposals.
-		for (int i = 0; i < this.decisions.size(); i++)
+		while (this.proposals.containsKey(this.nextFreeSlot) || this.decisions.containsKey(this.nextFreeSlot) || this.skippedSlots.contains(this.nextFreeSlot))
 		{
-			Decision d = this.decisions.get(i);
-			Proposal p = d.getProposal();
-			masterSet.add(p);
+			this.nextFreeSlot++;
 		}
-		
-		// Find the lowest slot number and return it.
-		int lowestSlotNumber = 1;
-		while (true)
-		{
-			boolean found = false;
-			
-			// Does the master set contain this lowestSlotNumber?
-			for (int i = 0; i < masterSet.size(); i++)
-			{
-				if (masterSet.get(i).getSlotNum() == lowestSlotNumber)
-				{
-					// We found it. Stop looking. Continue searching
-					// with the next slot number.
-					found = true;
-					break;
-				}
-			}
-			
-			if (found)
-			{
-				lowestSlotNumber++;
-			}
-			else
-			{
-				break;
-			}
-		}
-		
-		return lowestSlotNumber;
 	}
 	
 	
@@ -316,17 +833,7 @@ public class Replica
 	 */
 	private boolean isDecisionWithCommand(Command command)
 	{
-		for (int i = 0; i < this.decisions.size(); i++)
-		{
-			Decision currDecision = this.decisions.get(i);
-			Command currCommand = currDecision.getProposal().getCommand();
-			if (currCommand.equals(command))
-			{
-				return true;
-			}
-		}
-		
-		return false;
+		return this.performed.contains(command) || this.decidedSlotOfCommand.containsKey(command);
 	}
 	
 	
@@ -343,20 +850,13 @@ public class Replica
 		// any commands.  Why can this happen?  Different replicas can propose
 		// the same command for different slots, and thus the same command
 		// may be decided more than once.
-		for (int i = 0; i < this.decisions.size(); i++)
+		this.decidedSlotOfCommand.remove(p);
+		if (this.performed.contains(p))
 		{
-			Decision currDecision = this.decisions.get(i);
-			
-			if (currDecision.getProposal().getCommand().equals(p))
-			{
-				if (currDecision.getProposal().getSlotNum() < this.slot_num)
-				{
-					// Skip this command, we've already done it.
-					//Logger.getInstance().println("Skipping command: " + p);
-					this.slot_num++;
-					return;
-				}
-			}
+			// Skip this command, we've already done it.
+			//Logger.getInstance().println("Skipping command: " + p);
+			this.slot_num++;
+			return;
 		}
 		
 		// Else, we have not performed this command yet. Let's do it.
@@ -364,16 +864,27 @@ public class Replica
 		// Update state.
 		StateEntry result = new StateEntry(p, this.slot_num);
 		this.state.addToState(result);
+		this.performed.add(p, this.slot_num);
 		
 		// Update slot number to do next.
 		this.slot_num++;
 		
-		// Send clients the update.
-		Response response = new Response(p.getCommandId(), result);
+		// Tell the issuing client, even if we caught up on this slot from a
+		// peer: a peer that was not designated never answered it.
+		Response response = new Response(p.getCommandId(), result, this.currentLeader.getAsInt());
 		
-		for (int i = 0; i < this.numClients; i++)
+		// Without a decision log there is no subscription stream to serve
+		// the other clients from, so they get the response too.
+		if (this.decisionLog == null)
+		{
+			for (int i = 0; i < this.numClients; i++)
+			{
+				this.network.sendMsgToClient(i, response);
+			}
+		}
+		else if (this.isDesignated())
 		{
-			this.network.sendMsgToClient(i, response);
+			this.network.sendMsgToClient(p.getClientId(), response);
 		}
 	}
 }
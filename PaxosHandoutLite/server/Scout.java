@@ -21,7 +21,9 @@ public class Scout
 	// Scout timeout in milliseconds.
 	private static final long SCOUT_TIMEOUT = 1000;
 	
-	private long scoutCreatedTime;
+	// Fires if this Scout is not done within SCOUT_TIMEOUT.
+	private TimerWheel timers;
+	private TimerWheel.Timer timeout;
 	
 	// This scout's unique ID in the eyes of the leader who spawned him.
 	private int uniqueId;
@@ -41,18 +43,27 @@ public class Scout
 	
 	private Ballot myBallot;
 	
+	// This scout only runs phase 1 for slots >= fromSlot.
+	private int fromSlot;
+	
+	// Highest compacted slot of the acceptors that adopted our ballot.
+	private int compactedSlot;
+	
 	// Leader's timebomb.
 	private Timebomb timebomb;
 	
-	public Scout(Ballot ballot, int myLeaderId, NetController network, int numServers, int uniqueId, Timebomb timebomb)
+	public Scout(Ballot ballot, int myLeaderId, NetController network, int numServers, int uniqueId, Timebomb timebomb, int fromSlot, TimerWheel timers, Runnable onTimeout)
 	{
-		this.scoutCreatedTime = System.currentTimeMillis();
+		this.timers = timers;
+		this.timeout = timers.schedule(Scout.SCOUT_TIMEOUT, onTimeout);
 		
 		this.uniqueId = uniqueId;
 		this.network = network;
 		this.numServers = numServers;
 		this.myLeaderId = myLeaderId;
 		this.myBallot = ballot;
+		this.fromSlot = fromSlot;
+		this.compactedSlot = 0;
 		
 		// Add all acceptor IDs to the waitFor list.  This assumes that
 		// the number of acceptors = number of servers.
@@ -67,7 +78,7 @@ public class Scout
 		
 		// Send p1a to all acceptors.  There is an acceptor on every server,
 		// including ours!
-		P1a p1a = new P1a(this.myLeaderId, Ballot.deepCopyBallot(this.myBallot));
+		P1a p1a = new P1a(this.myLeaderId, Ballot.deepCopyBallot(this.myBallot), this.fromSlot);
 		for (int i = 0; i < numServers; i++)
 		{
 			this.network.sendMsgToServer(i, p1a);
@@ -78,6 +89,15 @@ public class Scout
 		}
 	}
 	
+	/**
+	 * Cancels this Scout's timeout.  Call once the Scout is done or has
+	 * been replaced.
+	 */
+	public void cancelTimeout()
+	{
+		this.timers.cancel(this.timeout);
+	}
+	
 	/**
 	 * This scout's run method.  When it is done completing its tasks,
 	 * the method will return the Scout's unique ID, at which point this 
@@ -105,6 +125,7 @@ public class Scout
 				// we don't have in our pvalue set currently, add them.  In other
 				// words, take the union of the pvalue and accepted sets.
 				this.pvalues = PValue.takeUnionOfPValueSets(this.pvalues, p1b.getAcceptedSet());
+				this.compactedSlot = Math.max(this.compactedSlot, p1b.getCompactedSlot());
 				
 				// Testing.
 				/*System.out.print("OLD WAIT FOR LIST: ");
@@ -141,7 +162,7 @@ public class Scout
 					// pvalues set and the Ballot, since we will nullify this 
 					// scout's reference, and it will be eaten by the garbage
 					// collector.
-					Adopted adopted = new Adopted(Ballot.deepCopyBallot(this.myBallot), PValue.deepCopyPValueSet(this.pvalues));
+					Adopted adopted = new Adopted(Ballot.deepCopyBallot(this.myBallot), PValue.deepCopyPValueSet(this.pvalues), this.fromSlot, this.compactedSlot);
 					
 					// send to leader: <adopted, b, pvalues>
 					this.network.sendMsgToServer(this.myLeaderId, adopted);
@@ -151,7 +172,9 @@ public class Scout
 					return this.uniqueId;
 				}
 			}
-			else
+			// A p1b with a lower ballot answers an older Scout of our
+			// leader's (e.g., one that timed out), so ignore it.
+			else if (p1b.getBallot().greaterThan(this.myBallot))
 			{
 				// An acceptor returned a ballot which did not match.
 				Preempted preempted = new Preempted(Ballot.deepCopyBallot(p1b.getBallot()));
@@ -165,14 +188,6 @@ public class Scout
 			}
 		}
 		
-		//**********************************************************************
-		//* Check if scout has timed out.
-		//**********************************************************************
-		if (System.currentTimeMillis() >= (this.scoutCreatedTime + Scout.SCOUT_TIMEOUT))
-		{
-			return -2;
-		}
-		
 		// This Scout is not done yet.
 		return -1;
 	}
@@ -5,13 +5,26 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
+import message.AcceptedSetRequest;
+import message.AcceptedSetResponse;
+import message.Adopted;
 import message.Decision;
+import message.DecisionsRequest;
+import message.DecisionsResponse;
+import message.HeartBeat;
 import message.Message;
+import message.P1a;
+import message.P1b;
 import message.P2a;
+import message.P2aBatch;
+import message.P2b;
+import message.P2bBatch;
 import message.PlainMessage;
+import message.Preempted;
 import message.Proposal;
 import message.Request;
-import client.Command;
+import message.Snapshotted;
+import message.SubscriptionAck;
 import framework.NetController;
 import log.Logger;
 
@@ -44,6 +57,13 @@ public class Server implements Runnable {
 	// Number of servers in the system.
 	private int numServers;
 	
+	// Hands each network message to the roles that consume it.
+	private MessageDispatcher dispatcher;
+	
+	// Timers of the leader (and its Scouts and Commanders) and acceptor.
+	// Only this server's thread touches them once it runs.
+	private TimerWheel timers;
+	
 	
 	/**
 	 * Constructor.
@@ -55,9 +75,13 @@ public class Server implements Runnable {
 		this.numServers = numServers;
 		this.network = nc;
 		this.serverReceiveQueue = serverReceiveQueue;
-		this.replica = new Replica(id, numServers, nc, numClients);
-		this.leader = new Leader(id, numServers, nc, isRecovering);
-		this.acceptor = new Acceptor(id, nc, isRecovering, numServers, acceptorRecoveryWaitTime);
+		this.timers = new TimerWheel();
+		this.replica = new Replica(id, numServers, nc, numClients, isRecovering, this.timers, () -> this.leader.getCurrentLeaderId() % numServers);
+		this.leader = new Leader(id, numServers, nc, isRecovering, this.replica.getSlotNum(), this.timers, slot -> this.replica.catchUpTo(slot));
+		this.acceptor = new Acceptor(id, nc, isRecovering, numServers, acceptorRecoveryWaitTime, this.timers);
+		
+		this.dispatcher = new MessageDispatcher();
+		this.registerHandlers();
 		
 		// Current leader upon start up has ID = 0;
 		//this.leader.setCurrentLeader(0);
@@ -66,7 +90,7 @@ public class Server implements Runnable {
 	@Override
 	public void run()
 	{
-		Logger.getInstance().println("Server " + this.id + " created.");
+		Logger.getInstance().info("Server {} created.", this.id);
 		
 		while (true)
 		{
@@ -81,7 +105,7 @@ public class Server implements Runnable {
 			// Process messages from master.
 			for (int i = 0; i < masterMessages.size(); i++)
 			{
-				Logger.getInstance().println("Server " + this.id + " received from master: " + masterMessages.get(i));
+				Logger.getInstance().info("Server {} received from master: {}", this.id, masterMessages.get(i));
 			}
 			
 			
@@ -89,8 +113,18 @@ public class Server implements Runnable {
 			//* NETWORK MESSAGES
 			//******************************************************************
 			
-			// Receive messages from network.
-			ArrayList<Message> networkMessages = getNetworkMessages();
+			// Receive messages from network.  Sleep until one arrives, or
+			// until the next timer expires.
+			ArrayList<Message> networkMessages = getNetworkMessages(this.timers.getTimeUntilNextDeadline());
+			
+			
+			//******************************************************************
+			//* TIMERS
+			//******************************************************************
+			
+			// Heart beats, timeouts and recovery.  These depend only on the
+			// time, so they run once per iteration rather than per message.
+			this.timers.advance();
 			
 			for (int i = 0; i < networkMessages.size(); i++)
 			{
@@ -99,28 +133,54 @@ public class Server implements Runnable {
 				// Testing.
 				//Logger.getInstance().println("Server " + this.id + " received: " + currMessage);
 				
-				this.replica.runTasks(currMessage);
-				this.leader.runTasks(currMessage);
-				this.acceptor.runTasks(currMessage);
-				
-				// Communication testing.
-				if (currMessage instanceof PlainMessage)
-				{
-					PlainMessage plainMessage = (PlainMessage) currMessage;
-					Logger.getInstance().println("Server " + this.id + " received " + plainMessage);
-				}
+				this.dispatcher.dispatch(currMessage);
 			}
 			
-			// (NEW)
-			// Leader needs to send heartbeats, so run it continuously, even
-			// when no new messages are coming in.
-			this.leader.runTasks(null);
+			// Make this pass's promises and accepts durable, then send the
+			// acceptor's replies to them.
+			this.acceptor.flush();
 			
-			// Continuously run acceptor (for case when it is recovering).
-			this.acceptor.runTasks(null);
+			// Stream the commands performed this pass to the clients.
+			this.replica.flushSubscriptions();
 		}
 	}
 	
+	/**
+	 * Registers which roles consume which messages.  A Decision goes to
+	 * the replica first, then the leader, as before.
+	 */
+	private void registerHandlers()
+	{
+		// Replica.
+		this.dispatcher.register(Request.class, this.replica::handleRequest);
+		this.dispatcher.register(Decision.class, this.replica::handleDecision);
+		this.dispatcher.register(DecisionsRequest.class, this.replica::handleDecisionsRequest);
+		this.dispatcher.register(DecisionsResponse.class, this.replica::handleDecisionsResponse);
+		this.dispatcher.register(SubscriptionAck.class, this.replica::handleSubscriptionAck);
+		
+		// Leader.
+		this.dispatcher.register(HeartBeat.class, this.leader::handleHeartBeat);
+		this.dispatcher.register(Decision.class, this.leader::handleDecision);
+		this.dispatcher.register(Proposal.class, this.leader::handleProposal);
+		this.dispatcher.register(Adopted.class, this.leader::handleAdopted);
+		this.dispatcher.register(Preempted.class, this.leader::handlePreempted);
+		this.dispatcher.register(P1b.class, this.leader::handleP1b);
+		this.dispatcher.register(P2b.class, this.leader::handleP2b);
+		this.dispatcher.register(P2bBatch.class, this.leader::handleP2bBatch);
+		this.dispatcher.register(Snapshotted.class, this.leader::handleSnapshotted);
+		
+		// Acceptor.
+		this.dispatcher.register(AcceptedSetRequest.class, this.acceptor::handleAcceptedSetRequest);
+		this.dispatcher.register(AcceptedSetResponse.class, this.acceptor::handleAcceptedSetResponse);
+		this.dispatcher.register(P1a.class, this.acceptor::handleP1a);
+		this.dispatcher.register(P2a.class, this.acceptor::handleP2a);
+		this.dispatcher.register(P2aBatch.class, this.acceptor::handleP2aBatch);
+		this.dispatcher.register(Snapshotted.class, this.acceptor::handleSnapshotted);
+		
+		// Communication testing.
+		this.dispatcher.register(PlainMessage.class, plainMessage -> Logger.getInstance().info("Server {} received {}", this.id, plainMessage));
+	}
+	
 	/**
 	 * @return 
 	 * 		True if this process believs it is leader. Note that you
@@ -146,6 +206,14 @@ public class Server implements Runnable {
 		this.leader.timebomb(countdown);
 	}
 	
+	/**
+	 * @return the next slot this server's replica will perform.
+	 */
+	public int getReplicaSlotNum()
+	{
+		return this.replica.getSlotNum();
+	}
+	
 	/**
 	 * Prints a state dump of this server. For debugging purposes only.
 	 */
@@ -156,15 +224,17 @@ public class Server implements Runnable {
 	
 	/**
 	 * Returns an ArrayList<Message> of the messages received over the
-	 * network at the time this method is called.
+	 * network, waiting up to the given time if none have arrived yet.
+	 * 
+	 * @param timeoutNanos, how long (in ns) to wait for messages.
 	 * 
 	 * @return an ArrayList<Message> of the messages received over the
-	 * network at the time this method is called.
+	 * network, possibly empty if the time passed.
 	 */
-	private ArrayList<Message> getNetworkMessages()
+	private ArrayList<Message> getNetworkMessages(long timeoutNanos)
 	{
 		ArrayList<Message> messagesFromNet = new ArrayList<Message>();
-		List<Message> received = this.network.getReceived();
+		List<Message> received = this.network.pollReceived(timeoutNanos);
 		for (Iterator<Message> i = received.iterator(); i.hasNext();)
 		{
 			messagesFromNet.add(i.next());
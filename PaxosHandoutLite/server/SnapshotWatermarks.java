@@ -0,0 +1,65 @@
+package server;
+
+import java.util.Arrays;
+
+
+/**
+ * The snapshot watermarks the replicas have announced (see Snapshotted),
+ * and the highest slot a majority of them have snapshotted up to.  Every
+ * slot below that is decided, and known to a majority of replicas.
+ */
+public class SnapshotWatermarks
+{
+	// Highest watermark announced by each server's replica.
+	private int[] watermarks;
+
+	// Every slot below this one is in the snapshot of a majority.
+	private int majorityWatermark;
+
+	public SnapshotWatermarks(int numServers)
+	{
+		this.watermarks = new int[numServers];
+		this.majorityWatermark = 0;
+	}
+
+
+	/**
+	 * Records a replica's watermark.
+	 *
+	 * @param serverId, the replica's server.
+	 * @param watermark, its watermark.
+	 *
+	 * @return true if the majority watermark went up.
+	 */
+	public boolean update(int serverId, int watermark)
+	{
+		if (watermark <= this.watermarks[serverId])
+		{
+			return false;
+		}
+		this.watermarks[serverId] = watermark;
+
+		// The (n/2 + 1)-th highest watermark is the highest one a
+		// majority has reached.
+		int[] sorted = Arrays.copyOf(this.watermarks, this.watermarks.length);
+		Arrays.sort(sorted);
+		int candidate = sorted[sorted.length - 1 - sorted.length / 2];
+
+		if (candidate > this.majorityWatermark)
+		{
+			this.majorityWatermark = candidate;
+			return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * @return the highest slot a majority of replicas have snapshotted up
+	 * to (every slot below it is in their snapshots), or 0 if none.
+	 */
+	public int getMajorityWatermark()
+	{
+		return this.majorityWatermark;
+	}
+}
@@ -1,35 +1,147 @@
 package server;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import client.Command;
+import log.Logger;
 
 /**
  * A State from the Paxos algorithm (what p.state represents, where p is 
  * a replica).
  * 
+ * A replica's state is backed by its DecisionLog, so its entries live in
+ * mapped files and are paged in when read.  A client's chat log is kept
+ * on the heap, in a skip list keyed by slot: adding an entry (or finding
+ * it is already there) is O(log n), and the entries can be read in slot
+ * order while another thread adds to them.
+ * 
  * @author Mike Feilbach
  */
 public class State implements Serializable
 {
 	private static final long serialVersionUID = 1L;
 	
-	private ArrayList<StateEntry> state;
+	// The entries by slot, unless this state is backed by a log.
+	private ConcurrentSkipListMap<Integer, StateEntry> state;
+	
+	// The log holding the entries, or null if they are on the heap.
+	private transient DecisionLog log;
 	
 	public State()
 	{
-		this.state = new ArrayList<StateEntry>();
+		this.state = new ConcurrentSkipListMap<Integer, StateEntry>();
+		this.log = null;
+	}
+	
+	/**
+	 * A state whose entries are kept in the given log.
+	 * 
+	 * @param log, the log.  Entries already in it are part of the state.
+	 */
+	public State(DecisionLog log)
+	{
+		this.state = null;
+		this.log = log;
 	}
 	
+	/**
+	 * Returns every entry, in slot order.  For a log-backed state this
+	 * pages the whole history in; use getEntry() to read single slots.
+	 */
 	public ArrayList<StateEntry> getState()
 	{
-		return this.state;
+		if (this.log == null)
+		{
+			return new ArrayList<StateEntry>(this.state.values());
+		}
+		
+		ArrayList<StateEntry> entries = new ArrayList<StateEntry>();
+		try
+		{
+			int slot = this.log.nextSlot(1);
+			while (slot != -1)
+			{
+				entries.add(new StateEntry(this.log.get(slot), slot));
+				slot = this.log.nextSlot(slot + 1);
+			}
+		}
+		catch (IOException exc)
+		{
+			Logger.getInstance().error("ERROR: I/O while reading decision log: {}", exc.getMessage());
+		}
+		
+		return entries;
+	}
+	
+	/**
+	 * Returns a live view of the entries of a heap-backed state, in slot
+	 * order.  It can be iterated while entries are being added: it sees
+	 * every entry added before the iteration began, and may or may not
+	 * see ones added during it.
+	 */
+	public Collection<StateEntry> getEntries()
+	{
+		if (this.log == null)
+		{
+			return this.state.values();
+		}
+		
+		return this.getState();
+	}
+	
+	/**
+	 * Returns the entry of the given slot.
+	 * 
+	 * @param slotNumber, the slot.
+	 * 
+	 * @return the entry, or null if the state has none for the slot.
+	 */
+	public StateEntry getEntry(int slotNumber)
+	{
+		if (this.log == null)
+		{
+			return this.state.get(slotNumber);
+		}
+		
+		try
+		{
+			Command command = this.log.get(slotNumber);
+			return command == null ? null : new StateEntry(command, slotNumber);
+		}
+		catch (IOException exc)
+		{
+			Logger.getInstance().error("ERROR: I/O while reading decision log: {}", exc.getMessage());
+			return null;
+		}
 	}
 	
+	/**
+	 * Adds the given entry.  Only one command is ever decided for a slot,
+	 * so in a heap-backed state an entry for a slot already there is a
+	 * duplicate, and is dropped.
+	 * 
+	 * @param stateEntry, the entry.
+	 */
 	public void addToState(StateEntry stateEntry)
 	{
-		this.state.add(stateEntry);
+		if (this.log == null)
+		{
+			this.state.putIfAbsent(stateEntry.getSlotNumber(), stateEntry);
+			return;
+		}
+		
+		try
+		{
+			this.log.append(stateEntry.getSlotNumber(), stateEntry.getCommand());
+		}
+		catch (IOException exc)
+		{
+			Logger.getInstance().error("ERROR: I/O while writing decision log: {}", exc.getMessage());
+		}
 	}
 	
 	@Override
@@ -37,9 +149,10 @@ public class State implements Serializable
 	{
 		String retVal = "State: ";
 		
-		for (int i = 0; i < this.state.size(); i++)
+		ArrayList<StateEntry> entries = this.getState();
+		for (int i = 0; i < entries.size(); i++)
 		{
-			retVal += this.state.get(i) + ", ";
+			retVal += entries.get(i) + ", ";
 		}
 		
 		return retVal;
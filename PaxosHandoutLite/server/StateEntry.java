@@ -13,8 +13,8 @@ public class StateEntry implements Serializable, Comparable<StateEntry>
 {
 	private static final long serialVersionUID = 1L;
 	
-	private Command command;
-	private int slotNumber;
+	private final Command command;
+	private final int slotNumber;
 	
 	public StateEntry(Command command, int slotNumber)
 	{
@@ -69,6 +69,12 @@ public class StateEntry implements Serializable, Comparable<StateEntry>
 		return false;
 	}
 	
+	@Override
+	public int hashCode()
+	{
+		return 31 * this.slotNumber + this.command.hashCode();
+	}
+	
 	public int compareTo(StateEntry otherEntry)
 	{
 		if (this.getSlotNumber() < otherEntry.getSlotNumber())
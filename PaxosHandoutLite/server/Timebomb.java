@@ -40,6 +40,32 @@ public class Timebomb {
 		}
 	}
 	
+	/**
+	 * @return how many more messages may be sent before the timebomb
+	 * goes off, or Integer.MAX_VALUE if it is not set.
+	 */
+	public synchronized int getRemaining()
+	{
+		synchronized (this.active)
+		{
+			return this.active ? Math.max(this.countdown, 1) : Integer.MAX_VALUE;
+		}
+	}
+	
+	/**
+	 * Notifies the time bomb that the associated object has sent the
+	 * given number of messages at once, as tick() does for one.
+	 * 
+	 * @param numMessages, the number of messages sent.
+	 */
+	public synchronized void tick(int numMessages)
+	{
+		for (int i = 0; i < numMessages; i++)
+		{
+			this.tick();
+		}
+	}
+	
 	/**
 	 * This notifies the time bomb that the associated object
 	 * has sent a message. This must be called by the thread
@@ -60,7 +86,7 @@ public class Timebomb {
 					this.active = false;
 					Thread.currentThread().stop();
 				}
-				Logger.getInstance().println("Tick: " + this.countdown);
+				Logger.getInstance().debug("Tick: {}", this.countdown);
 			}
 		}
 	}
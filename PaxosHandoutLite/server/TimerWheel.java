@@ -0,0 +1,322 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+
+
+/**
+ * A hashed timing wheel: the timers of one thread (a server's Leader,
+ * Acceptor, Scouts and Commanders, or a client), bucketed by the tick in
+ * which they expire.  Scheduling and cancelling a timer are O(1), and
+ * advancing the wheel only looks at the buckets of the ticks that have
+ * passed, so the cost of running an event loop no longer grows with the
+ * number of outstanding timers.
+ *
+ * Times are System.nanoTime() values.  The owning thread sleeps until
+ * getNextDeadline() (or until a message arrives) and then calls advance(),
+ * which runs the tasks of all timers that have expired.  A wheel is not
+ * thread-safe; only its owner's thread may use it once that is running.
+ */
+public class TimerWheel
+{
+	// Length of a tick in nanoseconds.
+	private static final long TICK_NANOS = 10000000L;
+
+	// Number of buckets, i.e., ticks per turn of the wheel.  Must be a
+	// power of 2.  With 10 ms ticks, a turn is 2.56 s; timers further
+	// out than that just stay in their bucket for more turns.
+	private static final int NUM_BUCKETS = 256;
+
+	// Order in which expired timers run: by deadline, then in the order
+	// they were scheduled.
+	private static final Comparator<Timer> EXPIRY_ORDER = (a, b) -> {
+		int byDeadline = Long.signum(a.deadline - b.deadline);
+		return byDeadline != 0 ? byDeadline : Long.compare(a.sequence, b.sequence);
+	};
+
+	/**
+	 * A scheduled task.  Returned by schedule() so it can be cancelled.
+	 */
+	public static class Timer
+	{
+		// Expiry time, in System.nanoTime() terms.
+		private long deadline;
+
+		// Order in which the timer was scheduled, to break ties between
+		// equal deadlines.
+		private long sequence;
+
+		// The tick the timer is bucketed under (deadline's tick, or the
+		// wheel's current tick if that was already past).
+		private long tick;
+
+		private Runnable task;
+
+		// Neighbors in the bucket's doubly linked list.
+		private Timer prev;
+		private Timer next;
+
+		// True while the timer is linked into a bucket.
+		private boolean linked;
+
+		// True until the timer has run or was cancelled.
+		private boolean scheduled;
+
+		/**
+		 * @return the time (in System.nanoTime() terms) this timer expires.
+		 */
+		public long getDeadline()
+		{
+			return this.deadline;
+		}
+	}
+
+	// Head of each bucket's list of timers.
+	private Timer[] buckets;
+
+	// Ticks are counted from here.
+	private long origin;
+
+	// Every linked timer's tick is >= currentTick.
+	private long currentTick;
+
+	// Cached result of getNextDeadline(), valid if nextDeadlineKnown.
+	// Scheduling only ever moves it earlier; cancelling leaves it (early
+	// is harmless, the owner just wakes up for nothing once).
+	private long nextDeadline;
+	private boolean nextDeadlineKnown;
+
+	// Number of linked timers.
+	private int size;
+
+	// Sequence number of the next timer scheduled.
+	private long nextSequence;
+
+	// Timers expiring in the current advance(), reused between calls.
+	private ArrayList<Timer> expired;
+
+	public TimerWheel()
+	{
+		this.buckets = new Timer[NUM_BUCKETS];
+		this.origin = System.nanoTime();
+		this.currentTick = 0;
+		this.nextDeadline = Long.MAX_VALUE;
+		this.nextDeadlineKnown = true;
+		this.size = 0;
+		this.nextSequence = 0;
+		this.expired = new ArrayList<Timer>();
+	}
+
+
+	/**
+	 * Schedules a task to run once, after the given delay.
+	 *
+	 * @param delayMillis, the delay in ms.
+	 * @param task, the task to run.
+	 *
+	 * @return the timer, for cancel().
+	 */
+	public Timer schedule(long delayMillis, Runnable task)
+	{
+		Timer timer = new Timer();
+		timer.deadline = System.nanoTime() + Math.max(delayMillis, 0) * 1000000L;
+		timer.tick = Math.max((timer.deadline - this.origin) / TICK_NANOS, this.currentTick);
+		timer.sequence = this.nextSequence++;
+		timer.task = task;
+		timer.scheduled = true;
+		this.link(timer);
+
+		if (this.nextDeadlineKnown && (this.size == 1 || timer.deadline - this.nextDeadline < 0))
+		{
+			this.nextDeadline = timer.deadline;
+		}
+
+		return timer;
+	}
+
+
+	/**
+	 * Cancels the given timer, if it has not run yet.  Cancelling a timer
+	 * that already ran, was cancelled, or is null does nothing.
+	 *
+	 * @param timer, the timer.
+	 */
+	public void cancel(Timer timer)
+	{
+		if (timer == null || !timer.scheduled)
+		{
+			return;
+		}
+
+		timer.scheduled = false;
+		if (timer.linked)
+		{
+			this.unlink(timer);
+		}
+	}
+
+
+	/**
+	 * Runs the tasks of all timers that have expired by now, earliest
+	 * deadline first, and timers with the same deadline in the order they
+	 * were scheduled.  Tasks may schedule and cancel timers; ones scheduled
+	 * to expire right away run on the next call.
+	 */
+	public void advance()
+	{
+		long now = System.nanoTime();
+		long nowTick = Math.max((now - this.origin) / TICK_NANOS, this.currentTick);
+
+		// Visit the buckets of every tick up to now, but each bucket at
+		// most once, however long it has been since the last call.
+		long lastTick = Math.min(nowTick, this.currentTick + NUM_BUCKETS - 1);
+		for (long tick = this.currentTick; tick <= lastTick; tick++)
+		{
+			Timer timer = this.buckets[(int) (tick & (NUM_BUCKETS - 1))];
+			while (timer != null)
+			{
+				Timer next = timer.next;
+				if (timer.deadline - now <= 0)
+				{
+					this.unlink(timer);
+					this.expired.add(timer);
+				}
+				timer = next;
+			}
+		}
+
+		// Timers still in nowTick's bucket expire later in the tick, so it
+		// is visited again next time.
+		this.currentTick = nowTick;
+		this.nextDeadlineKnown = false;
+
+		// Buckets hold their timers newest first, so put them in expiry
+		// order: a client's re-sends must go out in cid order.
+		this.expired.sort(EXPIRY_ORDER);
+
+		// Run the tasks only once the buckets are consistent again.  A
+		// task may cancel a timer which expired along with it.
+		for (int i = 0; i < this.expired.size(); i++)
+		{
+			Timer timer = this.expired.get(i);
+			if (timer.scheduled)
+			{
+				timer.scheduled = false;
+				timer.task.run();
+			}
+		}
+		this.expired.clear();
+	}
+
+
+	/**
+	 * @return the time (in System.nanoTime() terms) at which the next
+	 * timer expires, or Long.MAX_VALUE if none is scheduled.
+	 */
+	public long getNextDeadline()
+	{
+		if (this.size == 0)
+		{
+			return Long.MAX_VALUE;
+		}
+
+		if (this.nextDeadlineKnown)
+		{
+			return this.nextDeadline;
+		}
+
+		// Walk one turn of the wheel from the current tick.  The first
+		// bucket holding a timer for this turn holds the next deadline.
+		// If there is none, every timer is at least a turn away, and the
+		// earliest of them all is the next deadline.
+		long earliest = 0;
+		boolean foundAny = false;
+		for (int i = 0; i < NUM_BUCKETS; i++)
+		{
+			long tick = this.currentTick + i;
+			boolean foundThisTurn = false;
+			long earliestThisTurn = 0;
+
+			for (Timer timer = this.buckets[(int) (tick & (NUM_BUCKETS - 1))]; timer != null; timer = timer.next)
+			{
+				if (!foundAny || timer.deadline - earliest < 0)
+				{
+					earliest = timer.deadline;
+					foundAny = true;
+				}
+				if (timer.tick == tick && (!foundThisTurn || timer.deadline - earliestThisTurn < 0))
+				{
+					earliestThisTurn = timer.deadline;
+					foundThisTurn = true;
+				}
+			}
+
+			if (foundThisTurn)
+			{
+				earliest = earliestThisTurn;
+				break;
+			}
+		}
+
+		this.nextDeadline = earliest;
+		this.nextDeadlineKnown = true;
+		return earliest;
+	}
+
+
+	/**
+	 * @return the time (in ns) from now until the next timer expires, 0 if
+	 * that is already past, or Long.MAX_VALUE if none is scheduled.
+	 */
+	public long getTimeUntilNextDeadline()
+	{
+		if (this.size == 0)
+		{
+			return Long.MAX_VALUE;
+		}
+
+		return Math.max(this.getNextDeadline() - System.nanoTime(), 0);
+	}
+
+
+	/**
+	 * Adds the given timer at the head of its tick's bucket.
+	 */
+	private void link(Timer timer)
+	{
+		int bucket = (int) (timer.tick & (NUM_BUCKETS - 1));
+		timer.prev = null;
+		timer.next = this.buckets[bucket];
+		if (timer.next != null)
+		{
+			timer.next.prev = timer;
+		}
+		this.buckets[bucket] = timer;
+		timer.linked = true;
+		this.size++;
+	}
+
+
+	/**
+	 * Removes the given timer from its bucket.
+	 */
+	private void unlink(Timer timer)
+	{
+		if (timer.prev != null)
+		{
+			timer.prev.next = timer.next;
+		}
+		else
+		{
+			this.buckets[(int) (timer.tick & (NUM_BUCKETS - 1))] = timer.next;
+		}
+		if (timer.next != null)
+		{
+			timer.next.prev = timer.prev;
+		}
+		timer.prev = null;
+		timer.next = null;
+		timer.linked = false;
+		this.size--;
+	}
+}
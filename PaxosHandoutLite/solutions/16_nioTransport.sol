@@ -0,0 +1,6 @@
+0 0: helloWorld
+1 1: helloBack
+2 0: bye
+0 0: helloWorld
+1 1: helloBack
+2 0: bye
@@ -0,0 +1,6 @@
+checkScoutFromSlot: true
+checkScoutFromSlot: true
+checkScoutFromSlot: true
+0 0: first
+1 1: second
+2 0: third
@@ -0,0 +1,480 @@
+0 0: a0
+1 0: a1
+2 0: a2
+3 0: a3
+4 0: a4
+5 0: a5
+6 0: a6
+7 0: a7
+8 0: a8
+9 0: a9
+10 0: a10
+11 0: a11
+12 0: a12
+13 0: a13
+14 0: a14
+15 0: a15
+16 0: a16
+17 0: a17
+18 0: a18
+19 0: a19
+20 0: a20
+21 0: a21
+22 0: a22
+23 0: a23
+24 0: a24
+25 0: a25
+26 0: a26
+27 0: a27
+28 0: a28
+29 0: a29
+30 0: a30
+31 0: a31
+32 0: a32
+33 0: a33
+34 0: a34
+35 0: a35
+36 0: a36
+37 0: a37
+38 0: a38
+39 0: a39
+40 0: a40
+41 0: a41
+42 0: a42
+43 0: a43
+44 0: a44
+45 0: a45
+46 0: a46
+47 0: a47
+48 0: a48
+49 0: a49
+50 0: a50
+51 0: a51
+52 0: a52
+53 0: a53
+54 0: a54
+55 0: a55
+56 0: a56
+57 0: a57
+58 0: a58
+59 0: a59
+60 0: a60
+61 0: a61
+62 0: a62
+63 0: a63
+64 0: a64
+65 0: a65
+66 0: a66
+67 0: a67
+68 0: a68
+69 0: a69
+70 0: a70
+71 0: a71
+72 0: a72
+73 0: a73
+74 0: a74
+75 0: a75
+76 0: a76
+77 0: a77
+78 0: a78
+79 0: a79
+80 0: a80
+81 0: a81
+82 0: a82
+83 0: a83
+84 0: a84
+85 0: a85
+86 0: a86
+87 0: a87
+88 0: a88
+89 0: a89
+90 0: a90
+91 0: a91
+92 0: a92
+93 0: a93
+94 0: a94
+95 0: a95
+96 0: a96
+97 0: a97
+98 0: a98
+99 0: a99
+100 0: a100
+101 0: a101
+102 0: a102
+103 0: a103
+104 0: a104
+105 0: a105
+106 0: a106
+107 0: a107
+108 0: a108
+109 0: a109
+110 0: a110
+111 0: a111
+112 0: a112
+113 0: a113
+114 0: a114
+115 0: a115
+116 0: a116
+117 0: a117
+118 0: a118
+119 0: a119
+120 0: a120
+121 0: a121
+122 0: a122
+123 0: a123
+124 0: a124
+125 0: a125
+126 0: a126
+127 0: a127
+128 0: a128
+129 0: a129
+130 0: a130
+131 0: a131
+132 0: a132
+133 0: a133
+134 0: a134
+135 0: a135
+136 0: a136
+137 0: a137
+138 0: a138
+139 0: a139
+140 0: a140
+141 0: a141
+142 0: a142
+143 0: a143
+144 0: a144
+145 0: a145
+146 0: a146
+147 0: a147
+148 0: a148
+149 0: a149
+150 1: b0
+151 1: b1
+152 1: b2
+153 1: b3
+154 1: b4
+155 1: b5
+156 1: b6
+157 1: b7
+158 1: b8
+159 1: b9
+160 1: b10
+161 1: b11
+162 1: b12
+163 1: b13
+164 1: b14
+165 1: b15
+166 1: b16
+167 1: b17
+168 1: b18
+169 1: b19
+170 1: b20
+171 1: b21
+172 1: b22
+173 1: b23
+174 1: b24
+175 1: b25
+176 1: b26
+177 1: b27
+178 1: b28
+179 1: b29
+180 1: b30
+181 1: b31
+182 1: b32
+183 1: b33
+184 1: b34
+185 1: b35
+186 1: b36
+187 1: b37
+188 1: b38
+189 1: b39
+190 1: b40
+191 1: b41
+192 1: b42
+193 1: b43
+194 1: b44
+195 1: b45
+196 1: b46
+197 1: b47
+198 1: b48
+199 1: b49
+200 1: b50
+201 1: b51
+202 1: b52
+203 1: b53
+204 1: b54
+205 1: b55
+206 1: b56
+207 1: b57
+208 1: b58
+209 1: b59
+210 0: c0
+211 0: c1
+212 0: c2
+213 0: c3
+214 0: c4
+215 0: c5
+216 0: c6
+217 0: c7
+218 0: c8
+219 0: c9
+220 0: c10
+221 0: c11
+222 0: c12
+223 0: c13
+224 0: c14
+225 0: c15
+226 0: c16
+227 0: c17
+228 0: c18
+229 0: c19
+230 1: d0
+231 1: d1
+232 1: d2
+233 1: d3
+234 1: d4
+235 1: d5
+236 1: d6
+237 1: d7
+238 1: d8
+239 1: d9
+0 0: a0
+1 0: a1
+2 0: a2
+3 0: a3
+4 0: a4
+5 0: a5
+6 0: a6
+7 0: a7
+8 0: a8
+9 0: a9
+10 0: a10
+11 0: a11
+12 0: a12
+13 0: a13
+14 0: a14
+15 0: a15
+16 0: a16
+17 0: a17
+18 0: a18
+19 0: a19
+20 0: a20
+21 0: a21
+22 0: a22
+23 0: a23
+24 0: a24
+25 0: a25
+26 0: a26
+27 0: a27
+28 0: a28
+29 0: a29
+30 0: a30
+31 0: a31
+32 0: a32
+33 0: a33
+34 0: a34
+35 0: a35
+36 0: a36
+37 0: a37
+38 0: a38
+39 0: a39
+40 0: a40
+41 0: a41
+42 0: a42
+43 0: a43
+44 0: a44
+45 0: a45
+46 0: a46
+47 0: a47
+48 0: a48
+49 0: a49
+50 0: a50
+51 0: a51
+52 0: a52
+53 0: a53
+54 0: a54
+55 0: a55
+56 0: a56
+57 0: a57
+58 0: a58
+59 0: a59
+60 0: a60
+61 0: a61
+62 0: a62
+63 0: a63
+64 0: a64
+65 0: a65
+66 0: a66
+67 0: a67
+68 0: a68
+69 0: a69
+70 0: a70
+71 0: a71
+72 0: a72
+73 0: a73
+74 0: a74
+75 0: a75
+76 0: a76
+77 0: a77
+78 0: a78
+79 0: a79
+80 0: a80
+81 0: a81
+82 0: a82
+83 0: a83
+84 0: a84
+85 0: a85
+86 0: a86
+87 0: a87
+88 0: a88
+89 0: a89
+90 0: a90
+91 0: a91
+92 0: a92
+93 0: a93
+94 0: a94
+95 0: a95
+96 0: a96
+97 0: a97
+98 0: a98
+99 0: a99
+100 0: a100
+101 0: a101
+102 0: a102
+103 0: a103
+104 0: a104
+105 0: a105
+106 0: a106
+107 0: a107
+108 0: a108
+109 0: a109
+110 0: a110
+111 0: a111
+112 0: a112
+113 0: a113
+114 0: a114
+115 0: a115
+116 0: a116
+117 0: a117
+118 0: a118
+119 0: a119
+120 0: a120
+121 0: a121
+122 0: a122
+123 0: a123
+124 0: a124
+125 0: a125
+126 0: a126
+127 0: a127
+128 0: a128
+129 0: a129
+130 0: a130
+131 0: a131
+132 0: a132
+133 0: a133
+134 0: a134
+135 0: a135
+136 0: a136
+137 0: a137
+138 0: a138
+139 0: a139
+140 0: a140
+141 0: a141
+142 0: a142
+143 0: a143
+144 0: a144
+145 0: a145
+146 0: a146
+147 0: a147
+148 0: a148
+149 0: a149
+150 1: b0
+151 1: b1
+152 1: b2
+153 1: b3
+154 1: b4
+155 1: b5
+156 1: b6
+157 1: b7
+158 1: b8
+159 1: b9
+160 1: b10
+161 1: b11
+162 1: b12
+163 1: b13
+164 1: b14
+165 1: b15
+166 1: b16
+167 1: b17
+168 1: b18
+169 1: b19
+170 1: b20
+171 1: b21
+172 1: b22
+173 1: b23
+174 1: b24
+175 1: b25
+176 1: b26
+177 1: b27
+178 1: b28
+179 1: b29
+180 1: b30
+181 1: b31
+182 1: b32
+183 1: b33
+184 1: b34
+185 1: b35
+186 1: b36
+187 1: b37
+188 1: b38
+189 1: b39
+190 1: b40
+191 1: b41
+192 1: b42
+193 1: b43
+194 1: b44
+195 1: b45
+196 1: b46
+197 1: b47
+198 1: b48
+199 1: b49
+200 1: b50
+201 1: b51
+202 1: b52
+203 1: b53
+204 1: b54
+205 1: b55
+206 1: b56
+207 1: b57
+208 1: b58
+209 1: b59
+210 0: c0
+211 0: c1
+212 0: c2
+213 0: c3
+214 0: c4
+215 0: c5
+216 0: c6
+217 0: c7
+218 0: c8
+219 0: c9
+220 0: c10
+221 0: c11
+222 0: c12
+223 0: c13
+224 0: c14
+225 0: c15
+226 0: c16
+227 0: c17
+228 0: c18
+229 0: c19
+230 1: d0
+231 1: d1
+232 1: d2
+233 1: d3
+234 1: d4
+235 1: d5
+236 1: d6
+237 1: d7
+238 1: d8
+239 1: d9
@@ -0,0 +1,200 @@
+0 0: a0
+1 0: a1
+2 0: a2
+3 0: a3
+4 0: a4
+5 0: a5
+6 0: a6
+7 0: a7
+8 0: a8
+9 0: a9
+10 0: a10
+11 0: a11
+12 0: a12
+13 0: a13
+14 0: a14
+15 0: a15
+16 0: a16
+17 0: a17
+18 0: a18
+19 0: a19
+20 0: a20
+21 0: a21
+22 0: a22
+23 0: a23
+24 0: a24
+25 0: a25
+26 0: a26
+27 0: a27
+28 0: a28
+29 0: a29
+30 0: a30
+31 0: a31
+32 0: a32
+33 0: a33
+34 0: a34
+35 0: a35
+36 0: a36
+37 0: a37
+38 0: a38
+39 0: a39
+40 0: a40
+41 0: a41
+42 0: a42
+43 0: a43
+44 0: a44
+45 0: a45
+46 0: a46
+47 0: a47
+48 0: a48
+49 0: a49
+50 0: a50
+51 0: a51
+52 0: a52
+53 0: a53
+54 0: a54
+55 0: a55
+56 0: a56
+57 0: a57
+58 0: a58
+59 0: a59
+60 0: a60
+61 0: a61
+62 0: a62
+63 0: a63
+64 0: a64
+65 0: a65
+66 0: a66
+67 0: a67
+68 0: a68
+69 0: a69
+70 0: a70
+71 0: a71
+72 0: a72
+73 0: a73
+74 0: a74
+75 0: a75
+76 0: a76
+77 0: a77
+78 0: a78
+79 0: a79
+80 0: a80
+81 0: a81
+82 0: a82
+83 0: a83
+84 0: a84
+85 0: a85
+86 0: a86
+87 0: a87
+88 0: a88
+89 0: a89
+90 1: b0
+91 1: b1
+92 1: b2
+93 1: b3
+94 1: b4
+95 1: b5
+96 1: b6
+97 1: b7
+98 1: b8
+99 1: b9
+0 0: a0
+1 0: a1
+2 0: a2
+3 0: a3
+4 0: a4
+5 0: a5
+6 0: a6
+7 0: a7
+8 0: a8
+9 0: a9
+10 0: a10
+11 0: a11
+12 0: a12
+13 0: a13
+14 0: a14
+15 0: a15
+16 0: a16
+17 0: a17
+18 0: a18
+19 0: a19
+20 0: a20
+21 0: a21
+22 0: a22
+23 0: a23
+24 0: a24
+25 0: a25
+26 0: a26
+27 0: a27
+28 0: a28
+29 0: a29
+30 0: a30
+31 0: a31
+32 0: a32
+33 0: a33
+34 0: a34
+35 0: a35
+36 0: a36
+37 0: a37
+38 0: a38
+39 0: a39
+40 0: a40
+41 0: a41
+42 0: a42
+43 0: a43
+44 0: a44
+45 0: a45
+46 0: a46
+47 0: a47
+48 0: a48
+49 0: a49
+50 0: a50
+51 0: a51
+52 0: a52
+53 0: a53
+54 0: a54
+55 0: a55
+56 0: a56
+57 0: a57
+58 0: a58
+59 0: a59
+60 0: a60
+61 0: a61
+62 0: a62
+63 0: a63
+64 0: a64
+65 0: a65
+66 0: a66
+67 0: a67
+68 0: a68
+69 0: a69
+70 0: a70
+71 0: a71
+72 0: a72
+73 0: a73
+74 0: a74
+75 0: a75
+76 0: a76
+77 0: a77
+78 0: a78
+79 0: a79
+80 0: a80
+81 0: a81
+82 0: a82
+83 0: a83
+84 0: a84
+85 0: a85
+86 0: a86
+87 0: a87
+88 0: a88
+89 0: a89
+90 1: b0
+91 1: b1
+92 1: b2
+93 1: b3
+94 1: b4
+95 1: b5
+96 1: b6
+97 1: b7
+98 1: b8
+99 1: b9
@@ -0,0 +1,520 @@
+0 0: a0
+1 0: a1
+2 0: a2
+3 0: a3
+4 0: a4
+5 0: a5
+6 0: a6
+7 0: a7
+8 0: a8
+9 0: a9
+10 0: a10
+11 0: a11
+12 0: a12
+13 0: a13
+14 0: a14
+15 0: a15
+16 0: a16
+17 0: a17
+18 0: a18
+19 0: a19
+20 0: a20
+21 0: a21
+22 0: a22
+23 0: a23
+24 0: a24
+25 0: a25
+26 0: a26
+27 0: a27
+28 0: a28
+29 0: a29
+30 0: a30
+31 0: a31
+32 0: a32
+33 0: a33
+34 0: a34
+35 0: a35
+36 0: a36
+37 0: a37
+38 0: a38
+39 0: a39
+40 0: a40
+41 0: a41
+42 0: a42
+43 0: a43
+44 0: a44
+45 0: a45
+46 0: a46
+47 0: a47
+48 0: a48
+49 0: a49
+50 0: a50
+51 0: a51
+52 0: a52
+53 0: a53
+54 0: a54
+55 0: a55
+56 0: a56
+57 0: a57
+58 0: a58
+59 0: a59
+60 0: a60
+61 0: a61
+62 0: a62
+63 0: a63
+64 0: a64
+65 0: a65
+66 0: a66
+67 0: a67
+68 0: a68
+69 0: a69
+70 0: a70
+71 0: a71
+72 0: a72
+73 0: a73
+74 0: a74
+75 0: a75
+76 0: a76
+77 0: a77
+78 0: a78
+79 0: a79
+80 0: a80
+81 0: a81
+82 0: a82
+83 0: a83
+84 0: a84
+85 0: a85
+86 0: a86
+87 0: a87
+88 0: a88
+89 0: a89
+90 0: a90
+91 0: a91
+92 0: a92
+93 0: a93
+94 0: a94
+95 0: a95
+96 0: a96
+97 0: a97
+98 0: a98
+99 0: a99
+100 0: a100
+101 0: a101
+102 0: a102
+103 0: a103
+104 0: a104
+105 0: a105
+106 0: a106
+107 0: a107
+108 0: a108
+109 0: a109
+110 0: a110
+111 0: a111
+112 0: a112
+113 0: a113
+114 0: a114
+115 0: a115
+116 0: a116
+117 0: a117
+118 0: a118
+119 0: a119
+120 0: a120
+121 0: a121
+122 0: a122
+123 0: a123
+124 0: a124
+125 0: a125
+126 0: a126
+127 0: a127
+128 0: a128
+129 0: a129
+130 0: a130
+131 0: a131
+132 0: a132
+133 0: a133
+134 0: a134
+135 0: a135
+136 0: a136
+137 0: a137
+138 0: a138
+139 0: a139
+140 0: a140
+141 0: a141
+142 0: a142
+143 0: a143
+144 0: a144
+145 0: a145
+146 0: a146
+147 0: a147
+148 0: a148
+149 0: a149
+150 0: a150
+151 0: a151
+152 0: a152
+153 0: a153
+154 0: a154
+155 0: a155
+156 0: a156
+157 0: a157
+158 0: a158
+159 0: a159
+160 0: a160
+161 0: a161
+162 0: a162
+163 0: a163
+164 0: a164
+165 0: a165
+166 0: a166
+167 0: a167
+168 0: a168
+169 0: a169
+170 0: a170
+171 0: a171
+172 0: a172
+173 0: a173
+174 0: a174
+175 0: a175
+176 0: a176
+177 0: a177
+178 0: a178
+179 0: a179
+180 0: a180
+181 0: a181
+182 0: a182
+183 0: a183
+184 0: a184
+185 0: a185
+186 0: a186
+187 0: a187
+188 0: a188
+189 0: a189
+190 0: a190
+191 0: a191
+192 0: a192
+193 0: a193
+194 0: a194
+195 0: a195
+196 0: a196
+197 0: a197
+198 0: a198
+199 0: a199
+200 0: a200
+201 0: a201
+202 0: a202
+203 0: a203
+204 0: a204
+205 0: a205
+206 0: a206
+207 0: a207
+208 0: a208
+209 0: a209
+210 0: a210
+211 0: a211
+212 0: a212
+213 0: a213
+214 0: a214
+215 0: a215
+216 0: a216
+217 0: a217
+218 0: a218
+219 0: a219
+220 0: a220
+221 0: a221
+222 0: a222
+223 0: a223
+224 0: a224
+225 0: a225
+226 0: a226
+227 0: a227
+228 0: a228
+229 0: a229
+230 0: a230
+231 0: a231
+232 0: a232
+233 0: a233
+234 0: a234
+235 0: a235
+236 0: a236
+237 0: a237
+238 0: a238
+239 0: a239
+240 0: a240
+241 0: a241
+242 0: a242
+243 0: a243
+244 0: a244
+245 0: a245
+246 0: a246
+247 0: a247
+248 0: a248
+249 0: a249
+250 1: b0
+251 1: b1
+252 1: b2
+253 1: b3
+254 1: b4
+255 1: b5
+256 1: b6
+257 1: b7
+258 1: b8
+259 1: b9
+0 0: a0
+1 0: a1
+2 0: a2
+3 0: a3
+4 0: a4
+5 0: a5
+6 0: a6
+7 0: a7
+8 0: a8
+9 0: a9
+10 0: a10
+11 0: a11
+12 0: a12
+13 0: a13
+14 0: a14
+15 0: a15
+16 0: a16
+17 0: a17
+18 0: a18
+19 0: a19
+20 0: a20
+21 0: a21
+22 0: a22
+23 0: a23
+24 0: a24
+25 0: a25
+26 0: a26
+27 0: a27
+28 0: a28
+29 0: a29
+30 0: a30
+31 0: a31
+32 0: a32
+33 0: a33
+34 0: a34
+35 0: a35
+36 0: a36
+37 0: a37
+38 0: a38
+39 0: a39
+40 0: a40
+41 0: a41
+42 0: a42
+43 0: a43
+44 0: a44
+45 0: a45
+46 0: a46
+47 0: a47
+48 0: a48
+49 0: a49
+50 0: a50
+51 0: a51
+52 0: a52
+53 0: a53
+54 0: a54
+55 0: a55
+56 0: a56
+57 0: a57
+58 0: a58
+59 0: a59
+60 0: a60
+61 0: a61
+62 0: a62
+63 0: a63
+64 0: a64
+65 0: a65
+66 0: a66
+67 0: a67
+68 0: a68
+69 0: a69
+70 0: a70
+71 0: a71
+72 0: a72
+73 0: a73
+74 0: a74
+75 0: a75
+76 0: a76
+77 0: a77
+78 0: a78
+79 0: a79
+80 0: a80
+81 0: a81
+82 0: a82
+83 0: a83
+84 0: a84
+85 0: a85
+86 0: a86
+87 0: a87
+88 0: a88
+89 0: a89
+90 0: a90
+91 0: a91
+92 0: a92
+93 0: a93
+94 0: a94
+95 0: a95
+96 0: a96
+97 0: a97
+98 0: a98
+99 0: a99
+100 0: a100
+101 0: a101
+102 0: a102
+103 0: a103
+104 0: a104
+105 0: a105
+106 0: a106
+107 0: a107
+108 0: a108
+109 0: a109
+110 0: a110
+111 0: a111
+112 0: a112
+113 0: a113
+114 0: a114
+115 0: a115
+116 0: a116
+117 0: a117
+118 0: a118
+119 0: a119
+120 0: a120
+121 0: a121
+122 0: a122
+123 0: a123
+124 0: a124
+125 0: a125
+126 0: a126
+127 0: a127
+128 0: a128
+129 0: a129
+130 0: a130
+131 0: a131
+132 0: a132
+133 0: a133
+134 0: a134
+135 0: a135
+136 0: a136
+137 0: a137
+138 0: a138
+139 0: a139
+140 0: a140
+141 0: a141
+142 0: a142
+143 0: a143
+144 0: a144
+145 0: a145
+146 0: a146
+147 0: a147
+148 0: a148
+149 0: a149
+150 0: a150
+151 0: a151
+152 0: a152
+153 0: a153
+154 0: a154
+155 0: a155
+156 0: a156
+157 0: a157
+158 0: a158
+159 0: a159
+160 0: a160
+161 0: a161
+162 0: a162
+163 0: a163
+164 0: a164
+165 0: a165
+166 0: a166
+167 0: a167
+168 0: a168
+169 0: a169
+170 0: a170
+171 0: a171
+172 0: a172
+173 0: a173
+174 0: a174
+175 0: a175
+176 0: a176
+177 0: a177
+178 0: a178
+179 0: a179
+180 0: a180
+181 0: a181
+182 0: a182
+183 0: a183
+184 0: a184
+185 0: a185
+186 0: a186
+187 0: a187
+188 0: a188
+189 0: a189
+190 0: a190
+191 0: a191
+192 0: a192
+193 0: a193
+194 0: a194
+195 0: a195
+196 0: a196
+197 0: a197
+198 0: a198
+199 0: a199
+200 0: a200
+201 0: a201
+202 0: a202
+203 0: a203
+204 0: a204
+205 0: a205
+206 0: a206
+207 0: a207
+208 0: a208
+209 0: a209
+210 0: a210
+211 0: a211
+212 0: a212
+213 0: a213
+214 0: a214
+215 0: a215
+216 0: a216
+217 0: a217
+218 0: a218
+219 0: a219
+220 0: a220
+221 0: a221
+222 0: a222
+223 0: a223
+224 0: a224
+225 0: a225
+226 0: a226
+227 0: a227
+228 0: a228
+229 0: a229
+230 0: a230
+231 0: a231
+232 0: a232
+233 0: a233
+234 0: a234
+235 0: a235
+236 0: a236
+237 0: a237
+238 0: a238
+239 0: a239
+240 0: a240
+241 0: a241
+242 0: a242
+243 0: a243
+244 0: a244
+245 0: a245
+246 0: a246
+247 0: a247
+248 0: a248
+249 0: a249
+250 1: b0
+251 1: b1
+252 1: b2
+253 1: b3
+254 1: b4
+255 1: b5
+256 1: b6
+257 1: b7
+258 1: b8
+259 1: b9
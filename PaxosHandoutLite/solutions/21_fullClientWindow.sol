@@ -0,0 +1,160 @@
+0 0: a0
+1 0: a1
+2 0: a2
+3 0: a3
+4 0: a4
+5 0: a5
+6 0: a6
+7 0: a7
+8 0: a8
+9 0: a9
+10 0: a10
+11 0: a11
+12 0: a12
+13 0: a13
+14 0: a14
+15 0: a15
+16 0: a16
+17 0: a17
+18 0: a18
+19 0: a19
+20 0: a20
+21 0: a21
+22 0: a22
+23 0: a23
+24 0: a24
+25 0: a25
+26 0: a26
+27 0: a27
+28 0: a28
+29 0: a29
+30 0: a30
+31 0: a31
+32 0: a32
+33 0: a33
+34 0: a34
+35 0: a35
+36 0: a36
+37 0: a37
+38 0: a38
+39 0: a39
+40 1: b0
+41 1: b1
+42 1: b2
+43 1: b3
+44 1: b4
+45 1: b5
+46 1: b6
+47 1: b7
+48 1: b8
+49 1: b9
+50 1: b10
+51 1: b11
+52 1: b12
+53 1: b13
+54 1: b14
+55 1: b15
+56 1: b16
+57 1: b17
+58 1: b18
+59 1: b19
+60 1: b20
+61 1: b21
+62 1: b22
+63 1: b23
+64 1: b24
+65 1: b25
+66 1: b26
+67 1: b27
+68 1: b28
+69 1: b29
+70 1: b30
+71 1: b31
+72 1: b32
+73 1: b33
+74 1: b34
+75 1: b35
+76 1: b36
+77 1: b37
+78 1: b38
+79 1: b39
+0 0: a0
+1 0: a1
+2 0: a2
+3 0: a3
+4 0: a4
+5 0: a5
+6 0: a6
+7 0: a7
+8 0: a8
+9 0: a9
+10 0: a10
+11 0: a11
+12 0: a12
+13 0: a13
+14 0: a14
+15 0: a15
+16 0: a16
+17 0: a17
+18 0: a18
+19 0: a19
+20 0: a20
+21 0: a21
+22 0: a22
+23 0: a23
+24 0: a24
+25 0: a25
+26 0: a26
+27 0: a27
+28 0: a28
+29 0: a29
+30 0: a30
+31 0: a31
+32 0: a32
+33 0: a33
+34 0: a34
+35 0: a35
+36 0: a36
+37 0: a37
+38 0: a38
+39 0: a39
+40 1: b0
+41 1: b1
+42 1: b2
+43 1: b3
+44 1: b4
+45 1: b5
+46 1: b6
+47 1: b7
+48 1: b8
+49 1: b9
+50 1: b10
+51 1: b11
+52 1: b12
+53 1: b13
+54 1: b14
+55 1: b15
+56 1: b16
+57 1: b17
+58 1: b18
+59 1: b19
+60 1: b20
+61 1: b21
+62 1: b22
+63 1: b23
+64 1: b24
+65 1: b25
+66 1: b26
+67 1: b27
+68 1: b28
+69 1: b29
+70 1: b30
+71 1: b31
+72 1: b32
+73 1: b33
+74 1: b34
+75 1: b35
+76 1: b36
+77 1: b37
+78 1: b38
+79 1: b39